@@ -0,0 +1,83 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON report with a stored baseline and fails if a benchmark got slower by
+ * more than the threshold.
+ *
+ * Usage: BenchmarkCompare baseline.json current.json [threshold percent, default 10]
+ */
+public final class BenchmarkCompare {
+
+    private BenchmarkCompare() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        File baseline = new File(args[0]);
+        File current = new File(args[1]);
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        if (!baseline.isFile()) {
+            System.out.println("No baseline at " + baseline + ", copy " + current + " there to store one");
+            return;
+        }
+
+        Map<String, JsonNode> before = read(baseline);
+        Map<String, JsonNode> after = read(current);
+        int regressions = 0;
+        for (Map.Entry<String, JsonNode> entry : after.entrySet()) {
+            JsonNode old = before.get(entry.getKey());
+            if (old == null) {
+                System.out.printf("%-70s %12s%n", entry.getKey(), "new");
+                continue;
+            }
+            double change = change(old, entry.getValue());
+            boolean regressed = change > threshold;
+            regressions += regressed ? 1 : 0;
+            System.out.printf("%-70s %+11.1f%% %s%n", entry.getKey(), change, regressed ? "REGRESSED" : "");
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmarks regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return how much slower the current result is, in percent, negative if it is faster.
+     */
+    static double change(JsonNode baseline, JsonNode current) {
+        double before = baseline.path("primaryMetric").path("score").asDouble();
+        double after = current.path("primaryMetric").path("score").asDouble();
+        // throughput is better when higher, the time modes when lower
+        if ("thrpt".equals(current.path("mode").asText())) {
+            return 100 * (before - after) / before;
+        }
+        return 100 * (after - before) / before;
+    }
+
+    /**
+     * Results by benchmark, mode and parameters.
+     */
+    private static Map<String, JsonNode> read(File report) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(report)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText()
+                    .replace("com.battlesnake.starter.", ""));
+            key.append(' ').append(result.path("mode").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,61 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Each move filter of the handler on its own, on the set of all four moves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FilterBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String fixture;
+
+    private Snake.Handler handler;
+    private Board board;
+
+    @Setup
+    public void setUp() throws IOException {
+        handler = new Snake.Handler();
+        board = new MoveRequestDecoder(new ObjectMapper().getFactory())
+                .decode(Fixtures.moveRequest(fixture, 500), new Board(11, 11, 8));
+    }
+
+    @Benchmark
+    public int avoidMyNeck() {
+        return handler.avoidMyNeck(board, Direction.ALL);
+    }
+
+    @Benchmark
+    public int avoidTheWalls() {
+        return handler.avoidTheWalls(board, Direction.ALL);
+    }
+
+    @Benchmark
+    public int avoidMyBody() {
+        return handler.avoidMyBody(board, Direction.ALL);
+    }
+
+    @Benchmark
+    public int avoidDeadEnds() {
+        return handler.avoidDeadEnds(board, Direction.ALL);
+    }
+
+    @Benchmark
+    public int avoidOtherSnakes() {
+        return handler.avoidOtherSnakes(board, Direction.ALL);
+    }
+}
@@ -0,0 +1,95 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Move requests for the benchmarks, built the same way on every run.
+ *
+ * Each snake lies in its own band of rows, laid back and forth from its tail, so that its
+ * head ends on free cells and the search has moves to choose from.
+ */
+public final class Fixtures {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param name "small": 11x11 with 2 snakes early in a game, "medium": 19x19 with 8
+     *             snakes, "large": 19x19 with 4 long snakes late in a game.
+     * @return the body of a /move request.
+     */
+    public static byte[] moveRequest(String name, int timeout) {
+        switch (name) {
+            case "small":
+                return moveRequest(11, 11, 2, 5, 3, 20, timeout);
+            case "medium":
+                return moveRequest(19, 19, 8, 2, 8, 60, timeout);
+            case "large":
+                return moveRequest(19, 19, 4, 4, 40, 400, timeout);
+            default:
+                throw new IllegalArgumentException("Unknown fixture: " + name);
+        }
+    }
+
+    private static byte[] moveRequest(int width, int height, int snakes, int rows, int length, int turn, int timeout) {
+        Random random = new Random(width * 31 + snakes);
+        boolean[] taken = new boolean[width * height];
+
+        ObjectNode request = JSON.createObjectNode();
+        ObjectNode game = request.putObject("game");
+        game.put("id", "bench-" + width + "x" + height + "-" + snakes);
+        game.putObject("ruleset").put("name", "standard");
+        game.put("timeout", timeout);
+        request.put("turn", turn);
+
+        ObjectNode board = request.putObject("board");
+        board.put("width", width);
+        board.put("height", height);
+        ArrayNode bodies = board.putArray("snakes");
+        for (int s = 0; s < snakes; s++) {
+            ObjectNode snake = bodies.addObject();
+            snake.put("id", "snake-" + s);
+            snake.put("name", "Snake " + s);
+            snake.put("health", 40 + random.nextInt(60));
+            snake.put("latency", "20");
+            ArrayNode body = snake.putArray("body");
+            // tail first, the request lists the head first
+            int[] cells = new int[length];
+            for (int i = 0; i < length; i++) {
+                int row = i / width;
+                int x = row % 2 == 0 ? i % width : width - 1 - i % width;
+                int y = s * rows + row;
+                cells[length - 1 - i] = y * width + x;
+                taken[y * width + x] = true;
+            }
+            for (int cell : cells) {
+                body.addObject().put("x", cell % width).put("y", cell / width);
+            }
+        }
+        request.set("you", bodies.get(0).deepCopy());
+
+        ArrayNode food = board.putArray("food");
+        board.putArray("hazards");
+        for (int i = 0; i < snakes + 2; i++) {
+            int cell = free(random, taken);
+            food.addObject().put("x", cell % width).put("y", cell / width);
+        }
+        return request.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int free(Random random, boolean[] taken) {
+        int cell;
+        do {
+            cell = random.nextInt(taken.length);
+        } while (taken[cell]);
+        taken[cell] = true;
+        return cell;
+    }
+}
@@ -0,0 +1,42 @@
+package com.battlesnake.starter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A whole /move from body to response body. The search runs until its deadline, so this
+ * measures how close to game.timeout an answer comes back, not how fast the search is.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MoveBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String fixture;
+
+    @Param({"100"})
+    public int timeout;
+
+    private Snake.Handler handler;
+    private byte[] request;
+
+    @Setup
+    public void setUp() {
+        handler = new Snake.Handler();
+        request = Fixtures.moveRequest(fixture, timeout);
+    }
+
+    @Benchmark
+    public byte[] move() {
+        return handler.handle("/move", request);
+    }
+}
@@ -0,0 +1,56 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a /move body: into a JsonNode tree as the JsonNode methods need it, and straight
+ * into a board as /move does it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    @Param({"small", "medium", "large"})
+    public String fixture;
+
+    private byte[] request;
+    private MoveRequestDecoder decoder;
+    private Board board;
+
+    @Setup
+    public void setUp() {
+        request = Fixtures.moveRequest(fixture, 500);
+        decoder = new MoveRequestDecoder(JSON_MAPPER.getFactory());
+        board = new Board(11, 11, 8);
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws IOException {
+        return JSON_MAPPER.readTree(request);
+    }
+
+    @Benchmark
+    public Board fromMoveRequest() throws IOException {
+        return Board.fromMoveRequest(JSON_MAPPER.readTree(request));
+    }
+
+    @Benchmark
+    public Board decode() throws IOException {
+        return decoder.decode(request, board);
+    }
+}
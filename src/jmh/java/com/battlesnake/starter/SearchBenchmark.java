@@ -0,0 +1,113 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The single threaded search to a fixed depth, with and without move ordering, without a
+ * transposition table. Every search starts from an empty {@link Search}, so killers and
+ * history are learned within the search only.
+ *
+ * Run as a program, it prints the nodes and cutoffs of each fixture at every depth up to
+ * its benchmark depth instead, which is what the ordering is meant to bring down.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SearchBenchmark {
+
+    private static final String[] FIXTURES = {"small", "medium", "large"};
+
+    @Param({"small", "medium", "large"})
+    public String fixture;
+
+    @Param({"true", "false"})
+    public boolean ordering;
+
+    private Board board;
+    private int[] candidates;
+    private int depth;
+
+    @Setup
+    public void setUp() throws IOException {
+        board = board(fixture);
+        candidates = candidates(board);
+        depth = depth(fixture);
+    }
+
+    @Benchmark
+    public int search() {
+        return search(board, candidates, depth, ordering).depthReached;
+    }
+
+    /**
+     * Depth searched on a fixture: the searches take tens of milliseconds, the one on 8
+     * snakes is as deep as it gets in that time.
+     */
+    static int depth(String fixture) {
+        switch (fixture) {
+            case "small":
+                return 6;
+            case "medium":
+                return 1;
+            default:
+                return 3;
+        }
+    }
+
+    static Board board(String fixture) throws IOException {
+        return new MoveRequestDecoder(new ObjectMapper().getFactory())
+                .decode(Fixtures.moveRequest(fixture, 500), new Board(11, 11, 8));
+    }
+
+    /**
+     * @return our moves that stay on the board and out of our neck.
+     */
+    static int[] candidates(Board board) {
+        Simulator simulator = new Simulator();
+        simulator.prepare(board);
+        int[] candidates = new int[4];
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            if (simulator.playable(board.you, direction)) {
+                candidates[count++] = direction;
+            }
+        }
+        return Arrays.copyOf(candidates, count);
+    }
+
+    static Search search(Board board, int[] candidates, int depth, boolean ordering) {
+        Search search = new Search();
+        search.ordering = ordering;
+        search.maxDepth = depth;
+        search.bestMove(board, candidates, candidates.length, Long.MAX_VALUE);
+        return search;
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf("%-8s %5s %10s %10s %10s %10s %9s%n",
+                "fixture", "depth", "nodes", "ordered", "cutoffs", "ordered", "first");
+        for (String fixture : FIXTURES) {
+            Board board = board(fixture);
+            int[] candidates = candidates(board);
+            for (int depth = 1; depth <= depth(fixture); depth++) {
+                Search plain = search(board, candidates, depth, false);
+                Search ordered = search(board, candidates, depth, true);
+                System.out.printf("%-8s %5d %10d %10d %10d %10d %8.1f%%%n", fixture, depth,
+                        plain.nodes, ordered.nodes, plain.cutoffs, ordered.cutoffs,
+                        ordered.cutoffs > 0 ? 100.0 * ordered.firstMoveCutoffs / ordered.cutoffs : 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.battlesnake.starter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Neighbour table of a board shape: the cell next to every cell in every direction, -1 for
+ * a wall, or the cell on the opposite edge in wrapped games.
+ *
+ * Tables are built once per width, height and wrapping and shared by every board of that
+ * shape, so move generation, flood fills and the simulator look a neighbour up instead of
+ * working it out from the coordinates with an edge check per direction.
+ */
+public final class Adjacency {
+
+    /**
+     * Shapes kept at most; boards of any other shape get a table of their own.
+     */
+    private static final int MAX_SHAPES = 64;
+
+    private static final ConcurrentHashMap<Long, Adjacency> SHAPES = new ConcurrentHashMap<>();
+
+    final int width;
+    final int height;
+    final boolean wrapped;
+
+    /**
+     * Neighbour of cell c in direction d, see {@link Board#MOVES}, at c * 4 + d.
+     */
+    final int[] next;
+
+    private Adjacency(int width, int height, boolean wrapped) {
+        this.width = width;
+        this.height = height;
+        this.wrapped = wrapped;
+        int cells = width * height;
+        next = new int[cells * 4];
+        for (int cell = 0; cell < cells; cell++) {
+            int x = cell % width;
+            int y = cell / width;
+            next[cell << 2 | Board.UP] = y + 1 < height ? cell + width : wrapped ? x : -1;
+            next[cell << 2 | Board.DOWN] = y > 0 ? cell - width : wrapped ? cell + (height - 1) * width : -1;
+            next[cell << 2 | Board.LEFT] = x > 0 ? cell - 1 : wrapped ? cell + width - 1 : -1;
+            next[cell << 2 | Board.RIGHT] = x + 1 < width ? cell + 1 : wrapped ? cell - width + 1 : -1;
+        }
+    }
+
+    /**
+     * @return the shared table for the given shape.
+     */
+    static Adjacency of(int width, int height, boolean wrapped) {
+        Long shape = (long) width << 32 | (long) height << 1 | (wrapped ? 1 : 0);
+        Adjacency table = SHAPES.get(shape);
+        if (table != null) {
+            return table;
+        }
+        table = new Adjacency(width, height, wrapped);
+        if (SHAPES.size() < MAX_SHAPES) {
+            Adjacency raced = SHAPES.putIfAbsent(shape, table);
+            if (raced != null) {
+                return raced;
+            }
+        }
+        return table;
+    }
+
+    boolean matches(int width, int height, boolean wrapped) {
+        return this.width == width && this.height == height && this.wrapped == wrapped;
+    }
+}
@@ -0,0 +1,128 @@
+package com.battlesnake.starter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cuts back the search of every /move when more games are played at once than the cores can
+ * search for, so all of them are answered in time with a shallower search, instead of all of
+ * them missing the deadline with a full one.
+ *
+ * The level of degradation follows two signals, whichever is worse:
+ * <ul>
+ * <li>/move requests in flight, against the number of requests the cores can search for at
+ * full strength.</li>
+ * <li>How late recent searches came back: a search is told to stop a little before the
+ * answer's deadline, see {@link MoveController.Turn#searchDeadline}, and on a saturated
+ * machine it comes back later and later in that slack. The 50th and 90th percentile of the
+ * last {@link #WINDOW} moves are taken every {@link #UPDATE_EVERY} moves. This level only
+ * comes down a step per update, so the search does not flip between full and cut back.</li>
+ * </ul>
+ */
+public class AdmissionController {
+
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    /**
+     * Full search.
+     */
+    static final int FULL = 0;
+
+    /**
+     * Half the search time.
+     */
+    static final int REDUCED = 1;
+
+    /**
+     * A quarter of the search time.
+     */
+    static final int MINIMAL = 2;
+
+    /**
+     * No search, the move filters decide alone.
+     */
+    static final int FILTERS_ONLY = 3;
+
+    /**
+     * Moves whose lateness is kept, a power of two.
+     */
+    static final int WINDOW = 128;
+    static final int UPDATE_EVERY = 16;
+
+    private final int capacity;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Lateness of the last moves: how far into the slack between the search deadline and the
+     * answer's deadline each was answered, in thousandths of the slack.
+     */
+    private final int[] lateness = new int[WINDOW];
+    private final AtomicLong moves = new AtomicLong();
+    private volatile int latencyLevel = FULL;
+
+    /**
+     * @param capacity /move requests that are searched at full strength at once.
+     */
+    public AdmissionController(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * A /move came in, call {@link #exit()} once it is answered.
+     */
+    public void enter() {
+        METRICS.movesInFlight.set(inFlight.incrementAndGet());
+    }
+
+    public void exit() {
+        METRICS.movesInFlight.set(inFlight.decrementAndGet());
+    }
+
+    /**
+     * @return how far to cut back the search of a move that comes in now, from {@link #FULL}
+     * to {@link #FILTERS_ONLY}.
+     */
+    public int level() {
+        int requests = inFlight.get();
+        int level = requests <= capacity ? FULL
+                : requests <= 2 * capacity ? REDUCED
+                : requests <= 4 * capacity ? MINIMAL
+                : FILTERS_ONLY;
+        level = Math.max(level, latencyLevel);
+        METRICS.loadLevel.set(level);
+        return level;
+    }
+
+    /**
+     * Account for an answered move.
+     *
+     * @param answered System.nanoTime() of the answer.
+     */
+    public void record(MoveController.Turn turn, long answered) {
+        if (turn.level > FULL) {
+            METRICS.degradedMoves.increment();
+        }
+        // the slack of the full search, also when this one was cut back
+        long slack = Math.max(1, (turn.deadline - turn.arrived) / 20);
+        long late = Math.max(0, answered - (turn.deadline - slack));
+        long n = moves.getAndIncrement();
+        lateness[(int) (n & (WINDOW - 1))] = (int) Math.min(Integer.MAX_VALUE, 1000 * late / slack);
+        if ((n + 1) % UPDATE_EVERY == 0) {
+            update(Math.min(n + 1, WINDOW));
+        }
+    }
+
+    private void update(long count) {
+        int[] recent = Arrays.copyOf(lateness, (int) count);
+        Arrays.sort(recent);
+        int median = recent[(int) (count / 2)];
+        int p90 = recent[(int) (count * 9 / 10)];
+        int target = median >= 1000 ? FILTERS_ONLY
+                : p90 >= 1000 ? MINIMAL
+                : p90 >= 500 ? REDUCED
+                : FULL;
+        int current = latencyLevel;
+        latencyLevel = target >= current ? target : current - 1;
+    }
+}
@@ -0,0 +1,548 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Arrays;
+
+/**
+ * Primitive snapshot of the board that the move filters work on.
+ *
+ * Cells are indexed as y * width + x. Occupancy is kept in long[] bitsets with one bit
+ * per cell, so a filter only has to test a few bits instead of walking the JsonNode tree
+ * for every body segment.
+ */
+public class Board {
+
+    public static final int UP = 0;
+    public static final int DOWN = 1;
+    public static final int LEFT = 2;
+    public static final int RIGHT = 3;
+
+    /**
+     * Move names in direction order, as they are sent back to the engine.
+     */
+    public static final String[] MOVES = {"up", "down", "left", "right"};
+
+    int width;
+    int height;
+
+    /**
+     * Every body segment of every snake, heads included.
+     */
+    long[] bodies;
+    long[] heads;
+    long[] food;
+    long[] hazards;
+
+    /**
+     * Our own segments behind the neck. The neck itself is handled by avoidMyNeck.
+     */
+    long[] mine;
+
+    /**
+     * Every segment of every snake except ours.
+     */
+    long[] others;
+
+    /**
+     * Health a head on a hazard loses on top of the usual one, unless it eats there.
+     */
+    static final int DEFAULT_HAZARD_DAMAGE = 14;
+
+    String gameId;
+    String ruleset;
+    Ruleset rules = Ruleset.STANDARD;
+    int hazardDamage = DEFAULT_HAZARD_DAMAGE;
+
+    /**
+     * Last neighbour table used, see {@link #adjacency()}.
+     */
+    private Adjacency adjacency;
+
+    int timeout;
+    int turn;
+
+    /**
+     * "you.latency": how long the engine waited for our previous answer, in milliseconds,
+     * 0 if unknown.
+     */
+    int latency;
+
+    int snakeCount;
+    int you = -1;
+    String[] ids;
+    String[] names;
+    int[] health;
+
+    /**
+     * Number of segments in {@link #body}, which may hold more capacity than that.
+     */
+    int[] length;
+    int[] head;
+
+    /**
+     * Segments of every snake, as a ring buffer of cells whose capacity is a power of two:
+     * segment i, counted from the head, is at {@code (first[s] + i) & (capacity - 1)}. A move
+     * writes the new head in front of the old one instead of shifting the body, see
+     * {@link #advance(int, int)}. Read it through {@link #segment(int, int)}.
+     */
+    int[][] body;
+    int[] first;
+
+    /**
+     * Heads moved into a cell by each snake since it was added, see {@link #freeIn(int)}.
+     */
+    int[] steps;
+
+    /**
+     * Per cell: the snake that entered it last, and its {@link #steps} when it did. Only
+     * meaningful for cells set in {@link #bodies}.
+     */
+    int[] occupant;
+    int[] visit;
+
+    public Board(int width, int height, int maxSnakes) {
+        this.ids = new String[maxSnakes];
+        this.names = new String[maxSnakes];
+        this.health = new int[maxSnakes];
+        this.length = new int[maxSnakes];
+        this.head = new int[maxSnakes];
+        this.body = new int[maxSnakes][];
+        this.first = new int[maxSnakes];
+        this.steps = new int[maxSnakes];
+        reset(width, height);
+    }
+
+    /**
+     * Empty the board for reuse with the given dimensions. The masks are only reallocated
+     * when the board size changes, snake arrays keep whatever capacity they have grown to.
+     */
+    void reset(int width, int height) {
+        this.width = width;
+        this.height = height;
+        int words = (width * height + 63) >>> 6;
+        if (bodies == null || bodies.length != words) {
+            bodies = new long[words];
+            heads = new long[words];
+            food = new long[words];
+            hazards = new long[words];
+            mine = new long[words];
+            others = new long[words];
+        } else {
+            Arrays.fill(bodies, 0L);
+            Arrays.fill(heads, 0L);
+            Arrays.fill(food, 0L);
+            Arrays.fill(hazards, 0L);
+            Arrays.fill(mine, 0L);
+            Arrays.fill(others, 0L);
+        }
+        if (occupant == null || occupant.length != width * height) {
+            occupant = new int[width * height];
+            visit = new int[width * height];
+        }
+        gameId = null;
+        ruleset = null;
+        rules = Ruleset.STANDARD;
+        hazardDamage = DEFAULT_HAZARD_DAMAGE;
+        timeout = 0;
+        turn = 0;
+        latency = 0;
+        snakeCount = 0;
+        you = -1;
+    }
+
+    /**
+     * Make this board an exact copy of the given one, reusing this board's arrays where they
+     * are large enough.
+     */
+    void copyFrom(Board other) {
+        reset(other.width, other.height);
+        System.arraycopy(other.bodies, 0, bodies, 0, bodies.length);
+        System.arraycopy(other.heads, 0, heads, 0, heads.length);
+        System.arraycopy(other.food, 0, food, 0, food.length);
+        System.arraycopy(other.hazards, 0, hazards, 0, hazards.length);
+        System.arraycopy(other.mine, 0, mine, 0, mine.length);
+        System.arraycopy(other.others, 0, others, 0, others.length);
+        gameId = other.gameId;
+        ruleset = other.ruleset;
+        rules = other.rules;
+        hazardDamage = other.hazardDamage;
+        timeout = other.timeout;
+        turn = other.turn;
+        latency = other.latency;
+        System.arraycopy(other.occupant, 0, occupant, 0, occupant.length);
+        System.arraycopy(other.visit, 0, visit, 0, visit.length);
+        for (int s = 0; s < other.snakeCount; s++) {
+            addSnake(other.ids[s], other.names[s], other.health[s]);
+            reserve(s, other.body[s].length);
+            // laid out from the start of the ring again, the stamps don't depend on it
+            for (int i = 0; i < other.length[s]; i++) {
+                body[s][i] = other.segment(s, i);
+            }
+            length[s] = other.length[s];
+            head[s] = other.head[s];
+            steps[s] = other.steps[s];
+        }
+        you = other.you;
+    }
+
+    /**
+     * Build the board for a /move request. Our own snake is found by "you.id".
+     *
+     * @param moveRequest the full request as received from the Battlesnake Engine.
+     * @return the board, with {@link #you} pointing at our snake.
+     */
+    public static Board fromMoveRequest(JsonNode moveRequest) {
+        JsonNode boardNode = moveRequest.get("board");
+        JsonNode snakes = boardNode.get("snakes");
+        JsonNode youNode = moveRequest.get("you");
+        Board board = new Board(boardNode.get("width").asInt(), boardNode.get("height").asInt(), snakes.size() + 1);
+        JsonNode game = moveRequest.path("game");
+        board.gameId = game.path("id").asText();
+        board.ruleset = game.path("ruleset").path("name").asText("standard");
+        board.rules = Ruleset.of(board.ruleset);
+        board.hazardDamage = game.path("ruleset").path("settings").path("hazardDamagePerTurn")
+                .asInt(DEFAULT_HAZARD_DAMAGE);
+        board.timeout = game.path("timeout").asInt();
+        board.latency = youNode.path("latency").asInt();
+        board.turn = moveRequest.path("turn").asInt();
+
+        for (JsonNode point : boardNode.get("food")) {
+            set(board.food, board.cell(point));
+        }
+        for (JsonNode point : boardNode.path("hazards")) {
+            set(board.hazards, board.cell(point));
+        }
+
+        String youId = youNode.get("id").asText();
+        for (JsonNode snake : snakes) {
+            int s = board.addSnake(snake);
+            if (youId.equals(snake.get("id").asText())) {
+                board.you = s;
+            }
+        }
+        if (board.you < 0) {
+            board.you = board.addSnake(youNode);
+        }
+        board.markOwners();
+        return board;
+    }
+
+    /**
+     * Add a snake from its JsonNode, e.g. an entry of "board.snakes".
+     *
+     * @return the index of the new snake.
+     */
+    int addSnake(JsonNode snake) {
+        int s = addSnake(snake.path("id").asText(), snake.path("name").asText(), snake.path("health").asInt());
+        for (JsonNode point : snake.get("body")) {
+            addSegment(s, cell(point));
+        }
+        return s;
+    }
+
+    /**
+     * Add a snake without any segments yet, see {@link #addSegment(int, int)}.
+     *
+     * @return the index of the new snake.
+     */
+    int addSnake(String id, String name, int snakeHealth) {
+        int s = snakeCount++;
+        if (s == ids.length) {
+            int capacity = Math.max(4, s * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            health = Arrays.copyOf(health, capacity);
+            length = Arrays.copyOf(length, capacity);
+            head = Arrays.copyOf(head, capacity);
+            body = Arrays.copyOf(body, capacity);
+            first = Arrays.copyOf(first, capacity);
+            steps = Arrays.copyOf(steps, capacity);
+        }
+        ids[s] = id;
+        names[s] = name;
+        health[s] = snakeHealth;
+        length[s] = 0;
+        head[s] = -1;
+        first[s] = 0;
+        steps[s] = 0;
+        if (body[s] == null) {
+            body[s] = new int[16];
+        }
+        return s;
+    }
+
+    /**
+     * Append the next segment, head first, to the given snake.
+     */
+    void addSegment(int s, int cell) {
+        int n = length[s];
+        if (n == body[s].length) {
+            reserve(s, n + 1);
+        }
+        if (n == 0) {
+            head[s] = cell;
+            set(heads, cell);
+        }
+        // a cell stacked on the segment before it keeps the stamp of the one nearer the head
+        if (!isSet(bodies, cell)) {
+            occupant[cell] = s;
+            visit[cell] = steps[s] - n;
+        }
+        int[] ring = body[s];
+        ring[(first[s] + n) & (ring.length - 1)] = cell;
+        length[s] = n + 1;
+        set(bodies, cell);
+    }
+
+    /**
+     * Make sure the given snake's ring holds at least that many segments.
+     */
+    void reserve(int s, int capacity) {
+        int[] ring = body[s];
+        if (ring.length >= capacity) {
+            return;
+        }
+        int[] cells = new int[Integer.highestOneBit(capacity - 1) << 1];
+        for (int i = 0; i < length[s]; i++) {
+            cells[i] = ring[(first[s] + i) & (ring.length - 1)];
+        }
+        body[s] = cells;
+        first[s] = 0;
+    }
+
+    /**
+     * @return the i-th segment of the given snake, the head being the 0th.
+     */
+    int segment(int s, int i) {
+        int[] ring = body[s];
+        return ring[(first[s] + i) & (ring.length - 1)];
+    }
+
+    int tail(int s) {
+        return segment(s, length[s] - 1);
+    }
+
+    /**
+     * @return a copy of the given snake's segments, head first.
+     */
+    int[] segments(int s) {
+        int[] cells = new int[length[s]];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = segment(s, i);
+        }
+        return cells;
+    }
+
+    /**
+     * Move the given snake's head to the given cell, or off the board if it is -1. The tail
+     * is not touched: it drops out of the body because the length stays the same, and is
+     * still in the ring for {@link #grow(int)} and {@link #retreat(int, int, long)}. The
+     * ring needs room for one more segment. Only the arrays are updated, not the masks.
+     *
+     * @return what the cell held before, for {@link #retreat(int, int, long)}.
+     */
+    long advance(int s, int cell) {
+        int[] ring = body[s];
+        int slot = first[s] = (first[s] - 1) & (ring.length - 1);
+        ring[slot] = cell;
+        head[s] = cell;
+        steps[s]++;
+        if (cell < 0) {
+            return 0L;
+        }
+        long previous = (long) occupant[cell] << 32 | (visit[cell] & 0xFFFFFFFFL);
+        stamp(s);
+        return previous;
+    }
+
+    /**
+     * Grow by one segment after {@link #advance(int, int)}: the tail is held where it is, on
+     * top of the segment before it, as the engine does.
+     */
+    void grow(int s) {
+        int[] ring = body[s];
+        int n = length[s];
+        ring[(first[s] + n) & (ring.length - 1)] = ring[(first[s] + n - 1) & (ring.length - 1)];
+        length[s] = n + 1;
+    }
+
+    /**
+     * Take back an {@link #advance(int, int)}, after shortening the snake again if it grew.
+     * Snakes that moved in the same turn are taken back in the reverse order.
+     *
+     * @param tail     the tail before the move.
+     * @param previous what {@link #advance(int, int)} returned.
+     */
+    void retreat(int s, int tail, long previous) {
+        unstamp(head[s], previous);
+        steps[s]--;
+        int[] ring = body[s];
+        int mask = ring.length - 1;
+        int slot = first[s] = (first[s] + 1) & mask;
+        ring[(slot + length[s] - 1) & mask] = tail;
+        head[s] = ring[slot];
+    }
+
+    /**
+     * Claim the given snake's head cell again, after another snake moved into it as well.
+     */
+    void stamp(int s) {
+        occupant[head[s]] = s;
+        visit[head[s]] = steps[s];
+    }
+
+    /**
+     * Put back what a cell held before an {@link #advance(int, int)} into it.
+     */
+    void unstamp(int cell, long previous) {
+        if (cell >= 0) {
+            occupant[cell] = (int) (previous >>> 32);
+            visit[cell] = (int) previous;
+        }
+    }
+
+    /**
+     * Turns until the segment on the given cell has moved away, if nobody eats: 1 for a tail
+     * that moves on the next turn, 2 for a tail held on top of the segment before it, up to
+     * the snake's length for its head. Only meaningful for cells set in {@link #bodies}.
+     */
+    int freeIn(int cell) {
+        int s = occupant[cell];
+        return length[s] - (steps[s] - visit[cell]);
+    }
+
+    /**
+     * @return true if the given cell is still part of a body on the next turn.
+     */
+    boolean blockedNextTurn(int cell) {
+        return isSet(bodies, cell) && (freeIn(cell) > 1 || length[occupant[cell]] < 2);
+    }
+
+    /**
+     * Fill the {@link #mine} and {@link #others} masks once {@link #you} is known.
+     */
+    void markOwners() {
+        for (int i = 2; i < length[you]; i++) {
+            set(mine, segment(you, i));
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (s == you) {
+                continue;
+            }
+            for (int i = 0; i < length[s]; i++) {
+                set(others, segment(s, i));
+            }
+        }
+    }
+
+    /**
+     * A snake is on the board as long as its head bit is set; the search clears it for
+     * snakes it eliminates.
+     */
+    boolean onBoard(int s) {
+        return length[s] > 0 && isSet(heads, head[s]);
+    }
+
+    /**
+     * Mark the tails that move out of the way on the next turn. A tail stacked on the
+     * segment before it, right after eating, stays.
+     *
+     * @param tails mask to fill, as long as {@link #bodies}.
+     */
+    void movingTails(long[] tails) {
+        Arrays.fill(tails, 0L);
+        for (int s = 0; s < snakeCount; s++) {
+            int n = length[s];
+            if (n > 1 && onBoard(s) && segment(s, n - 1) != segment(s, n - 2)) {
+                set(tails, segment(s, n - 1));
+            }
+        }
+    }
+
+    /**
+     * Board just large enough to hold every given point plus a one cell margin. It is used
+     * by the JsonNode flavoured filters, which are called without the board dimensions; the
+     * margin makes sure every neighbour of a given point exists, so nothing is mistaken for a wall.
+     *
+     * @param points JsonNode points, or arrays of points, or arrays of snakes.
+     */
+    static Board covering(int maxSnakes, JsonNode... points) {
+        int[] max = {0, 0};
+        for (JsonNode node : points) {
+            extent(node, max);
+        }
+        return new Board(max[0] + 2, max[1] + 2, maxSnakes);
+    }
+
+    private static void extent(JsonNode node, int[] max) {
+        if (node == null) {
+            return;
+        }
+        if (node.isArray()) {
+            for (JsonNode child : node) {
+                extent(child, max);
+            }
+        } else if (node.has("x")) {
+            max[0] = Math.max(max[0], node.get("x").asInt());
+            max[1] = Math.max(max[1], node.get("y").asInt());
+        } else {
+            extent(node.get("head"), max);
+            extent(node.get("body"), max);
+        }
+    }
+
+    int cell(JsonNode point) {
+        return cell(point.get("x").asInt(), point.get("y").asInt());
+    }
+
+    /**
+     * @return the cell index, or -1 if (x, y) is off the board.
+     */
+    int cell(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return -1;
+        }
+        return y * width + x;
+    }
+
+    int x(int cell) {
+        return cell % width;
+    }
+
+    int y(int cell) {
+        return cell / width;
+    }
+
+    /**
+     * @return the cell next to the given one in the given direction, or -1 if that is a wall.
+     * In wrapped games there are no walls, the opposite edge is next instead.
+     */
+    int neighbour(int cell, int direction) {
+        return adjacency().next[cell << 2 | direction];
+    }
+
+    /**
+     * @return the neighbour table for the board's size and {@link #rules}. Loops over many
+     * cells should take {@link Adjacency#next} once and index it directly.
+     */
+    Adjacency adjacency() {
+        Adjacency table = adjacency;
+        if (table == null || !table.matches(width, height, rules.wrapped)) {
+            table = adjacency = Adjacency.of(width, height, rules.wrapped);
+        }
+        return table;
+    }
+
+    static boolean isSet(long[] mask, int cell) {
+        return cell >= 0 && (mask[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    static void set(long[] mask, int cell) {
+        mask[cell >>> 6] |= 1L << cell;
+    }
+
+    static void clear(long[] mask, int cell) {
+        mask[cell >>> 6] &= ~(1L << cell);
+    }
+}
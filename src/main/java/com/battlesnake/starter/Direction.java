@@ -0,0 +1,105 @@
+package com.battlesnake.starter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The four moves, in the order of the direction constants in {@link Board}.
+ *
+ * A set of moves is an int with bit {@link #bit} set for every move in it, so the move
+ * filters take moves away with a bit operation instead of removing names from a list.
+ */
+public enum Direction {
+    UP, DOWN, LEFT, RIGHT;
+
+    /**
+     * Every move.
+     */
+    public static final int ALL = 0b1111;
+
+    private static final Direction[] VALUES = values();
+
+    /**
+     * The move's bit in a set of moves.
+     */
+    final int bit = 1 << ordinal();
+
+    /**
+     * The move's name as it is sent back to the engine.
+     */
+    final String move = Board.MOVES[ordinal()];
+
+    static Direction of(int direction) {
+        return VALUES[direction];
+    }
+
+    /**
+     * @return the move with the given name, or null for anything else.
+     */
+    static Direction of(String move) {
+        for (Direction direction : VALUES) {
+            if (direction.move.equals(move)) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    static boolean contains(int moves, int direction) {
+        return (moves & 1 << direction) != 0;
+    }
+
+    static int count(int moves) {
+        return Integer.bitCount(moves);
+    }
+
+    /**
+     * @return the direction of the given set move, counted from 0 in direction order.
+     */
+    static int nth(int moves, int n) {
+        for (int i = 0; i < n; i++) {
+            moves &= moves - 1;
+        }
+        return Integer.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * @return the set of the named moves.
+     */
+    static int mask(List<String> moves) {
+        int mask = 0;
+        for (String move : moves) {
+            Direction direction = of(move);
+            if (direction != null) {
+                mask |= direction.bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Take every move that is not in the set out of the list.
+     *
+     * @return the list.
+     */
+    static <T extends List<String>> T retain(T moves, int mask) {
+        moves.removeIf(move -> {
+            Direction direction = of(move);
+            return direction == null || (mask & direction.bit) == 0;
+        });
+        return moves;
+    }
+
+    /**
+     * @return the names of the moves in the set, in direction order.
+     */
+    static ArrayList<String> names(int moves) {
+        ArrayList<String> names = new ArrayList<>(count(moves));
+        for (Direction direction : VALUES) {
+            if ((moves & direction.bit) != 0) {
+                names.add(direction.move);
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,502 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Exact solver for the two endgames the heuristic search plays badly, tried before it:
+ * <ul>
+ * <li>We are sealed into a region no other head can reach. The other snakes are held where
+ * they are, as walls, and a depth first search with memoization finds the move that
+ * survives the most turns, up to {@link Simulator#MAX_PLIES}. Moves into cells with the
+ * fewest ways on are tried first, so a way to survive is usually found on the first try.</li>
+ * <li>One opponent is left, and both our region and its region are small. An alpha-beta
+ * search, paranoid like {@link Search}, is run to ever larger horizons twice: once counting
+ * positions at the horizon as lost and once as won. The opponent replies knowing our move,
+ * which it does not in the real game, so the result is a lower bound for us. Only a win is
+ * therefore proven, and the move that wins fastest is played. A loss or a draw only means
+ * the search cannot do worse, and is left to it.</li>
+ * </ul>
+ * A region is counted like {@link FloodFill} does, so tails that move away are free. Both
+ * searches stop at their deadline, and then nothing is solved and the search decides.
+ *
+ * An instance owns its boards and tables, allocates nothing per move and is not thread safe.
+ */
+public class Endgame {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Endgame.class);
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    /**
+     * Outcomes of {@link #bestMove}: not an endgame or not solved in time, the turns we
+     * survive are in {@link #turns}, a proven win of the duel, and a duel lost or drawn
+     * against an opponent that sees our moves, which {@link #bestMove} leaves to the search.
+     */
+    static final int NONE = 0;
+    static final int SURVIVED = 1;
+    static final int WON = 2;
+    static final int LOST = 3;
+    static final int DREW = 4;
+
+    private static final int WIN = Search.WIN;
+    private static final int LOSS = Search.LOSS;
+    private static final int INFINITY = Search.INFINITY;
+    private static final int HORIZON = Simulator.MAX_PLIES;
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /**
+     * Entries of the memo table, a power of two.
+     */
+    private static final int MEMO_SIZE = 1 << 15;
+    private static final byte EXACT = 0;
+    private static final byte LOWER = 1;
+    private static final byte UPPER = 2;
+
+    /**
+     * Regions up to this many cells are solved.
+     */
+    private final int maxCells;
+
+    private final Board work = new Board(11, 11, 2);
+    private final Simulator simulator = new Simulator();
+    private int me;
+    private int opponent;
+
+    private long deadline;
+    private boolean aborted;
+    private int horizon;
+
+    /**
+     * Value given to a position at the horizon of the duel search, {@link #LOSS} or
+     * {@link #WIN}.
+     */
+    private int unknown;
+
+    /**
+     * Result, and the turns survived or until the result, of the last {@link #bestMove}.
+     */
+    int result;
+    int turns;
+    long nodes;
+
+    /**
+     * Breadth first search of a region, see {@link FloodFill}.
+     */
+    private int[] queue = new int[0];
+    private int[] seen = new int[0];
+    private int stamp;
+
+    /**
+     * Positions searched so far, by hash and ply. An entry belongs to the current search
+     * only if it carries the current generation.
+     */
+    private final long[] memoKeys = new long[MEMO_SIZE];
+    private final int[] memoValues = new int[MEMO_SIZE];
+    private final byte[] memoBounds = new byte[MEMO_SIZE];
+    private final int[] memoGenerations = new int[MEMO_SIZE];
+    private int generation;
+
+    /**
+     * Our moves per ply in the order they are tried, and the free cells next to where each
+     * of them leads.
+     */
+    private final int[][] orders = new int[HORIZON + 1][4];
+    private final int[][] exits = new int[HORIZON + 1][4];
+
+    /**
+     * Score of the move {@link #root} returned.
+     */
+    private int rootScore;
+
+    /**
+     * @param maxCells largest region that is solved, in cells.
+     */
+    public Endgame(int maxCells) {
+        this.maxCells = maxCells;
+    }
+
+    /**
+     * Solve the position if it is one of the endgames and there is time for it.
+     *
+     * @param board      the board of the current request, not changed.
+     * @param candidates directions we are allowed to pick from, best first.
+     * @param count      number of entries in candidates.
+     * @param deadline   System.nanoTime() value at which the solver has to give up.
+     * @return the solved move, or -1 if the search has to decide.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline) {
+        this.deadline = deadline;
+        aborted = false;
+        result = NONE;
+        turns = 0;
+        nodes = 0;
+        int you = board.you;
+
+        int area = region(board, board.head[you]);
+        if (area > maxCells) {
+            return -1;
+        }
+        int ours = stamp;
+        int touching = 0;
+        int other = -1;
+        int opponents = 0;
+        int[] next = board.adjacency().next;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if (s == you || !board.onBoard(s)) {
+                continue;
+            }
+            opponents++;
+            for (int direction = 0; direction < 4; direction++) {
+                int cell = next[board.head[s] << 2 | direction];
+                if (cell >= 0 && seen[cell] == ours) {
+                    touching++;
+                    other = s;
+                    break;
+                }
+            }
+        }
+
+        int move = -1;
+        if (touching == 0) {
+            move = survive(board, candidates, count);
+        } else if (touching == 1 && opponents == 1 && board.snakeCount == 2
+                && region(board, board.head[other]) <= maxCells) {
+            move = duel(board, candidates, count);
+        } else {
+            return -1;
+        }
+
+        if (move < 0) {
+            METRICS.endgamesUnsolved.increment();
+            if (result == NONE) {
+                MOVE_LOG.info(LOG, "Endgame not solved in time after {} nodes", nodes);
+            } else if (MOVE_LOG.enabled()) {
+                MOVE_LOG.info(LOG, "Endgame duel {} at worst after {} turns, searching", result == LOST ? "lost" : "drawn",
+                        turns);
+            }
+        } else {
+            METRICS.endgamesSolved.increment();
+            if (MOVE_LOG.enabled()) {
+                MOVE_LOG.info(LOG, "Endgame solved with {} nodes: {} after {} turns, going {}",
+                        nodes, result == SURVIVED ? "survived" : "won",
+                        turns, Board.MOVES[move]);
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Count the cells reachable from a head, stopping once there are more than
+     * {@link #maxCells}. They are marked with the current {@link #stamp}.
+     */
+    private int region(Board board, int head) {
+        int cells = board.width * board.height;
+        if (seen.length < cells) {
+            seen = new int[cells];
+            queue = new int[cells];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        int[] next = board.adjacency().next;
+        seen[head] = stamp;
+        queue[0] = head;
+        int tail = 1;
+        int count = 0;
+        for (int index = 0; index < tail && count <= maxCells; index++) {
+            int cell = queue[index];
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbour = next[cell << 2 | direction];
+                if (neighbour >= 0 && seen[neighbour] != stamp && !board.blockedNextTurn(neighbour)) {
+                    seen[neighbour] = stamp;
+                    queue[tail++] = neighbour;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Our snake alone on {@link #work}, with every other body held where it is.
+     */
+    private int survive(Board board, int[] candidates, int count) {
+        int you = board.you;
+        work.reset(board.width, board.height);
+        work.rules = board.rules;
+        work.ruleset = board.ruleset;
+        work.hazardDamage = board.hazardDamage;
+        work.turn = board.turn;
+        System.arraycopy(board.food, 0, work.food, 0, work.food.length);
+        System.arraycopy(board.hazards, 0, work.hazards, 0, work.hazards.length);
+        me = work.addSnake(board.ids[you], board.names[you], board.health[you]);
+        for (int i = 0; i < board.length[you]; i++) {
+            work.addSegment(me, board.segment(you, i));
+        }
+        work.you = me;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if (s != you && board.onBoard(s)) {
+                for (int i = 0; i < board.length[s]; i++) {
+                    Board.set(work.bodies, board.segment(s, i));
+                }
+            }
+        }
+        work.markOwners();
+        simulator.prepare(work);
+        generation++;
+        horizon = HORIZON;
+
+        int best = -1;
+        int bestTurns = -1;
+        for (int i = 0; i < count && bestTurns < horizon; i++) {
+            simulator.moves(0)[me] = candidates[i];
+            simulator.makeTurn(0);
+            int survived = simulator.alive(me) ? 1 + survive(1) : 0;
+            simulator.unmakeTurn(0);
+            if (aborted) {
+                return -1;
+            }
+            if (survived > bestTurns) {
+                bestTurns = survived;
+                best = candidates[i];
+            }
+        }
+        result = SURVIVED;
+        turns = bestTurns;
+        return best;
+    }
+
+    /**
+     * @return the most turns we survive from this ply on, up to the {@link #horizon}.
+     */
+    private int survive(int ply) {
+        if (ply == horizon || tick()) {
+            return 0;
+        }
+        long key = key(ply);
+        int index = (int) key & (MEMO_SIZE - 1);
+        if (memoGenerations[index] == generation && memoKeys[index] == key) {
+            return memoValues[index];
+        }
+
+        int[] moves = orders[ply];
+        int count = order(ply);
+        int best = 0;
+        for (int i = 0; i < count && best < horizon - ply; i++) {
+            simulator.moves(ply)[me] = moves[i];
+            simulator.makeTurn(ply);
+            int survived = simulator.alive(me) ? 1 + survive(ply + 1) : 0;
+            simulator.unmakeTurn(ply);
+            if (aborted) {
+                return 0;
+            }
+            best = Math.max(best, survived);
+        }
+        store(key, index, best, EXACT);
+        return best;
+    }
+
+    /**
+     * Fill the ply's {@link #orders} with our playable moves, those into the cells with the
+     * fewest free neighbours first.
+     *
+     * @return the number of moves.
+     */
+    private int order(int ply) {
+        int[] moves = orders[ply];
+        int[] keys = exits[ply];
+        int[] next = work.adjacency().next;
+        int head = work.head[me];
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            if (!simulator.playable(me, direction)) {
+                continue;
+            }
+            int cell = next[head << 2 | direction];
+            int free = 0;
+            for (int onward = 0; onward < 4; onward++) {
+                int neighbour = next[cell << 2 | onward];
+                if (neighbour >= 0 && !Board.isSet(work.bodies, neighbour)) {
+                    free++;
+                }
+            }
+            // insertion sort, there are at most three
+            int i = count++;
+            while (i > 0 && keys[i - 1] > free) {
+                moves[i] = moves[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
+            }
+            moves[i] = direction;
+            keys[i] = free;
+        }
+        return count;
+    }
+
+    /**
+     * Prove the duel with {@link #opponent} won, deepening the horizon a ply at a time. Stops
+     * as soon as even counting the horizon as won shows no win.
+     *
+     * @return the winning move, or -1 with the bound in {@link #result} if there is none.
+     */
+    private int duel(Board board, int[] candidates, int count) {
+        work.copyFrom(board);
+        me = work.you;
+        opponent = 1 - me;
+        simulator.prepare(work);
+
+        for (horizon = 1; horizon <= HORIZON; horizon++) {
+            unknown = LOSS;
+            generation++;
+            int lowerMove = root(candidates, count);
+            int lower = rootScore;
+            if (aborted) {
+                return -1;
+            }
+            if (lower >= WIN - HORIZON) {
+                result = WON;
+                turns = WIN - lower;
+                return lowerMove;
+            }
+            unknown = WIN;
+            generation++;
+            root(candidates, count);
+            int upper = rootScore;
+            if (aborted) {
+                return -1;
+            }
+            if (upper <= LOSS + HORIZON) {
+                result = LOST;
+                turns = upper - LOSS;
+                return -1;
+            }
+            if (lower == 0 && upper == 0) {
+                result = DREW;
+                turns = horizon;
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Our best move of the given candidates at the current horizon, its score goes into
+     * {@link #rootScore}.
+     */
+    private int root(int[] candidates, int count) {
+        int alpha = -INFINITY;
+        int best = candidates[0];
+        for (int i = 0; i < count; i++) {
+            simulator.moves(0)[me] = candidates[i];
+            int score = min(0, alpha, INFINITY);
+            if (aborted) {
+                return -1;
+            }
+            if (score > alpha) {
+                alpha = score;
+                best = candidates[i];
+            }
+        }
+        rootScore = alpha;
+        return best;
+    }
+
+    private int max(int ply, int alpha, int beta) {
+        if (ply == horizon) {
+            return unknown;
+        }
+        if (tick()) {
+            return 0;
+        }
+        long key = key(ply);
+        int index = (int) key & (MEMO_SIZE - 1);
+        if (memoGenerations[index] == generation && memoKeys[index] == key) {
+            int score = memoValues[index];
+            byte bound = memoBounds[index];
+            if (bound == EXACT || (bound == LOWER && score >= beta) || (bound == UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+
+        int alphaBefore = alpha;
+        int best = -INFINITY;
+        for (int direction = 0; direction < 4; direction++) {
+            if (!simulator.playable(me, direction)) {
+                continue;
+            }
+            simulator.moves(ply)[me] = direction;
+            int score = min(ply, alpha, beta);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                alpha = Math.max(alpha, score);
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        store(key, index, best, best <= alphaBefore ? UPPER : best >= beta ? LOWER : EXACT);
+        return best;
+    }
+
+    /**
+     * The opponent's reply to our move at this ply, and the turn they make together.
+     */
+    private int min(int ply, int alpha, int beta) {
+        int best = INFINITY;
+        for (int direction = 0; direction < 4; direction++) {
+            if (!simulator.playable(opponent, direction)) {
+                continue;
+            }
+            simulator.moves(ply)[opponent] = direction;
+            simulator.makeTurn(ply);
+            boolean alive = simulator.alive(me);
+            boolean won = !simulator.alive(opponent);
+            int score = !alive ? (won ? 0 : LOSS + ply + 1)
+                    : won ? WIN - ply - 1
+                    : max(ply + 1, alpha, beta);
+            simulator.unmakeTurn(ply);
+            if (aborted) {
+                return 0;
+            }
+            if (score < best) {
+                best = score;
+                beta = Math.min(beta, score);
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    private long key(int ply) {
+        return simulator.hash() + (ply + 1) * 0x9E3779B97F4A7C15L;
+    }
+
+    private void store(long key, int index, int value, byte bound) {
+        memoKeys[index] = key;
+        memoValues[index] = value;
+        memoBounds[index] = bound;
+        memoGenerations[index] = generation;
+    }
+
+    /**
+     * Count a node and read the clock now and then.
+     *
+     * @return true once the deadline has passed.
+     */
+    private boolean tick() {
+        if (++nodes % CLOCK_INTERVAL == 0 && System.nanoTime() > deadline) {
+            aborted = true;
+        }
+        return aborted;
+    }
+}
@@ -0,0 +1,103 @@
+package com.battlesnake.starter;
+
+import java.util.Arrays;
+
+/**
+ * Counts the free cells that can be reached from a cell, with a breadth first search over
+ * the board's bitsets.
+ *
+ * The queue and the visited marks are plain int arrays that are kept between calls. Instead
+ * of clearing the visited array, every call uses a new stamp and a cell counts as visited
+ * when it holds the current stamp, so a call allocates nothing and touches only the cells it
+ * reaches. An instance is not thread safe.
+ *
+ * Body segments block, except tails that move out of the way on the next turn, which
+ * {@link Board#blockedNextTurn(int)} tells from the cell alone.
+ */
+public class FloodFill {
+
+    private int[] queue = new int[0];
+    private int[] visited = new int[0];
+    private int stamp;
+
+    /**
+     * Size of the region a snake would end up in by moving to the given cell.
+     *
+     * @param board the board to fill on.
+     * @param start the cell to start from, counted if it is free.
+     * @param limit stop counting once this many cells were found.
+     * @return number of reachable cells, at most limit, or 0 if start is a wall or blocked.
+     */
+    public int area(Board board, int start, int limit) {
+        prepare(board);
+        if (start < 0 || blocked(board, start)) {
+            return 0;
+        }
+        visited[start] = stamp;
+        queue[0] = start;
+        return fill(board, 1, limit);
+    }
+
+    /**
+     * Room around a snake's head: the cells reachable from it, the head itself not counted.
+     *
+     * @param board the board to fill on.
+     * @param head  the head cell, which is part of a body and so never free.
+     * @param limit stop counting once this many cells were found.
+     * @return number of reachable cells, at most limit.
+     */
+    public int room(Board board, int head, int limit) {
+        prepare(board);
+        visited[head] = stamp;
+        int[] neighbours = board.adjacency().next;
+        int tail = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            int next = neighbours[head << 2 | direction];
+            if (next >= 0 && visited[next] != stamp && !blocked(board, next)) {
+                visited[next] = stamp;
+                queue[tail++] = next;
+            }
+        }
+        return fill(board, tail, limit);
+    }
+
+    /**
+     * Breadth first from the cells already in the queue, counting every cell that is taken
+     * off it.
+     */
+    private int fill(Board board, int tail, int limit) {
+        int[] neighbours = board.adjacency().next;
+        int count = 0;
+        int index = 0;
+        while (index < tail && count < limit) {
+            int cell = queue[index++];
+            count++;
+            for (int direction = 0; direction < 4; direction++) {
+                int next = neighbours[cell << 2 | direction];
+                if (next >= 0 && visited[next] != stamp && !blocked(board, next)) {
+                    visited[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean blocked(Board board, int cell) {
+        return board.blockedNextTurn(cell);
+    }
+
+    private void prepare(Board board) {
+        int cells = board.width * board.height;
+        if (visited.length < cells) {
+            visited = new int[cells];
+            queue = new int[cells];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            // wrapped around, old stamps could match again
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+    }
+}
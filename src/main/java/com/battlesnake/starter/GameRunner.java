@@ -0,0 +1,470 @@
+package com.battlesnake.starter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays whole games in process, without HTTP, for tuning and for catching regressions.
+ *
+ * Every turn each living snake decides on a board seen from its side, then the
+ * {@link Simulator} plays all moves at once. Games run in parallel, one per thread, and the
+ * runner prints win rates, turns survived and move latency percentiles per snake. For the
+ * handler it also prints the moves answered without a search result, which shows when the
+ * results describe the filters' fallback rather than the search.
+ *
+ * Usage: GameRunner [--games 100] [--snakes handler,filters,random] [--sizes 11x11,19x19]
+ * [--rulesets standard,wrapped] [--timeout 100] [--max-turns 1000] [--threads cores] [--seed 1]
+ */
+public class GameRunner {
+
+    /**
+     * How a snake picks its moves.
+     */
+    enum Strategy {
+        /**
+         * {@link Snake.Handler}, filters and search, as on /move.
+         */
+        HANDLER,
+        /**
+         * The handler's filters only, a random one of the moves they leave.
+         */
+        FILTERS,
+        /**
+         * Any move that stays on the board and out of the neck.
+         */
+        RANDOM
+    }
+
+    /**
+     * Food spawning of the standard rules: at least this much food, and otherwise a new one
+     * with this chance every turn.
+     */
+    static final int MINIMUM_FOOD = 1;
+    static final int FOOD_SPAWN_PERCENT = 15;
+
+    /**
+     * In royale, hazards cover one more ring from the edges every this many turns.
+     */
+    static final int SHRINK_EVERY = 25;
+
+    private final Snake.Handler handler;
+    private final Strategy[] strategies;
+    private final int timeout;
+    private final int maxTurns;
+
+    /**
+     * Move latency per snake, across all games.
+     */
+    final Metrics.Histogram[] latency;
+    private final AtomicLong games = new AtomicLong();
+
+    GameRunner(Snake.Handler handler, Strategy[] strategies, int timeout, int maxTurns) {
+        this.handler = handler;
+        this.strategies = strategies;
+        this.timeout = timeout;
+        this.maxTurns = maxTurns;
+        this.latency = new Metrics.Histogram[strategies.length];
+        for (int s = 0; s < strategies.length; s++) {
+            latency[s] = new Metrics.Histogram();
+        }
+    }
+
+    /**
+     * How one game ended.
+     */
+    static final class Result {
+        final int turns;
+
+        /**
+         * Snake that was left last, -1 if the last ones died together or nobody was left
+         * to win against.
+         */
+        final int winner;
+        final int[] survived;
+
+        Result(int turns, int winner, int[] survived) {
+            this.turns = turns;
+            this.winner = winner;
+            this.survived = survived;
+        }
+    }
+
+    /**
+     * Play one game to the end, or to the turn limit.
+     */
+    Result play(int width, int height, Ruleset rules, long seed) {
+        return new Game(width, height, rules, new Random(seed), "game-" + games.incrementAndGet()).play();
+    }
+
+    /**
+     * State of one game between turns. Snakes keep their index for the whole game; the
+     * boards handed to the snakes and to the simulator only hold the living ones.
+     */
+    private final class Game {
+        private final int width;
+        private final int height;
+        private final Ruleset rules;
+        private final Random random;
+        private final String id;
+        private final int snakes = strategies.length;
+
+        private final int[][] cells = new int[snakes][];
+        private final int[] length = new int[snakes];
+        private final int[] health = new int[snakes];
+        private final boolean[] alive = new boolean[snakes];
+        private final int[] survived = new int[snakes];
+        private long[] food;
+        private long[] hazards;
+        private int turn;
+
+        /**
+         * Snake of each index on the last board built.
+         */
+        private final int[] slot = new int[snakes];
+
+        Game(int width, int height, Ruleset rules, Random random, String id) {
+            this.width = width;
+            this.height = height;
+            this.rules = rules;
+            this.random = random;
+            this.id = id;
+            int words = (width * height + 63) >>> 6;
+            food = new long[words];
+            hazards = new long[words];
+        }
+
+        Result play() {
+            start();
+            int[] moves = new int[snakes];
+            while (living() > (snakes > 1 ? 1 : 0) && turn < maxTurns) {
+                for (int s = 0; s < snakes; s++) {
+                    if (alive[s]) {
+                        moves[s] = decide(s);
+                    }
+                }
+                advance(moves);
+            }
+            int winner = -1;
+            for (int s = 0; s < snakes; s++) {
+                if (alive[s]) {
+                    survived[s] = turn;
+                    winner = snakes > 1 && living() == 1 ? s : -1;
+                }
+            }
+            return new Result(turn, winner, survived);
+        }
+
+        /**
+         * Snakes start stacked on one cell near the edges, like the engine places them, and
+         * there is food for each of them.
+         */
+        private void start() {
+            int low = 1;
+            int mid = (width - 1) / 2;
+            int highX = width - 2;
+            int highY = height - 2;
+            int midY = (height - 1) / 2;
+            List<Integer> spots = new ArrayList<>(Arrays.asList(
+                    low * width + low, highY * width + highX, highY * width + low, low * width + highX,
+                    low * width + mid, highY * width + mid, midY * width + low, midY * width + highX));
+            if (snakes > spots.size()) {
+                throw new IllegalArgumentException("At most " + spots.size() + " snakes");
+            }
+            Collections.shuffle(spots, random);
+            for (int s = 0; s < snakes; s++) {
+                int spot = spots.get(s);
+                cells[s] = new int[]{spot, spot, spot};
+                length[s] = 3;
+                health[s] = 100;
+                alive[s] = true;
+            }
+            if (!rules.alwaysGrow) {
+                for (int s = 0; s < snakes; s++) {
+                    spawnFood();
+                }
+            }
+        }
+
+        private int decide(int s) {
+            // a new board every time, a search that misses its deadline may still be using the last one
+            Board board = board(s);
+            long started = System.nanoTime();
+            int move;
+            switch (strategies[s]) {
+                case HANDLER:
+                    move = handler.decide(board, started);
+                    break;
+                case FILTERS:
+                    move = pick(handler.filter(board));
+                    break;
+                default:
+                    move = pick(board);
+                    break;
+            }
+            latency[s].record(System.nanoTime() - started);
+            return move;
+        }
+
+        private int pick(int moves) {
+            return moves == 0 ? Board.UP : Direction.nth(moves, random.nextInt(Direction.count(moves)));
+        }
+
+        private int pick(Board board) {
+            int[] playable = new int[4];
+            int count = 0;
+            int head = board.head[board.you];
+            for (int direction = 0; direction < 4; direction++) {
+                int next = board.neighbour(head, direction);
+                if (next >= 0 && (board.length[board.you] < 2 || next != board.segment(board.you, 1))) {
+                    playable[count++] = direction;
+                }
+            }
+            return count == 0 ? Board.UP : playable[random.nextInt(count)];
+        }
+
+        /**
+         * Play one turn. A snake that leaves the board is taken off before the others move,
+         * the simulator only plays moves that stay on it.
+         */
+        private void advance(int[] moves) {
+            Board board = board(-1);
+            for (int b = 0; b < board.snakeCount; b++) {
+                int s = slot[b];
+                if (board.neighbour(board.head[b], moves[s]) < 0) {
+                    eliminate(s, turn + 1);
+                }
+            }
+            board = board(-1);
+            if (board.snakeCount > 0) {
+                Simulator simulator = new Simulator();
+                simulator.prepare(board);
+                int[] played = simulator.moves(0);
+                for (int b = 0; b < board.snakeCount; b++) {
+                    played[b] = moves[slot[b]];
+                }
+                simulator.makeTurn(0);
+                for (int b = 0; b < board.snakeCount; b++) {
+                    int s = slot[b];
+                    if (simulator.alive(b)) {
+                        length[s] = board.length[b];
+                        cells[s] = board.segments(b);
+                        health[s] = board.health[b];
+                    } else {
+                        eliminate(s, turn + 1);
+                    }
+                }
+                food = board.food.clone();
+            }
+            turn++;
+            if (!rules.alwaysGrow && (count(food) < MINIMUM_FOOD || random.nextInt(100) < FOOD_SPAWN_PERCENT)) {
+                spawnFood();
+            }
+            if (rules == Ruleset.ROYALE && turn % SHRINK_EVERY == 0) {
+                shrink(turn / SHRINK_EVERY);
+            }
+        }
+
+        private void eliminate(int s, int atTurn) {
+            alive[s] = false;
+            survived[s] = atTurn;
+        }
+
+        /**
+         * Hazards on every cell less than the given number of rings from an edge.
+         */
+        private void shrink(int rings) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (Math.min(Math.min(x, y), Math.min(width - 1 - x, height - 1 - y)) < rings) {
+                        Board.set(hazards, y * width + x);
+                    }
+                }
+            }
+        }
+
+        private void spawnFood() {
+            Board board = board(-1);
+            int free = 0;
+            for (int cell = 0; cell < width * height; cell++) {
+                if (!Board.isSet(board.bodies, cell) && !Board.isSet(food, cell)) {
+                    free++;
+                }
+            }
+            if (free == 0) {
+                return;
+            }
+            int pick = random.nextInt(free);
+            for (int cell = 0; cell < width * height; cell++) {
+                if (!Board.isSet(board.bodies, cell) && !Board.isSet(food, cell) && pick-- == 0) {
+                    Board.set(food, cell);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * The board of the current turn with the living snakes, as the given snake would get
+         * it on /move, or with the first of them as "you" for -1.
+         */
+        private Board board(int you) {
+            Board board = new Board(width, height, snakes);
+            board.gameId = you >= 0 ? id + "/" + you : id;
+            board.ruleset = rules.id;
+            board.rules = rules;
+            board.timeout = timeout;
+            board.turn = turn;
+            System.arraycopy(food, 0, board.food, 0, food.length);
+            System.arraycopy(hazards, 0, board.hazards, 0, hazards.length);
+            for (int s = 0; s < snakes; s++) {
+                if (!alive[s]) {
+                    continue;
+                }
+                int b = board.addSnake("snake-" + s, strategies[s].name().toLowerCase(), health[s]);
+                for (int i = 0; i < length[s]; i++) {
+                    board.addSegment(b, cells[s][i]);
+                }
+                slot[b] = s;
+                if (s == you) {
+                    board.you = b;
+                }
+            }
+            if (board.you < 0 && board.snakeCount > 0) {
+                board.you = 0;
+            }
+            if (board.you >= 0) {
+                board.markOwners();
+            }
+            return board;
+        }
+
+        private int living() {
+            int count = 0;
+            for (boolean a : alive) {
+                count += a ? 1 : 0;
+            }
+            return count;
+        }
+    }
+
+    private static int count(long[] mask) {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException {
+        int gameCount = 100;
+        String snakes = "handler,filters";
+        String sizes = "11x11";
+        String rulesets = "standard";
+        int timeout = 100;
+        int maxTurns = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--games":
+                    gameCount = Integer.parseInt(value);
+                    break;
+                case "--snakes":
+                    snakes = value;
+                    break;
+                case "--sizes":
+                    sizes = value;
+                    break;
+                case "--rulesets":
+                    rulesets = value;
+                    break;
+                case "--timeout":
+                    timeout = Integer.parseInt(value);
+                    break;
+                case "--max-turns":
+                    maxTurns = Integer.parseInt(value);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        // games run in parallel already, and logging every move would drown the results
+        System.getProperties().putIfAbsent("SEARCH_THREADS", "1");
+        System.getProperties().putIfAbsent("LOG_MODE", "off");
+        System.getProperties().putIfAbsent("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+        String[] names = snakes.split(",");
+        Strategy[] strategies = new Strategy[names.length];
+        for (int s = 0; s < names.length; s++) {
+            strategies[s] = Strategy.valueOf(names[s].trim().toUpperCase());
+        }
+        String[] sizeList = sizes.split(",");
+        String[] rulesetList = rulesets.split(",");
+        GameRunner runner = new GameRunner(new Snake.Handler(), strategies, timeout, maxTurns);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> results = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int game = 0; game < gameCount; game++) {
+            String[] size = sizeList[game % sizeList.length].split("x");
+            int width = Integer.parseInt(size[0]);
+            int height = Integer.parseInt(size[1]);
+            Ruleset rules = Ruleset.of(rulesetList[(game / sizeList.length) % rulesetList.length]);
+            long gameSeed = seed * 1_000_003L + game;
+            results.add(pool.submit(() -> runner.play(width, height, rules, gameSeed)));
+        }
+
+        int[] wins = new int[strategies.length];
+        long[] survived = new long[strategies.length];
+        long turns = 0;
+        int draws = 0;
+        for (Future<Result> future : results) {
+            Result result = future.get();
+            turns += result.turns;
+            if (result.winner >= 0) {
+                wins[result.winner]++;
+            } else {
+                draws++;
+            }
+            for (int s = 0; s < strategies.length; s++) {
+                survived[s] += result.survived[s];
+            }
+        }
+        pool.shutdown();
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d games on %s, %s in %.1f s, %.1f turns on average, %d without a winner%n",
+                gameCount, sizes, rulesets, seconds, (double) turns / gameCount, draws);
+        // the handlers share one controller, so its counts are for all of them together
+        MoveController controller = Snake.Handler.controller();
+        System.out.printf("%-6s %-8s %6s %6s %10s %8s %8s %8s %8s %9s %9s%n",
+                "snake", "strategy", "wins", "win%", "survived", "p50 ms", "p90 ms", "p99 ms", "max ms",
+                "rejected", "timeouts");
+        for (int s = 0; s < strategies.length; s++) {
+            Metrics.Histogram histogram = runner.latency[s];
+            boolean searched = strategies[s] == Strategy.HANDLER;
+            System.out.printf("%-6d %-8s %6d %5.1f%% %10.1f %8.2f %8.2f %8.2f %8.2f %9s %9s%n",
+                    s, strategies[s].name().toLowerCase(), wins[s], 100.0 * wins[s] / gameCount,
+                    (double) survived[s] / gameCount, histogram.percentile(0.5) / 1e3,
+                    histogram.percentile(0.9) / 1e3, histogram.percentile(0.99) / 1e3,
+                    histogram.percentile(1) / 1e3,
+                    searched ? String.valueOf(controller.rejected.sum()) : "-",
+                    searched ? String.valueOf(controller.timeouts.sum()) : "-");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Per-game state kept between the requests of one game, keyed by "game.id".
+ *
+ * /start creates a session, every /move reads and updates it, and /end evicts it. Sessions
+ * whose /end never arrives are dropped after a time to live, and the store never holds more
+ * than a fixed number of games; when it is full the game that was seen least recently goes.
+ * Expired sessions are looked for on /start, when the store is full, and on a lookup at most
+ * a few times per time to live; a session that has expired is never handed out again.
+ *
+ * Every session that goes, however it goes, is passed to a listener, which cancels its
+ * pondering, see {@link Ponder}.
+ */
+public class GameSessions {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GameSessions.class);
+
+    /**
+     * What the last search of a game found.
+     */
+    public static class GameSession {
+        final String gameId;
+        volatile long lastSeen;
+
+        /**
+         * Turn and depth of the last answered /move, -1 before the first one. Written by the
+         * search and read by the next request, which may run on another thread.
+         */
+        volatile int turn = -1;
+        volatile int depth;
+
+        /**
+         * Turn of the last answer the {@link MoveController} timed, and how long it took from
+         * arrival to answer, in milliseconds. The time is written before the turn, so a reader
+         * that sees the turn also sees its time.
+         */
+        volatile int timedTurn = -1;
+        volatile int elapsedMs;
+
+        /**
+         * Pondering on the positions after the last answer, or null.
+         */
+        volatile Ponder.Task pondering;
+
+        GameSession(String gameId, long now) {
+            this.gameId = gameId;
+            this.lastSeen = now;
+        }
+
+        /**
+         * @return true if the last answer was for the turn right before the given one.
+         */
+        boolean follows(int nextTurn) {
+            return turn >= 0 && turn + 1 == nextTurn;
+        }
+
+        void record(int answeredTurn, int depthReached) {
+            // depth first, so a reader that sees the turn sees its depth
+            depth = depthReached;
+            turn = answeredTurn;
+        }
+    }
+
+    private final Map<String, GameSession> sessions = new ConcurrentHashMap<>();
+    private final int maxSessions;
+    private final long ttlMillis;
+    private final Consumer<GameSession> removed;
+
+    /**
+     * System.currentTimeMillis() after which a lookup drops the expired sessions.
+     */
+    private volatile long nextExpiry;
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    public GameSessions(int maxSessions, long ttlMillis) {
+        this(maxSessions, ttlMillis, session -> {
+        });
+    }
+
+    /**
+     * @param removed called with every session that is ended, expired, dropped for room or
+     *                replaced by a new /start.
+     */
+    public GameSessions(int maxSessions, long ttlMillis, Consumer<GameSession> removed) {
+        this.maxSessions = maxSessions;
+        this.ttlMillis = ttlMillis;
+        this.removed = removed;
+    }
+
+    /**
+     * Open a fresh session for a game, replacing any old one with the same id.
+     */
+    public GameSession start(String gameId) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        if (!sessions.containsKey(gameId)) {
+            makeRoom(now);
+        }
+        GameSession session = new GameSession(gameId, now);
+        GameSession replaced = sessions.put(gameId, session);
+        if (replaced != null) {
+            removed.accept(replaced);
+        }
+        return session;
+    }
+
+    /**
+     * Look up the session of a game. If /start never reached this server, a new session is
+     * opened and counted as a miss.
+     */
+    public GameSession get(String gameId) {
+        long now = System.currentTimeMillis();
+        if (now >= nextExpiry) {
+            expire(now);
+        }
+        GameSession session = sessions.get(gameId);
+        if (session != null && now - session.lastSeen > ttlMillis) {
+            // expired since the last sweep, this game starts over
+            if (sessions.remove(gameId, session)) {
+                evictions.increment();
+                removed.accept(session);
+            }
+            session = null;
+        }
+        if (session != null) {
+            hits.increment();
+            session.lastSeen = now;
+            return session;
+        }
+        misses.increment();
+        makeRoom(now);
+        return sessions.computeIfAbsent(gameId, id -> new GameSession(id, now));
+    }
+
+    /**
+     * Forget a game, usually on /end.
+     *
+     * @return the game's session, or null if there was none.
+     */
+    public GameSession end(String gameId) {
+        GameSession session = sessions.remove(gameId);
+        if (session != null) {
+            removed.accept(session);
+        }
+        return session;
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Drop expired sessions, and the least recently seen one if the store is still full.
+     */
+    private void makeRoom(long now) {
+        if (sessions.size() < maxSessions) {
+            return;
+        }
+        expire(now);
+        while (sessions.size() >= maxSessions) {
+            GameSession oldest = null;
+            for (GameSession session : sessions.values()) {
+                if (oldest == null || session.lastSeen < oldest.lastSeen) {
+                    oldest = session;
+                }
+            }
+            if (oldest == null || !sessions.remove(oldest.gameId, oldest)) {
+                return;
+            }
+            evictions.increment();
+            removed.accept(oldest);
+            LOG.info("Session store full, dropped game {}", oldest.gameId);
+        }
+    }
+
+    /**
+     * Drop every session that has not been seen for longer than the time to live.
+     */
+    void expire(long now) {
+        nextExpiry = now + Math.max(1, ttlMillis / 4);
+        for (GameSession session : sessions.values()) {
+            if (now - session.lastSeen > ttlMillis && sessions.remove(session.gameId, session)) {
+                evictions.increment();
+                removed.accept(session);
+                LOG.info("Game {} expired without /end", session.gameId);
+            }
+        }
+    }
+}
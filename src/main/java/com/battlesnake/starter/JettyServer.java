@@ -0,0 +1,196 @@
+package com.battlesnake.starter;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Server for the routes on Jetty directly, instead of through Spark, selected with
+ * SERVER=jetty.
+ *
+ * Requests are read on a bounded pool of request threads with a bounded queue. /move is
+ * handed to a separate, bounded compute pool as an async request, so the request thread is
+ * free again right away and a slow search never holds up / or /end. A /move that finds the
+ * compute pool and its queue full, or whose search fails, is answered from the move filters
+ * alone, see {@link Snake.Handler#fallback(byte[])}.
+ *
+ * The search itself runs on a third pool, the threads of the {@link MoveController}. The
+ * compute thread only waits for it, so it can answer at the deadline while a late search is
+ * left to finish, which a search running on the compute thread would not allow.
+ */
+public class JettyServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JettyServer.class);
+
+    private final Snake.Handler handler;
+    private final Server server;
+    private final ServerConnector connector;
+    private final ThreadPoolExecutor compute;
+
+    /**
+     * Configured by SERVER_THREADS, SERVER_QUEUE, SERVER_ACCEPTORS, SERVER_SELECTORS,
+     * SERVER_IDLE_MS, COMPUTE_THREADS and COMPUTE_QUEUE.
+     */
+    static JettyServer fromProperties(Snake.Handler handler, int port) {
+        return new JettyServer(handler, port,
+                Integer.getInteger("SERVER_THREADS", 32),
+                Integer.getInteger("SERVER_QUEUE", 256),
+                Integer.getInteger("SERVER_ACCEPTORS", -1),
+                Integer.getInteger("SERVER_SELECTORS", -1),
+                Integer.getInteger("SERVER_IDLE_MS", 30_000),
+                Integer.getInteger("COMPUTE_THREADS", Runtime.getRuntime().availableProcessors()),
+                Integer.getInteger("COMPUTE_QUEUE", 64));
+    }
+
+    /**
+     * @param port           port to listen on, 0 picks a free one.
+     * @param threads        request threads at most.
+     * @param queue          requests waiting for a request thread at most.
+     * @param acceptors      acceptor threads, -1 lets Jetty choose.
+     * @param selectors      selector threads, -1 lets Jetty choose.
+     * @param idleMs         how long an idle keep-alive connection is kept open.
+     * @param computeThreads threads deciding on moves.
+     * @param computeQueue   /move requests waiting for a compute thread at most.
+     */
+    JettyServer(Snake.Handler handler, int port, int threads, int queue, int acceptors, int selectors,
+                int idleMs, int computeThreads, int computeQueue) {
+        this.handler = handler;
+
+        QueuedThreadPool pool = new QueuedThreadPool(threads, Math.min(8, threads), 60_000,
+                new BlockingArrayQueue<>(queue, queue, queue));
+        pool.setName("request");
+        server = new Server(pool);
+
+        HttpConfiguration http = new HttpConfiguration();
+        http.setSendServerVersion(false);
+        connector = new ServerConnector(server, acceptors, selectors, new HttpConnectionFactory(http));
+        connector.setPort(port);
+        connector.setIdleTimeout(idleMs);
+        server.addConnector(connector);
+        server.setHandler(new Routes());
+
+        AtomicInteger count = new AtomicInteger();
+        compute = new ThreadPoolExecutor(computeThreads, computeThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(computeQueue), runnable -> {
+                    Thread thread = new Thread(runnable, "compute-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    public void start() throws Exception {
+        server.start();
+        LOG.info("Jetty listening on port {}", port());
+    }
+
+    public void stop() throws Exception {
+        server.stop();
+        compute.shutdown();
+    }
+
+    /**
+     * @return the port listened on, once started.
+     */
+    int port() {
+        return connector.getLocalPort();
+    }
+
+    private class Routes extends AbstractHandler {
+
+        @Override
+        public void handle(String target, Request baseRequest, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+            String method = request.getMethod();
+            if (target.equals("/metrics") && method.equals("GET")) {
+                baseRequest.setHandled(true);
+                byte[] body = handler.metrics();
+                response.setContentType(Metrics.CONTENT_TYPE);
+                response.setContentLength(body.length);
+                response.getOutputStream().write(body);
+                return;
+            }
+            boolean known = target.equals("/") ? method.equals("GET")
+                    : method.equals("POST") && (target.equals("/start") || target.equals("/move") || target.equals("/end"));
+            if (!known) {
+                return;
+            }
+            baseRequest.setHandled(true);
+            byte[] body = IO.readBytes(request.getInputStream());
+
+            if (!target.equals("/move")) {
+                write(response, handler.handle(target, body));
+                return;
+            }
+
+            AsyncContext async = request.startAsync();
+            async.setTimeout(0);
+            try {
+                compute.execute(() -> {
+                    try {
+                        write((HttpServletResponse) async.getResponse(), move(body));
+                    } catch (IOException e) {
+                        LOG.warn("Could not write the move", e);
+                    } finally {
+                        async.complete();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Compute pool is full, answering a move from the filters");
+                try {
+                    write(response, fallback(body));
+                } finally {
+                    async.complete();
+                }
+            }
+        }
+
+        private byte[] move(byte[] body) {
+            try {
+                return handler.handle("/move", body);
+            } catch (RuntimeException e) {
+                LOG.warn("Move failed, answering from the filters", e);
+                return fallback(body);
+            }
+        }
+
+        /**
+         * @return the move from the filters, or null for a 500 if even that fails.
+         */
+        private byte[] fallback(byte[] body) {
+            try {
+                return handler.fallback(body);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not answer a move from the filters", e);
+                return null;
+            }
+        }
+
+        private void write(HttpServletResponse response, byte[] body) throws IOException {
+            if (body == null) {
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                return;
+            }
+            response.setContentType(Snake.Handler.CONTENT_TYPE);
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
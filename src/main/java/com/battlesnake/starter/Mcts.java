@@ -0,0 +1,513 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Monte Carlo tree search with decoupled UCT, an alternative to the minimax {@link Search}
+ * that handles simultaneous moves of many snakes better.
+ *
+ * Every tree node keeps separate statistics per snake and move. Each snake picks its own
+ * move by UCB1 on its own statistics, the joint move decides which child comes next. Below
+ * the tree a short random playout follows, after which every snake is rewarded by whether
+ * it survived and how much {@link Territory} it owns.
+ *
+ * Rollouts run on several threads that share one tree without locks: the statistics are
+ * atomic arrays, rewards are added by compare and swap. Visits are counted on the way down
+ * and rewards added on the way up, so a move other threads are busy with looks worse until
+ * their results arrive (a virtual loss). Nodes come from a preallocated pool of flat arrays,
+ * which is reused by every search of the same request thread.
+ *
+ * The rollouts stop at the deadline, or earlier once the most visited root move is so far
+ * ahead that the rollouts left until the deadline could not change the answer, as long as a
+ * quarter of the time is left to save.
+ */
+public class Mcts {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Mcts.class);
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    /**
+     * Snakes the node pool is sized for; with more, fewer nodes fit.
+     */
+    static final int MAX_SNAKES = 8;
+
+    private static final double EXPLORATION = 0.7;
+
+    /**
+     * Random turns played below the tree.
+     */
+    private static final int PLAYOUT_TURNS = 16;
+
+    /**
+     * Rollouts a thread runs between looks at whether the answer is settled.
+     */
+    private static final int SETTLED_INTERVAL = 256;
+
+    private final ForkJoinPool pool;
+    private final int threads;
+
+    /**
+     * Set while a search runs on the pool. Rollouts run until their deadline, so a search
+     * that finds the pool in use runs on its own thread instead of queueing behind them, see
+     * {@link ParallelSearch}.
+     */
+    private final AtomicBoolean poolInUse = new AtomicBoolean();
+    private final ThreadLocal<Tree> trees;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    long rollouts;
+
+    /**
+     * @param threads rollout threads, 1 runs them on the calling thread.
+     * @param nodes   tree nodes preallocated per request thread.
+     */
+    public Mcts(int threads, int nodes) {
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.threads = threads;
+        this.trees = ThreadLocal.withInitial(() -> new Tree(nodes));
+    }
+
+    /**
+     * Run rollouts until the deadline and pick the move we tried most. The board is only read.
+     *
+     * @param board      the board of the current request.
+     * @param candidates directions we are allowed to pick from.
+     * @param count      number of entries in candidates.
+     * @param deadline   System.nanoTime() value at which the search has to stop.
+     * @return the most visited candidate, or candidates[0], the choice of the move filters,
+     *         if there was no time for a single rollout.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline) {
+        if (count == 1) {
+            rollouts = 0;
+            return candidates[0];
+        }
+        long started = System.nanoTime();
+        Tree tree = trees.get();
+        tree.reset(board.snakeCount);
+
+        long done = 0;
+        // no use forking tasks that could only start after the deadline
+        if (pool == null || deadline - started <= 0 || !poolInUse.compareAndSet(false, true)) {
+            Rollouts task = new Rollouts(tree, board, candidates, count, started, deadline);
+            task.compute();
+            done = task.done;
+        } else {
+            try {
+                Rollouts[] tasks = new Rollouts[threads];
+                for (int i = 0; i < threads; i++) {
+                    tasks[i] = new Rollouts(tree, board, candidates, count, started, deadline);
+                    pool.execute(tasks[i]);
+                }
+                for (Rollouts task : tasks) {
+                    task.join();
+                    done += task.done;
+                }
+            } finally {
+                poolInUse.set(false);
+            }
+        }
+
+        int best = candidates[0];
+        int mostVisits = 0;
+        for (int i = 0; i < count; i++) {
+            int visits = tree.visits.get(tree.stat(0, board.you, candidates[i]));
+            if (visits > mostVisits) {
+                mostVisits = visits;
+                best = candidates[i];
+            }
+        }
+        rollouts = done;
+        // rollouts count as nodes, the tree has no fixed depth and no table
+        METRICS.search(System.nanoTime() - started, done, 0, 0, 0, !tree.settled);
+        if (MOVE_LOG.enabled()) {
+            MOVE_LOG.info(LOG, "MCTS ran {} rollouts on {} nodes", done, Math.min(tree.size.get(), tree.nodes));
+        }
+        return best;
+    }
+
+    /**
+     * Flat node pool. Children of a node form a linked list of siblings, which threads
+     * extend by compare and swap on the first child.
+     */
+    static final class Tree {
+        final int capacity;
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicIntegerArray firstChild;
+        final int[] sibling;
+        final long[] action;
+        final AtomicIntegerArray nodeVisits;
+
+        /**
+         * Per node, snake and move: visits, and the total reward as the bits of a float.
+         */
+        final AtomicIntegerArray visits;
+        final AtomicIntegerArray rewards;
+
+        int stride;
+        int nodes;
+
+        /**
+         * Set once the rollouts left could not change the answer, see {@link #settle}.
+         */
+        volatile boolean settled;
+
+        Tree(int capacity) {
+            this.capacity = capacity;
+            this.firstChild = new AtomicIntegerArray(capacity);
+            this.sibling = new int[capacity];
+            this.action = new long[capacity];
+            this.nodeVisits = new AtomicIntegerArray(capacity);
+            this.visits = new AtomicIntegerArray(capacity * MAX_SNAKES * 4);
+            this.rewards = new AtomicIntegerArray(capacity * MAX_SNAKES * 4);
+        }
+
+        void reset(int snakeCount) {
+            stride = Math.max(1, snakeCount) * 4;
+            nodes = Math.min(capacity, visits.length() / stride);
+            settled = false;
+            size.set(0);
+            newNode(0L);
+        }
+
+        float reward(int stat) {
+            return Float.intBitsToFloat(rewards.get(stat));
+        }
+
+        void addReward(int stat, float reward) {
+            while (true) {
+                int bits = rewards.get(stat);
+                if (rewards.compareAndSet(stat, bits, Float.floatToRawIntBits(Float.intBitsToFloat(bits) + reward))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Stop the rollouts if the most visited of our root moves stays ahead even if every
+         * remaining rollout went to the runner-up.
+         *
+         * @param remaining rollouts expected until the deadline, on all threads together.
+         */
+        void settle(int me, int[] candidates, int count, long remaining) {
+            int most = 0;
+            int second = 0;
+            for (int i = 0; i < count; i++) {
+                int visited = visits.get(stat(0, me, candidates[i]));
+                if (visited > most) {
+                    second = most;
+                    most = visited;
+                } else if (visited > second) {
+                    second = visited;
+                }
+            }
+            if (most - second > remaining) {
+                settled = true;
+            }
+        }
+
+        int stat(int node, int s, int move) {
+            return node * stride + s * 4 + move;
+        }
+
+        /**
+         * @return the new node, or -1 if the pool is used up.
+         */
+        int newNode(long joint) {
+            int node = size.getAndIncrement();
+            if (node >= nodes) {
+                return -1;
+            }
+            for (int stat = node * stride; stat < (node + 1) * stride; stat++) {
+                visits.set(stat, 0);
+                rewards.set(stat, 0);
+            }
+            nodeVisits.set(node, 0);
+            sibling[node] = -1;
+            action[node] = joint;
+            firstChild.set(node, -1);
+            return node;
+        }
+
+        /**
+         * @return the child reached by the joint move, or -1 if there is none yet.
+         */
+        int child(int node, long joint) {
+            for (int child = firstChild.get(node); child >= 0; child = sibling[child]) {
+                if (action[child] == joint) {
+                    return child;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Add a child for the joint move. Two threads may add the same child at once, the
+         * second copy is then never found again, which only wastes a node.
+         *
+         * @return the child, or -1 if the pool is used up.
+         */
+        int addChild(int node, long joint) {
+            int child = newNode(joint);
+            if (child < 0) {
+                return -1;
+            }
+            while (true) {
+                int first = firstChild.get(node);
+                sibling[child] = first;
+                if (firstChild.compareAndSet(node, first, child)) {
+                    return child;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs rollouts on one thread until the deadline.
+     */
+    private final class Rollouts extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Tree tree;
+        private final Board board;
+        private final int[] candidates;
+        private final int count;
+        private final long started;
+        private final long deadline;
+
+        long done;
+
+        Rollouts(Tree tree, Board board, int[] candidates, int count, long started, long deadline) {
+            this.tree = tree;
+            this.board = board;
+            this.candidates = candidates;
+            this.count = count;
+            this.started = started;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            Worker worker = workers.get();
+            worker.prepare(board);
+            long now;
+            long checked = started;
+            int checkedVisits = 0;
+            while (!tree.settled && (now = System.nanoTime()) < deadline) {
+                worker.rollout(tree, candidates, count);
+                done++;
+                if (done % SETTLED_INTERVAL == 0) {
+                    // rollouts started on all threads together
+                    int visits = tree.nodeVisits.get(0);
+                    // stopping for the last quarter of the time is not worth a worse answer
+                    if (deadline - now > (deadline - started) / 4) {
+                        // the rate of all threads since this one last checked, which only goes
+                        // up as the code warms up, or since the start if the threads were held
+                        // up in between
+                        double rate = Math.max((double) (visits - checkedVisits) / Math.max(1, now - checked),
+                                (double) visits / Math.max(1, now - started));
+                        tree.settle(board.you, candidates, count, (long) (rate * (deadline - now)));
+                    }
+                    checked = now;
+                    checkedVisits = visits;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per thread state of the rollouts: a board copy to simulate on and the path taken.
+     */
+    private static final class Worker {
+        private final Board board = new Board(11, 11, 8);
+        private final Simulator simulator = new Simulator();
+        private final Territory territory = new Territory();
+        private final SplittableRandom random = new SplittableRandom();
+
+        private final int[] path = new int[Simulator.MAX_PLIES + 1];
+        private int[][] picked = new int[Simulator.MAX_PLIES + 1][0];
+        private double[] reward = new double[0];
+        private int me;
+        private int snakeCount;
+
+        void prepare(Board original) {
+            board.copyFrom(original);
+            simulator.prepare(board);
+            me = board.you;
+            snakeCount = board.snakeCount;
+            if (reward.length < snakeCount) {
+                reward = new double[snakeCount];
+                picked = new int[Simulator.MAX_PLIES + 1][snakeCount];
+            }
+        }
+
+        /**
+         * Walk down the tree, add one node, play out randomly, and back the rewards up.
+         */
+        void rollout(Tree tree, int[] candidates, int count) {
+            int node = 0;
+            int depth = 0;
+            int ply = 0;
+            boolean over = false;
+            while (node >= 0 && ply < Simulator.MAX_PLIES) {
+                long joint = select(tree, node, ply, candidates, count);
+                path[depth++] = node;
+                simulator.makeTurn(ply++);
+                over = simulator.gameOver();
+                if (over) {
+                    break;
+                }
+                int child = tree.child(node, joint);
+                if (child < 0) {
+                    // a new leaf, or no room left: play out from here
+                    tree.addChild(node, joint);
+                    break;
+                }
+                node = child;
+            }
+
+            int end = Math.min(Simulator.MAX_PLIES, ply + PLAYOUT_TURNS);
+            while (!over && ply < end) {
+                playout(ply);
+                simulator.makeTurn(ply++);
+                over = simulator.gameOver();
+            }
+            score(over);
+            while (ply > 0) {
+                simulator.unmakeTurn(--ply);
+            }
+
+            for (int i = 0; i < depth; i++) {
+                int[] moves = picked[i];
+                for (int s = 0; s < snakeCount; s++) {
+                    if (moves[s] >= 0) {
+                        tree.addReward(tree.stat(path[i], s, moves[s]), (float) reward[s]);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Every living snake picks its move by UCB1 on its own statistics of the node. The
+         * visits are counted right away, so other threads avoid the same moves for now.
+         *
+         * @return the joint move, two bits per snake.
+         */
+        private long select(Tree tree, int node, int ply, int[] candidates, int count) {
+            int[] moves = simulator.moves(ply);
+            int[] chosen = picked[ply];
+            int parentVisits = tree.nodeVisits.incrementAndGet(node);
+            double logVisits = Math.log(parentVisits);
+            long joint = 0;
+            for (int s = 0; s < snakeCount; s++) {
+                if (!simulator.alive(s)) {
+                    chosen[s] = -1;
+                    moves[s] = Board.UP;
+                    continue;
+                }
+                int best = -1;
+                double bestValue = Double.NEGATIVE_INFINITY;
+                int offset = random.nextInt(4);
+                for (int i = 0; i < 4; i++) {
+                    int move = (i + offset) & 3;
+                    if (node == 0 && s == me ? !contains(candidates, count, move) : !simulator.playable(s, move)) {
+                        continue;
+                    }
+                    int stat = tree.stat(node, s, move);
+                    int visits = tree.visits.get(stat);
+                    if (visits == 0) {
+                        best = move;
+                        break;
+                    }
+                    double value = tree.reward(stat) / visits + EXPLORATION * Math.sqrt(logVisits / visits);
+                    if (value > bestValue) {
+                        bestValue = value;
+                        best = move;
+                    }
+                }
+                if (best < 0) {
+                    // trapped, any move will do
+                    best = Board.UP;
+                }
+                tree.visits.incrementAndGet(tree.stat(node, s, best));
+                chosen[s] = best;
+                moves[s] = best;
+                joint |= (long) best << ((s & 31) * 2);
+            }
+            return joint;
+        }
+
+        /**
+         * Random moves that don't run into a wall, a neck or a body, if there are any.
+         */
+        private void playout(int ply) {
+            int[] moves = simulator.moves(ply);
+            for (int s = 0; s < snakeCount; s++) {
+                if (!simulator.alive(s)) {
+                    continue;
+                }
+                int offset = random.nextInt(4);
+                int move = Board.UP;
+                for (int i = 0; i < 4; i++) {
+                    int direction = (i + offset) & 3;
+                    if (simulator.playable(s, direction)) {
+                        move = direction;
+                        if (!Board.isSet(board.bodies, board.neighbour(board.head[s], direction))) {
+                            break;
+                        }
+                    }
+                }
+                moves[s] = move;
+            }
+        }
+
+        /**
+         * Rewards between 0 and 1: nothing for the dead, everything for the last one left,
+         * and otherwise a share that grows with the territory owned.
+         */
+        private void score(boolean over) {
+            int living = 0;
+            for (int s = 0; s < snakeCount; s++) {
+                if (simulator.alive(s)) {
+                    living++;
+                }
+            }
+            if (over || living <= 1) {
+                for (int s = 0; s < snakeCount; s++) {
+                    reward[s] = simulator.alive(s) ? (living == 1 ? 1.0 : 0.5) : 0.0;
+                }
+                return;
+            }
+            territory.fill(board);
+            int total = 0;
+            for (int s = 0; s < snakeCount; s++) {
+                if (simulator.alive(s)) {
+                    total += territory.owned(s);
+                }
+            }
+            for (int s = 0; s < snakeCount; s++) {
+                reward[s] = simulator.alive(s)
+                        ? 0.25 + 0.75 * territory.owned(s) / Math.max(1, total)
+                        : 0.0;
+            }
+        }
+
+        private static boolean contains(int[] candidates, int count, int move) {
+            for (int i = 0; i < count; i++) {
+                if (candidates[i] == move) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
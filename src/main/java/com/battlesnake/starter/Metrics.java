@@ -0,0 +1,267 @@
+package com.battlesnake.starter;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms, exported in the Prometheus text format on /metrics.
+ *
+ * Everything is recorded into LongAdders that are allocated up front, so recording takes no
+ * lock and allocates nothing, and threads recording at the same time do not contend on one
+ * cache line. Reading them for an export is what costs, and that happens once per scrape.
+ */
+public class Metrics {
+
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final Metrics DEFAULT = new Metrics();
+
+    enum Route {
+        MOVE, START, END
+    }
+
+    /**
+     * Parts of a request: reading the body, handling it, and producing the response body.
+     */
+    enum Phase {
+        PARSE, DECIDE, SERIALIZE, TOTAL
+    }
+
+    private final Histogram[][] latency = new Histogram[Route.values().length][Phase.values().length];
+
+    final LongAdder searches = new LongAdder();
+    final LongAdder searchNanos = new LongAdder();
+    final LongAdder nodes = new LongAdder();
+    final LongAdder depth = new LongAdder();
+    final LongAdder tableProbes = new LongAdder();
+    final LongAdder tableHits = new LongAdder();
+
+    /**
+     * Searches that were stopped by their deadline rather than running out of work.
+     */
+    final LongAdder deadlineHits = new LongAdder();
+
+    /**
+     * Moves answered without the search's result, see {@link MoveController}.
+     */
+    final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * Moves pondered on, and requests whose root was or was not among the pondered
+     * positions, see {@link Ponder}.
+     */
+    final LongAdder ponders = new LongAdder();
+    final LongAdder ponderHits = new LongAdder();
+    final LongAdder ponderMisses = new LongAdder();
+
+    /**
+     * Endgames the {@link Endgame} solver decided, and those it ran out of time on.
+     */
+    final LongAdder endgamesSolved = new LongAdder();
+    final LongAdder endgamesUnsolved = new LongAdder();
+
+    /**
+     * /move requests being handled, how far their search is cut back for the load, and moves
+     * answered with a cut back search, see {@link AdmissionController}.
+     */
+    final AtomicInteger movesInFlight = new AtomicInteger();
+    final AtomicInteger loadLevel = new AtomicInteger();
+    final LongAdder degradedMoves = new LongAdder();
+
+    Metrics() {
+        for (Histogram[] phases : latency) {
+            for (int phase = 0; phase < phases.length; phase++) {
+                phases[phase] = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * Record a request from the System.nanoTime() values taken at its arrival and at the end
+     * of each phase.
+     */
+    public void request(Route route, long arrived, long parsed, long decided, long serialized) {
+        Histogram[] phases = latency[route.ordinal()];
+        phases[Phase.PARSE.ordinal()].record(parsed - arrived);
+        phases[Phase.DECIDE.ordinal()].record(decided - parsed);
+        phases[Phase.SERIALIZE.ordinal()].record(serialized - decided);
+        phases[Phase.TOTAL.ordinal()].record(serialized - arrived);
+    }
+
+    /**
+     * Record a finished search.
+     *
+     * @param deadlineHit true if the search was still going when its deadline came.
+     */
+    public void search(long nanos, long searchNodes, int depthReached, long probes, long hits, boolean deadlineHit) {
+        searches.increment();
+        searchNanos.add(nanos);
+        nodes.add(searchNodes);
+        depth.add(depthReached);
+        tableProbes.add(probes);
+        tableHits.add(hits);
+        if (deadlineHit) {
+            deadlineHits.increment();
+        }
+    }
+
+    Histogram latency(Route route, Phase phase) {
+        return latency[route.ordinal()][phase.ordinal()];
+    }
+
+    /**
+     * @return all metrics in the Prometheus text format.
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(64 * 1024);
+        out.append("# HELP battlesnake_request_seconds Time spent in each phase of a request.\n");
+        out.append("# TYPE battlesnake_request_seconds histogram\n");
+        for (Route route : Route.values()) {
+            for (Phase phase : Phase.values()) {
+                String labels = "route=\"/" + route.name().toLowerCase() + "\",phase=\"" + phase.name().toLowerCase() + "\"";
+                latency(route, phase).write(out, "battlesnake_request_seconds", labels);
+            }
+        }
+
+        counter(out, "battlesnake_search_total", "Searches run.", searches.sum());
+        counter(out, "battlesnake_search_seconds_total", "Time spent searching.", searchNanos.sum() / 1e9);
+        counter(out, "battlesnake_search_nodes_total", "Nodes or rollouts searched, over search seconds this is nodes per second.", nodes.sum());
+        counter(out, "battlesnake_search_depth_total", "Sum of the depths reached, over searches this is the average depth.", depth.sum());
+        counter(out, "battlesnake_search_table_probes_total", "Transposition table lookups.", tableProbes.sum());
+        counter(out, "battlesnake_search_table_hits_total", "Transposition table lookups that found the position.", tableHits.sum());
+        counter(out, "battlesnake_search_deadline_hits_total", "Searches stopped by their deadline.", deadlineHits.sum());
+        counter(out, "battlesnake_move_fallbacks_total", "Moves answered without a search result.", fallbacks.sum());
+        counter(out, "battlesnake_ponder_total", "Answered moves searched on while waiting for the next request.", ponders.sum());
+        counter(out, "battlesnake_ponder_hits_total", "Requests whose position was pondered on.", ponderHits.sum());
+        counter(out, "battlesnake_ponder_misses_total", "Pondered requests that came with another position.", ponderMisses.sum());
+        counter(out, "battlesnake_endgame_solved_total", "Moves decided by the exact endgame solver.", endgamesSolved.sum());
+        counter(out, "battlesnake_endgame_unsolved_total", "Endgames the solver ran out of time on or could not prove won, left to the search.", endgamesUnsolved.sum());
+
+        gauge(out, "battlesnake_moves_in_flight", "/move requests being handled.", movesInFlight.get());
+        gauge(out, "battlesnake_load_level", "How far the search is cut back for the load: 0 full, 1 half the time, 2 a quarter, 3 no search.", loadLevel.get());
+        counter(out, "battlesnake_load_degraded_moves_total", "Moves answered with a search cut back for the load.", degradedMoves.sum());
+
+        out.append("# HELP jvm_gc_collection_seconds Time spent in a given JVM garbage collector.\n");
+        out.append("# TYPE jvm_gc_collection_seconds summary\n");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String labels = "{gc=\"" + gc.getName() + "\"}";
+            out.append("jvm_gc_collection_seconds_count").append(labels).append(' ').append(gc.getCollectionCount()).append('\n');
+            out.append("jvm_gc_collection_seconds_sum").append(labels).append(' ').append(gc.getCollectionTime() / 1e3).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Latency histogram with log-linear buckets like HdrHistogram's: every power of two of
+     * microseconds is split into {@link #SUB_BUCKETS} equal buckets, so a bucket is at most a
+     * quarter wider than the values in it. Anything from about 3.7 seconds on goes into the
+     * last bucket.
+     */
+    static final class Histogram {
+        static final int SUB_BUCKETS = 4;
+        static final int OCTAVES = 22;
+        static final int BUCKETS = (OCTAVES - 1) * SUB_BUCKETS;
+
+        private final LongAdder[] counts = new LongAdder[BUCKETS];
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos) / 1000;
+            counts[bucket(micros)].increment();
+            sumNanos.add(Math.max(0, nanos));
+        }
+
+        /**
+         * Microseconds below 4 get a bucket each, above that a power of two is split in four.
+         */
+        static int bucket(long micros) {
+            if (micros < SUB_BUCKETS) {
+                return (int) micros;
+            }
+            int octave = 63 - Long.numberOfLeadingZeros(micros);
+            if (octave >= OCTAVES) {
+                return BUCKETS - 1;
+            }
+            int sub = (int) (micros >>> (octave - 2)) & (SUB_BUCKETS - 1);
+            return (octave - 1) * SUB_BUCKETS + sub;
+        }
+
+        /**
+         * @return the microseconds every value in the bucket is below.
+         */
+        static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket + 1;
+            }
+            int octave = bucket / SUB_BUCKETS + 1;
+            int sub = bucket % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + sub + 1) << (octave - 2);
+        }
+
+        long count() {
+            long count = 0;
+            for (LongAdder bucket : counts) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return the microseconds that at least the given share of the values are below, up
+         * to the bucket width, or 0 if nothing was recorded.
+         */
+        long percentile(double share) {
+            long needed = (long) Math.ceil(share * count());
+            if (needed == 0) {
+                return 0;
+            }
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                cumulative += counts[i].sum();
+                if (cumulative >= needed) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(BUCKETS - 1);
+        }
+
+        void write(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                cumulative += counts[i].sum();
+                out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                        .append(upperBound(i) / 1e6).append("\"} ").append(cumulative).append('\n');
+            }
+            cumulative += counts[BUCKETS - 1].sum();
+            out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(cumulative).append('\n');
+            out.append(name).append("_sum{").append(labels).append("} ").append(sumNanos.sum() / 1e9).append('\n');
+            out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+        }
+    }
+}
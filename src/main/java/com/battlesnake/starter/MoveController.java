@@ -0,0 +1,258 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Makes sure every /move is answered before the engine gives up on it.
+ *
+ * The hard deadline of a move is its arrival plus game.timeout, minus a margin for the way
+ * back over the network. The margin starts out fixed and follows the network round trip once
+ * it is measured: "you.latency" is how long the engine waited for our previous answer, and
+ * what is left after our own time for that answer was spent on the network.
+ *
+ * The search runs on its own thread and is told to stop a little before the hard deadline.
+ * If it is not back by then, or fails, the move passed as fallback is answered instead and
+ * the search is left to finish on its own. There are as many search threads as compute
+ * threads; a move that finds them all busy, say with searches left to finish, is answered
+ * with the fallback right away. The search logs through {@link MoveLog} if the request does.
+ */
+public class MoveController {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MoveController.class);
+    private static final Metrics METRICS = Metrics.DEFAULT;
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+
+    /**
+     * Weight of a new round trip in the smoothed one.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    private final int defaultMarginMs;
+    private final int minMarginMs;
+    private final ThreadPoolExecutor searchers;
+
+    /**
+     * Searches that may still start, one per search thread. Taken before a search is handed
+     * over and given back when it returns, so the queue of the pool stays empty in practice.
+     */
+    private final Semaphore freeSearchers;
+
+    /**
+     * Smoothed network round trip in milliseconds, negative until measured.
+     */
+    private volatile double networkMs = -1;
+
+    final LongAdder moves = new LongAdder();
+    final LongAdder timeouts = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder usedMs = new LongAdder();
+    final LongAdder budgetMs = new LongAdder();
+
+    /**
+     * Largest part of a budget used by one move, in thousandths.
+     */
+    final AtomicLong maxUsedPermille = new AtomicLong();
+
+    /**
+     * @param defaultMarginMs margin kept back for the network until it is measured.
+     * @param minMarginMs     margin kept back at least.
+     */
+    public MoveController(int defaultMarginMs, int minMarginMs) {
+        this(defaultMarginMs, minMarginMs, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param searchThreads searches running at once at most.
+     */
+    public MoveController(int defaultMarginMs, int minMarginMs, int searchThreads) {
+        this.defaultMarginMs = defaultMarginMs;
+        this.minMarginMs = minMarginMs;
+        AtomicInteger count = new AtomicInteger();
+        this.freeSearchers = new Semaphore(searchThreads);
+        this.searchers = new ThreadPoolExecutor(searchThreads, searchThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "move-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        searchers.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Timing of one /move request.
+     */
+    public static class Turn {
+        final long arrived;
+        final long deadline;
+
+        /**
+         * When the search is told to stop, ahead of the deadline so it has time to return.
+         */
+        final long searchDeadline;
+        final GameSessions.GameSession session;
+        final int turn;
+
+        /**
+         * How far the search was cut back for the load, see {@link AdmissionController}.
+         */
+        final int level;
+
+        /**
+         * Set when the search was still running at the deadline, and so still uses the board.
+         */
+        boolean abandoned;
+
+        Turn(long arrived, long deadline, long searchDeadline, GameSessions.GameSession session, int turn, int level) {
+            this.arrived = arrived;
+            this.deadline = deadline;
+            this.searchDeadline = searchDeadline;
+            this.session = session;
+            this.turn = turn;
+            this.level = level;
+        }
+    }
+
+    /**
+     * Work out the deadlines of a move request.
+     *
+     * @param arrived System.nanoTime() when the request came in.
+     * @param session the game's session, or null.
+     */
+    public Turn arrive(Board board, long arrived, GameSessions.GameSession session) {
+        return arrive(board, arrived, session, AdmissionController.FULL);
+    }
+
+    /**
+     * Work out the deadlines of a move request under load: from {@link AdmissionController#REDUCED}
+     * on, the search gets half the time for every level. The deadline of the answer stays.
+     *
+     * @param level see {@link AdmissionController#level()}.
+     */
+    public Turn arrive(Board board, long arrived, GameSessions.GameSession session, int level) {
+        if (session != null && board.latency > 0 && session.timedTurn >= 0 && session.timedTurn + 1 == board.turn) {
+            observe(board.latency - session.elapsedMs);
+        }
+        int timeout = board.timeout > 0 ? board.timeout : 500;
+        int budget = timeout - Math.min(margin(), timeout / 2);
+        long deadline = arrived + budget * 1_000_000L;
+        long slack = Math.max(2, budget / 20) * 1_000_000L;
+        long searchDeadline = arrived + ((deadline - slack - arrived) >> Math.min(level, AdmissionController.MINIMAL));
+        return new Turn(arrived, deadline, searchDeadline, session, board.turn, level);
+    }
+
+    /**
+     * @return milliseconds currently kept back for the network.
+     */
+    int margin() {
+        double network = networkMs;
+        if (network < 0) {
+            return defaultMarginMs;
+        }
+        return Math.max(minMarginMs, (int) Math.ceil(network * 1.5));
+    }
+
+    /**
+     * Add a measured network round trip.
+     */
+    void observe(int roundTripMs) {
+        if (roundTripMs < 0) {
+            return;
+        }
+        double network = networkMs;
+        networkMs = network < 0 ? roundTripMs : network + SMOOTHING * (roundTripMs - network);
+    }
+
+    /**
+     * Run the search and answer with its move, or with the fallback if it is not back by the
+     * deadline, fails, or finds no free search thread.
+     *
+     * @param search   the search, which should stop at {@link Turn#searchDeadline}.
+     * @param fallback the move to answer without a search, from the move filters.
+     * @return the direction to go, see {@link Board#MOVES}.
+     */
+    public int answer(IntSupplier search, int fallback, Turn turn) {
+        int move = fallback;
+        if (!freeSearchers.tryAcquire()) {
+            rejected.increment();
+            METRICS.fallbacks.increment();
+            LOG.warn("No free search thread on turn {}, answering {}", turn.turn, Board.MOVES[fallback]);
+            finish(turn);
+            return fallback;
+        }
+        boolean logged = MOVE_LOG.enabled();
+        Future<Integer> result = searchers.submit(() -> {
+            MOVE_LOG.begin(logged);
+            try {
+                return search.getAsInt();
+            } finally {
+                MOVE_LOG.end();
+                freeSearchers.release();
+            }
+        });
+        try {
+            move = result.get(Math.max(0, turn.deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            turn.abandoned = true;
+            timeouts.increment();
+            METRICS.fallbacks.increment();
+            LOG.warn("Search missed the deadline of turn {}, answering {}", turn.turn, Board.MOVES[fallback]);
+        } catch (ExecutionException e) {
+            failures.increment();
+            METRICS.fallbacks.increment();
+            LOG.warn("Search failed on turn " + turn.turn + ", answering " + Board.MOVES[fallback], e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            turn.abandoned = true;
+            failures.increment();
+            METRICS.fallbacks.increment();
+        }
+        finish(turn);
+        return move;
+    }
+
+    /**
+     * Account for an answered move, also one that needed no search.
+     */
+    public void finish(Turn turn) {
+        long now = System.nanoTime();
+        int used = (int) ((now - turn.arrived) / 1_000_000L);
+        int budget = (int) ((turn.deadline - turn.arrived) / 1_000_000L);
+        moves.increment();
+        usedMs.add(used);
+        budgetMs.add(budget);
+        if (budget > 0) {
+            long permille = 1000L * used / budget;
+            maxUsedPermille.accumulateAndGet(permille, Math::max);
+        }
+        if (turn.session != null) {
+            turn.session.elapsedMs = used;
+            turn.session.timedTurn = turn.turn;
+        }
+    }
+
+    /**
+     * One line about how the budgets were used so far, for tuning the margins.
+     */
+    public String stats() {
+        long budget = budgetMs.sum();
+        return String.format("%d moves, %d past the deadline, %d failed, %d without a search thread,"
+                        + " %d%% of the budget used on average, %d.%d%% at most, margin %d ms", moves.sum(),
+                timeouts.sum(), failures.sum(), rejected.sum(),
+                budget > 0 ? 100 * usedMs.sum() / budget : 0, maxUsedPermille.get() / 10,
+                maxUsedPermille.get() % 10, margin());
+    }
+}
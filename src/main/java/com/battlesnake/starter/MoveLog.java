@@ -0,0 +1,223 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logging for the /move hot path.
+ *
+ * Every /move request is either logged in full or not at all, decided once per request by
+ * {@link #begin(String, int)} and kept in a thread local, which {@link #begin(boolean)} carries
+ * over to the thread the search runs on. In the sampled mode only some games and some of
+ * their turns are logged, lines are rate limited, and a background thread writes them, so a
+ * request never waits for stderr. The full mode logs every line right away, for following a
+ * single game when replaying it.
+ *
+ * Callers check {@link #enabled()} before building anything costly for a line.
+ */
+public class MoveLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MoveLog.class);
+
+    enum Mode {
+        /**
+         * Every line of every request, written synchronously.
+         */
+        FULL,
+        /**
+         * Some games and turns, rate limited and written asynchronously.
+         */
+        SAMPLED,
+        OFF
+    }
+
+    /**
+     * Configured by LOG_MODE, LOG_GAME_SAMPLE, LOG_TURN_SAMPLE, LOG_RATE and LOG_GAME_ID.
+     */
+    static final MoveLog DEFAULT = new MoveLog(
+            mode(System.getProperty("LOG_MODE", "sampled")),
+            Integer.getInteger("LOG_GAME_SAMPLE", 16),
+            Integer.getInteger("LOG_TURN_SAMPLE", 10),
+            Integer.getInteger("LOG_RATE", 50),
+            System.getProperty("LOG_GAME_ID"));
+
+    /**
+     * @return the mode of the given name in any case, {@link Mode#OFF} if there is none.
+     */
+    static Mode mode(String name) {
+        try {
+            return Mode.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown LOG_MODE {}, move logging is off", name);
+            return Mode.OFF;
+        }
+    }
+
+    private final Mode mode;
+    private final int gameSample;
+    private final int turnSample;
+    private final int ratePerSecond;
+
+    /**
+     * Game that is always logged in full, or null.
+     */
+    private final String gameId;
+
+    private final ThreadLocal<Boolean> current;
+    private final BlockingQueue<Line> queue;
+
+    private volatile long second;
+    private final AtomicInteger linesThisSecond = new AtomicInteger();
+
+    final LongAdder written = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param gameSample    log one game in this many.
+     * @param turnSample    log one turn in this many of a sampled game.
+     * @param ratePerSecond lines written per second at most, the rest is dropped.
+     * @param gameId        game to log every line of, or null.
+     */
+    MoveLog(Mode mode, int gameSample, int turnSample, int ratePerSecond, String gameId) {
+        this.mode = mode;
+        this.gameSample = Math.max(1, gameSample);
+        this.turnSample = Math.max(1, turnSample);
+        this.ratePerSecond = ratePerSecond;
+        this.gameId = gameId;
+        boolean all = mode == Mode.FULL && gameId == null;
+        this.current = ThreadLocal.withInitial(() -> all);
+        this.queue = mode == Mode.SAMPLED ? new ArrayBlockingQueue<>(4096) : null;
+        if (queue != null) {
+            Thread writer = new Thread(this::write, "move-log");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Decide whether the request for the given game and turn, handled by the calling
+     * thread, is logged.
+     */
+    public void begin(String gameId, int turn) {
+        current.set(sampled(gameId, turn));
+    }
+
+    /**
+     * Take over the decision made for a request on another thread, for work it handed to the
+     * calling thread. Call {@link #end()} once that work is done.
+     *
+     * @param logged {@link #enabled()} on the thread of the request.
+     */
+    public void begin(boolean logged) {
+        current.set(logged);
+    }
+
+    /**
+     * Drop the decision taken over with {@link #begin(boolean)}.
+     */
+    public void end() {
+        current.remove();
+    }
+
+    boolean sampled(String game, int turn) {
+        if (mode == Mode.OFF) {
+            return false;
+        }
+        if (gameId != null) {
+            return gameId.equals(game);
+        }
+        if (mode == Mode.FULL) {
+            return true;
+        }
+        int hash = game == null ? 0 : game.hashCode() & Integer.MAX_VALUE;
+        return hash % gameSample == 0 && turn % turnSample == 0;
+    }
+
+    /**
+     * @return true if the current request is logged.
+     */
+    public boolean enabled() {
+        return current.get();
+    }
+
+    public void info(Logger log, String format, Object arg) {
+        if (enabled()) {
+            line(log, format, new Object[]{arg});
+        }
+    }
+
+    public void info(Logger log, String format, Object arg1, Object arg2) {
+        if (enabled()) {
+            line(log, format, new Object[]{arg1, arg2});
+        }
+    }
+
+    /**
+     * Check {@link #enabled()} first, so the argument array is not built for nothing.
+     */
+    public void info(Logger log, String format, Object... args) {
+        if (enabled()) {
+            line(log, format, args);
+        }
+    }
+
+    private void line(Logger log, String format, Object[] args) {
+        if (queue == null) {
+            log.info(format, args);
+            written.increment();
+            return;
+        }
+        // a game picked by id is never rate limited
+        if ((gameId == null && !permit()) || !queue.offer(new Line(log, format, args))) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Count the line against the current second.
+     */
+    private boolean permit() {
+        long now = System.nanoTime() / 1_000_000_000L;
+        if (now != second) {
+            second = now;
+            linesThisSecond.set(0);
+        }
+        return linesThisSecond.incrementAndGet() <= ratePerSecond;
+    }
+
+    private void write() {
+        long reported = 0;
+        while (true) {
+            try {
+                Line line = queue.take();
+                line.log.info(line.format, line.args);
+                written.increment();
+                long lost = dropped.sum();
+                if (queue.isEmpty() && lost != reported) {
+                    LOG.info("Dropped {} log lines so far", lost);
+                    reported = lost;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static final class Line {
+        final Logger log;
+        final String format;
+        final Object[] args;
+
+        Line(Logger log, String format, Object[] args) {
+            this.log = log;
+            this.format = format;
+            this.args = args;
+        }
+    }
+}
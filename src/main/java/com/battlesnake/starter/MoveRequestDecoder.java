@@ -0,0 +1,356 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Decodes a Battlesnake request straight into a {@link Board} with Jackson's streaming
+ * JsonParser, in a single pass and without building a JsonNode tree. Fields the snake never
+ * reads, like "shout", "squad" or "customizations", are skipped.
+ *
+ * Coordinates are collected into int arrays first, because the engine does not promise that
+ * "width" and "height" come before the points. The arrays are kept between calls, so an
+ * instance is not thread safe; keep one per thread.
+ */
+public class MoveRequestDecoder {
+
+    /**
+     * Largest "width" and "height" accepted, far beyond any board the engine plays on.
+     */
+    static final int MAX_SIZE = 256;
+
+    private final JsonFactory factory;
+
+    /**
+     * Every point read so far, in document order.
+     */
+    private int[] xs = new int[256];
+    private int[] ys = new int[256];
+    private int points;
+
+    private int foodStart;
+    private int foodEnd;
+    private int hazardStart;
+    private int hazardEnd;
+
+    /**
+     * Snakes from "board.snakes". Their segments are points [snakeStart, snakeEnd).
+     */
+    private int snakes;
+    private String[] snakeIds = new String[8];
+    private String[] snakeNames = new String[8];
+    private int[] snakeHealth = new int[8];
+    private int[] snakeStart = new int[8];
+    private int[] snakeEnd = new int[8];
+
+    /**
+     * "you", which may come before or after "board".
+     */
+    private String youId;
+    private String youName;
+    private int youHealth;
+    private int youLatency;
+    private int youStart;
+    private int youEnd;
+
+    /**
+     * The snake object read last by {@link #readSnake(JsonParser)}.
+     */
+    private String readId;
+    private String readName;
+    private int readHealth;
+    private int readLatency;
+
+    private String gameId;
+    private String ruleset;
+    private int hazardDamage;
+    private int timeout;
+    private int turn;
+    private int width;
+    private int height;
+
+    public MoveRequestDecoder() {
+        this(new JsonFactory());
+    }
+
+    public MoveRequestDecoder(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Decode a /move request into the given board, which is reset first.
+     *
+     * @param content the raw request body.
+     * @param board   the board to fill, usually reused between requests.
+     * @return the given board, with {@link Board#you} pointing at our snake.
+     * @throws IOException              if the body is not valid JSON.
+     * @throws IllegalArgumentException if it is not a valid move request, e.g. without "you",
+     *                                  with a board size out of range or a point off the board.
+     */
+    public Board decode(byte[] content, Board board) throws IOException {
+        try (JsonParser parser = factory.createParser(content)) {
+            return decode(parser, board);
+        }
+    }
+
+    public Board decode(String content, Board board) throws IOException {
+        try (JsonParser parser = factory.createParser(content)) {
+            return decode(parser, board);
+        }
+    }
+
+    private Board decode(JsonParser parser, Board board) throws IOException {
+        points = 0;
+        foodStart = foodEnd = hazardStart = hazardEnd = 0;
+        snakes = 0;
+        youId = null;
+        youLatency = 0;
+        gameId = null;
+        ruleset = "standard";
+        hazardDamage = Board.DEFAULT_HAZARD_DAMAGE;
+        timeout = 0;
+        turn = 0;
+        width = 0;
+        height = 0;
+
+        expect(parser.nextToken(), JsonToken.START_OBJECT, parser);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("game".equals(field) && token == JsonToken.START_OBJECT) {
+                readGame(parser);
+            } else if ("turn".equals(field)) {
+                turn = parser.getValueAsInt();
+            } else if ("board".equals(field) && token == JsonToken.START_OBJECT) {
+                readBoard(parser);
+            } else if ("you".equals(field) && token == JsonToken.START_OBJECT) {
+                readYou(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return fill(board);
+    }
+
+    private Board fill(Board board) {
+        if (width <= 0 || height <= 0 || width > MAX_SIZE || height > MAX_SIZE) {
+            throw new IllegalArgumentException("Move request with a board of " + width + " x " + height);
+        }
+        board.reset(width, height);
+        board.gameId = gameId;
+        board.ruleset = ruleset;
+        board.rules = Ruleset.of(ruleset);
+        board.hazardDamage = hazardDamage;
+        board.timeout = timeout;
+        board.turn = turn;
+        board.latency = youLatency;
+
+        for (int i = foodStart; i < foodEnd; i++) {
+            Board.set(board.food, cell(board, i));
+        }
+        for (int i = hazardStart; i < hazardEnd; i++) {
+            Board.set(board.hazards, cell(board, i));
+        }
+
+        if (youId == null) {
+            throw new IllegalArgumentException("Move request without 'you'");
+        }
+        for (int n = 0; n < snakes; n++) {
+            int s = addSnake(board, snakeIds[n], snakeNames[n], snakeHealth[n], snakeStart[n], snakeEnd[n]);
+            if (board.you < 0 && youId.equals(snakeIds[n])) {
+                board.you = s;
+            }
+        }
+        if (board.you < 0) {
+            board.you = addSnake(board, youId, youName, youHealth, youStart, youEnd);
+        }
+        board.markOwners();
+        return board;
+    }
+
+    private int addSnake(Board board, String id, String name, int health, int start, int end) {
+        if (start == end) {
+            throw new IllegalArgumentException("Move request with snake " + id + " without a body");
+        }
+        int s = board.addSnake(id, name, health);
+        for (int i = start; i < end; i++) {
+            board.addSegment(s, cell(board, i));
+        }
+        return s;
+    }
+
+    /**
+     * @return the cell of the i-th point read.
+     * @throws IllegalArgumentException if it is off the board.
+     */
+    private int cell(Board board, int i) {
+        int cell = board.cell(xs[i], ys[i]);
+        if (cell < 0) {
+            throw new IllegalArgumentException("Move request with (" + xs[i] + ", " + ys[i]
+                    + ") off its board of " + width + " x " + height);
+        }
+        return cell;
+    }
+
+    private void readGame(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("id".equals(field)) {
+                gameId = parser.getValueAsString();
+            } else if ("timeout".equals(field)) {
+                timeout = parser.getValueAsInt();
+            } else if ("ruleset".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String rulesetField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("name".equals(rulesetField)) {
+                        ruleset = parser.getValueAsString();
+                    } else if ("settings".equals(rulesetField) && parser.currentToken() == JsonToken.START_OBJECT) {
+                        readSettings(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readSettings(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("hazardDamagePerTurn".equals(field)) {
+                hazardDamage = parser.getValueAsInt(Board.DEFAULT_HAZARD_DAMAGE);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readBoard(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("width".equals(field)) {
+                width = parser.getValueAsInt();
+            } else if ("height".equals(field)) {
+                height = parser.getValueAsInt();
+            } else if ("food".equals(field) && token == JsonToken.START_ARRAY) {
+                foodStart = points;
+                readPoints(parser);
+                foodEnd = points;
+            } else if ("hazards".equals(field) && token == JsonToken.START_ARRAY) {
+                hazardStart = points;
+                readPoints(parser);
+                hazardEnd = points;
+            } else if ("snakes".equals(field) && token == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    int start = points;
+                    readSnake(parser);
+                    addSnakeSlot(start);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void readYou(JsonParser parser) throws IOException {
+        youStart = points;
+        readSnake(parser);
+        youEnd = points;
+        youId = readId != null ? readId : "";
+        youName = readName;
+        youHealth = readHealth;
+        youLatency = readLatency;
+    }
+
+    /**
+     * Read a snake object, the START_OBJECT token has been consumed. Its segments are
+     * appended to the points, everything else ends up in the read* fields.
+     */
+    private void readSnake(JsonParser parser) throws IOException {
+        readId = null;
+        readName = null;
+        readHealth = 0;
+        readLatency = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("id".equals(field)) {
+                readId = parser.getValueAsString();
+            } else if ("name".equals(field)) {
+                readName = parser.getValueAsString();
+            } else if ("health".equals(field)) {
+                readHealth = parser.getValueAsInt();
+            } else if ("body".equals(field) && token == JsonToken.START_ARRAY) {
+                readPoints(parser);
+            } else if ("latency".equals(field)) {
+                // sent as a string, "" on the first turn
+                readLatency = parser.getValueAsInt(0);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private void addSnakeSlot(int start) {
+        if (snakes == snakeIds.length) {
+            int capacity = snakes * 2;
+            snakeIds = Arrays.copyOf(snakeIds, capacity);
+            snakeNames = Arrays.copyOf(snakeNames, capacity);
+            snakeHealth = Arrays.copyOf(snakeHealth, capacity);
+            snakeStart = Arrays.copyOf(snakeStart, capacity);
+            snakeEnd = Arrays.copyOf(snakeEnd, capacity);
+        }
+        snakeIds[snakes] = readId != null ? readId : "";
+        snakeNames[snakes] = readName;
+        snakeHealth[snakes] = readHealth;
+        snakeStart[snakes] = start;
+        snakeEnd[snakes] = points;
+        snakes++;
+    }
+
+    /**
+     * Read an array of {"x": .., "y": ..} objects, the START_ARRAY token has been consumed.
+     */
+    private void readPoints(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            int x = 0;
+            int y = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("x".equals(field)) {
+                    x = parser.getValueAsInt();
+                } else if ("y".equals(field)) {
+                    y = parser.getValueAsInt();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (points == xs.length) {
+                xs = Arrays.copyOf(xs, points * 2);
+                ys = Arrays.copyOf(ys, points * 2);
+            }
+            xs[points] = x;
+            ys[points] = y;
+            points++;
+        }
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected, JsonParser parser) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but got " + actual);
+        }
+    }
+}
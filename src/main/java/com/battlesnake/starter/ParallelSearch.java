@@ -0,0 +1,278 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link Search} on several cores by splitting the root: every root move, and optionally
+ * every reply of the first opponent below it, is searched as its own ForkJoinPool task on a
+ * private copy of the board.
+ *
+ * Each iteration first searches the best move of the previous iteration, then all the other
+ * root moves at once. The tasks share one alpha bound, so a move that is already worse than
+ * the best one found by another task is cut off early.
+ *
+ * The pool serves one search at a time. Its root tasks run until their deadline, so a second
+ * request would queue behind them and start with little of its time left; it searches on
+ * its own thread instead, which also keeps the pool and the request threads from asking for
+ * twice the cores.
+ */
+public class ParallelSearch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelSearch.class);
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    private final ForkJoinPool pool;
+    private final boolean splitReplies;
+    private final TranspositionTable table;
+
+    /**
+     * Set while a search runs on the pool.
+     */
+    private final AtomicBoolean poolInUse = new AtomicBoolean();
+
+    /**
+     * A task that splits its replies is done with these before it joins them, so a worker
+     * that runs another task while joining never finds them in use.
+     */
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+    private final ThreadLocal<Board> boards = ThreadLocal.withInitial(() -> new Board(11, 11, 8));
+
+    /**
+     * Deepest iteration any search completed, for tests.
+     */
+    final AtomicInteger depthReached = new AtomicInteger();
+
+    /**
+     * @param threads      number of worker threads, 1 searches on the calling thread only.
+     * @param splitReplies also split the replies of the first opponent into tasks.
+     * @param table        transposition table shared by all workers, or null.
+     */
+    public ParallelSearch(int threads, boolean splitReplies, TranspositionTable table) {
+        this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        this.splitReplies = splitReplies;
+        this.table = table;
+    }
+
+    /**
+     * Find our best move, see {@link Search#bestMove(Board, int[], int, long)}. The board is
+     * only read, unless the search runs single threaded.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline) {
+        return bestMove(board, candidates, count, deadline, null);
+    }
+
+    /**
+     * Find our best move, see {@link Search#bestMove(Board, int[], int, long, GameSessions.GameSession)}.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline, GameSessions.GameSession session) {
+        if (count == 1) {
+            return candidates[0];
+        }
+        if (pool == null || !poolInUse.compareAndSet(false, true)) {
+            return searchAlone(board, candidates, count, deadline, session);
+        }
+        try {
+            return searchOnPool(board, candidates, count, deadline, session);
+        } finally {
+            poolInUse.set(false);
+        }
+    }
+
+    /**
+     * Search on the calling thread.
+     */
+    private int searchAlone(Board board, int[] candidates, int count, long deadline,
+                            GameSessions.GameSession session) {
+        long started = System.nanoTime();
+        Search search = searches.get();
+        search.table = table;
+        int best = search.bestMove(board, candidates, count, deadline, session);
+        depthReached.accumulateAndGet(search.depthReached, Math::max);
+        METRICS.search(System.nanoTime() - started, search.nodes, search.depthReached,
+                search.tableProbes, search.tableHits, search.aborted());
+        record(session, board.turn, search.depthReached);
+        return best;
+    }
+
+    private int searchOnPool(Board board, int[] candidates, int count, long deadline,
+                             GameSessions.GameSession session) {
+        long started = System.nanoTime();
+        int[] order = Arrays.copyOf(candidates, count);
+        int startDepth = Search.reuse(table, table != null ? Zobrist.hash(board, null) : 0, board.turn, session, order, count);
+        int best = order[0];
+        RootTask[] tasks = new RootTask[count];
+        long nodes = 0;
+        long probes = 0;
+        long hits = 0;
+        boolean stopped = false;
+        int reached = 0;
+        for (int depth = startDepth; depth <= Search.MAX_DEPTH; depth++) {
+            AtomicInteger alpha = new AtomicInteger(-Search.INFINITY);
+
+            // the previous best move first, so its score can cut off the others
+            tasks[0] = new RootTask(board, order[0], depth, alpha, deadline);
+            pool.invoke(tasks[0]);
+            if (!tasks[0].aborted) {
+                for (int i = 1; i < count; i++) {
+                    tasks[i] = new RootTask(board, order[i], depth, alpha, deadline);
+                    pool.execute(tasks[i]);
+                }
+                for (int i = 1; i < count; i++) {
+                    tasks[i].join();
+                }
+            }
+
+            int iterationBest = -1;
+            int bestScore = -Search.INFINITY;
+            boolean aborted = false;
+            for (int i = 0; i < count && tasks[i] != null; i++) {
+                nodes += tasks[i].nodes;
+                probes += tasks[i].tableProbes;
+                hits += tasks[i].tableHits;
+                aborted |= tasks[i].aborted;
+                if (tasks[i].exact && tasks[i].score > bestScore) {
+                    bestScore = tasks[i].score;
+                    iterationBest = order[i];
+                }
+            }
+            if (aborted || iterationBest < 0) {
+                stopped = aborted;
+                break;
+            }
+            best = iterationBest;
+            reached = depth;
+            Search.moveToFront(order, count, best);
+            Arrays.fill(tasks, null);
+
+            if (bestScore >= Search.WIN - Search.MAX_DEPTH || bestScore <= Search.LOSS + Search.MAX_DEPTH) {
+                break;
+            }
+        }
+
+        if (MOVE_LOG.enabled()) {
+            MOVE_LOG.info(LOG, "Parallel search reached depth {} with {} nodes", reached, nodes);
+        }
+        depthReached.accumulateAndGet(reached, Math::max);
+        METRICS.search(System.nanoTime() - started, nodes, reached, probes, hits, stopped);
+        record(session, board.turn, reached);
+        return best;
+    }
+
+    private static void record(GameSessions.GameSession session, int turn, int depth) {
+        if (session != null) {
+            session.record(turn, depth);
+        }
+    }
+
+    /**
+     * Searches one root move, or one reply to it. Scores at or below the shared alpha are
+     * only upper bounds and are marked as not exact.
+     */
+    private class RootTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Board board;
+        private final int myMove;
+        private final int depth;
+        private final AtomicInteger alpha;
+        private final long deadline;
+
+        /**
+         * Opponent and its reply, or -1 to search all replies.
+         */
+        private final int agent;
+        private final int reply;
+
+        int score;
+        boolean exact;
+        boolean aborted;
+        long nodes;
+        long tableProbes;
+        long tableHits;
+
+        RootTask(Board board, int myMove, int depth, AtomicInteger alpha, long deadline) {
+            this(board, myMove, -1, -1, depth, alpha, deadline);
+        }
+
+        RootTask(Board board, int myMove, int agent, int reply, int depth, AtomicInteger alpha, long deadline) {
+            this.board = board;
+            this.myMove = myMove;
+            this.agent = agent;
+            this.reply = reply;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected void compute() {
+            Search search = searches.get();
+            Board copy = boards.get();
+            copy.copyFrom(board);
+            search.prepare(copy, deadline);
+            search.table = table;
+            search.sharedAlpha = alpha;
+
+            int opponent = search.firstOpponent();
+            if (agent < 0 && splitReplies && opponent >= 0) {
+                splitReplies(search, opponent);
+                return;
+            }
+
+            score = agent < 0
+                    ? search.searchRoot(myMove, depth, alpha.get())
+                    : search.searchReply(myMove, agent, reply, depth, alpha.get());
+            aborted = search.aborted();
+            nodes = search.nodes;
+            tableProbes = search.tableProbes;
+            tableHits = search.tableHits;
+            exact = !aborted && score > search.alphaSeen;
+            search.sharedAlpha = null;
+            if (exact && agent < 0) {
+                alpha.accumulateAndGet(score, Math::max);
+            }
+        }
+
+        /**
+         * Fork one task per reply of the opponent and take the worst of them for us.
+         */
+        private void splitReplies(Search search, int opponent) {
+            RootTask[] replies = new RootTask[4];
+            int count = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if (search.playable(opponent, direction)) {
+                    replies[count++] = new RootTask(board, myMove, opponent, direction, depth, alpha, deadline);
+                }
+            }
+            search.sharedAlpha = null;
+            if (count == 0) {
+                // the opponent is trapped, nothing to split
+                replies[count++] = new RootTask(board, myMove, opponent, Board.UP, depth, alpha, deadline);
+            }
+            invokeAll(Arrays.asList(replies).subList(0, count));
+
+            score = Search.INFINITY;
+            exact = true;
+            for (int i = 0; i < count; i++) {
+                score = Math.min(score, replies[i].score);
+                exact &= replies[i].exact;
+                aborted |= replies[i].aborted;
+                nodes += replies[i].nodes;
+                tableProbes += replies[i].tableProbes;
+                tableHits += replies[i].tableHits;
+            }
+            exact &= !aborted;
+            if (exact) {
+                alpha.accumulateAndGet(score, Math::max);
+            }
+        }
+    }
+}
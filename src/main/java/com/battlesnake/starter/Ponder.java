@@ -0,0 +1,287 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps searching while the engine is busy with the other snakes, between our answer to a
+ * /move and the next /move of the same game.
+ *
+ * After an answer, the replies the opponents are most likely to play are predicted from how
+ * much room each of their moves leaves them, and the positions they lead to are searched on
+ * a small pool of low priority threads. Everything found goes into the shared
+ * {@link TranspositionTable}, the root of every pondered position with the depth it was
+ * searched to, so when the next request comes with one of these positions the search starts
+ * at that depth, see {@link Search#reuse}.
+ *
+ * The next request or /end of the game cancels its pondering at once. A game is pondered
+ * on by one task at a time, and that task stops after {@link #budgetNanos} at the latest,
+ * so a game never takes more than one pondering thread for that long per turn.
+ */
+public class Ponder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Ponder.class);
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    final ThreadPoolExecutor pool;
+    private final TranspositionTable table;
+    private final long budgetNanos;
+    private final int positions;
+
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+    private final ThreadLocal<Simulator> simulators = ThreadLocal.withInitial(Simulator::new);
+    private final ThreadLocal<FloodFill> floodFills = ThreadLocal.withInitial(FloodFill::new);
+    private final ThreadLocal<Board> boards = ThreadLocal.withInitial(() -> new Board(11, 11, 8));
+
+    final LongAdder cancelled = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+
+    /**
+     * Configured by PONDER_THREADS, PONDER_MS, PONDER_POSITIONS and PONDER_QUEUE.
+     *
+     * @return the pondering, or null if PONDER_THREADS is 0 or there is no table to ponder into.
+     */
+    static Ponder fromProperties(TranspositionTable table) {
+        int threads = Integer.getInteger("PONDER_THREADS", 0);
+        if (threads <= 0 || table == null) {
+            return null;
+        }
+        return new Ponder(table, threads, Integer.getInteger("PONDER_MS", 250),
+                Integer.getInteger("PONDER_POSITIONS", 3), Integer.getInteger("PONDER_QUEUE", 16));
+    }
+
+    /**
+     * @param threads   pondering threads, shared by all games.
+     * @param budgetMs  time a game is pondered on per turn at most.
+     * @param positions predicted positions searched per turn at most.
+     * @param queue     games waiting for a pondering thread at most, the rest is not pondered on.
+     */
+    Ponder(TranspositionTable table, int threads, int budgetMs, int positions, int queue) {
+        this.table = table;
+        this.budgetNanos = budgetMs * 1_000_000L;
+        this.positions = Math.max(1, positions);
+        AtomicInteger count = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), runnable -> {
+                    Thread thread = new Thread(runnable, "ponder-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    // live requests go first
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    /**
+     * Ponder on the positions after our answer, instead of whatever the game was pondered
+     * on before.
+     *
+     * @param board the board of the answered request, copied before this returns.
+     * @param move  the direction answered.
+     */
+    public void start(Board board, int move, GameSessions.GameSession session) {
+        cancel(session);
+        Board answered = new Board(board.width, board.height, board.snakeCount);
+        answered.copyFrom(board);
+        Task task = new Task(answered, move, System.nanoTime() + budgetNanos, positions);
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            // the next request must not count the cancelled task or this one as pondered
+            session.pondering = null;
+            rejected.increment();
+            return;
+        }
+        session.pondering = task;
+        METRICS.ponders.increment();
+    }
+
+    /**
+     * Stop pondering on a game, because its next request or /end came in. What was found so
+     * far stays in the table.
+     */
+    public void cancel(GameSessions.GameSession session) {
+        Task task = session.pondering;
+        if (task != null && !task.cancel.getAndSet(true)) {
+            cancelled.increment();
+        }
+    }
+
+    /**
+     * Pondering on one answered move.
+     */
+    public class Task implements Runnable {
+        final AtomicBoolean cancel = new AtomicBoolean();
+
+        private final Board answered;
+        private final int move;
+        private final long deadline;
+
+        /**
+         * Hashes of the predicted positions, the first {@link #predicted} of them are set.
+         */
+        private final long[] hashes;
+        private volatile int predicted;
+
+        Task(Board answered, int move, long deadline, int positions) {
+            this.answered = answered;
+            this.move = move;
+            this.deadline = deadline;
+            this.hashes = new long[positions];
+        }
+
+        /**
+         * @return true if the position with the given hash is one of the pondered ones.
+         */
+        boolean covers(long hash) {
+            for (int i = 0; i < predicted; i++) {
+                if (hashes[i] == hash) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int[][] replies = predict();
+                for (int p = 0; p < replies.length && !cancel.get(); p++) {
+                    Board next = play(replies[p]);
+                    long now = System.nanoTime();
+                    if (next == null || now >= deadline) {
+                        continue;
+                    }
+                    hashes[predicted] = Zobrist.hash(next, null);
+                    predicted++;
+                    Search search = searches.get();
+                    search.table = table;
+                    // the time left is shared by the positions left, the likeliest first
+                    search.ponder(next, now + (deadline - now) / (replies.length - p), cancel);
+                }
+            } catch (RuntimeException e) {
+                LOG.warn("Pondering on game " + answered.gameId + " failed", e);
+            }
+        }
+
+        /**
+         * The likeliest replies of the opponents to our answer: every opponent plays the move
+         * that leaves it the most room, then in turn the opponent closest to our head plays
+         * the move with the second most room instead.
+         *
+         * @return the moves of every snake for each predicted position, likeliest first.
+         */
+        int[][] predict() {
+            Board board = boards.get();
+            board.copyFrom(answered);
+            Simulator simulator = simulators.get();
+            simulator.prepare(board);
+            FloodFill floodFill = floodFills.get();
+
+            int snakes = board.snakeCount;
+            int me = board.you;
+            int[] first = new int[snakes];
+            int[] second = new int[snakes];
+            int[] distance = new int[snakes];
+            for (int s = 0; s < snakes; s++) {
+                first[s] = Board.UP;
+                second[s] = -1;
+                if (s == me || !simulator.alive(s)) {
+                    continue;
+                }
+                int best = -1;
+                int secondBest = -1;
+                for (int direction = 0; direction < 4; direction++) {
+                    if (!simulator.playable(s, direction)) {
+                        continue;
+                    }
+                    int room = floodFill.area(board, board.neighbour(board.head[s], direction), board.length[s]);
+                    if (room > best) {
+                        secondBest = best;
+                        second[s] = first[s];
+                        best = room;
+                        first[s] = direction;
+                    } else if (room > secondBest) {
+                        secondBest = room;
+                        second[s] = direction;
+                    }
+                }
+                if (secondBest <= 0) {
+                    second[s] = -1;
+                }
+                distance[s] = Math.abs(board.x(board.head[s]) - board.x(board.head[me]))
+                        + Math.abs(board.y(board.head[s]) - board.y(board.head[me]));
+            }
+            first[me] = move;
+
+            int[][] replies = new int[hashes.length][];
+            int count = 0;
+            replies[count++] = first;
+            boolean[] varied = new boolean[snakes];
+            while (count < replies.length) {
+                int closest = -1;
+                for (int s = 0; s < snakes; s++) {
+                    if (second[s] >= 0 && !varied[s] && (closest < 0 || distance[s] < distance[closest])) {
+                        closest = s;
+                    }
+                }
+                if (closest < 0) {
+                    break;
+                }
+                varied[closest] = true;
+                int[] reply = first.clone();
+                reply[closest] = second[closest];
+                replies[count++] = reply;
+            }
+            return Arrays.copyOf(replies, count);
+        }
+
+        /**
+         * @return the board after everybody played the given moves, as the engine would send
+         * it, or null if we did not survive them.
+         */
+        Board play(int[] moves) {
+            Board board = boards.get();
+            board.copyFrom(answered);
+            Simulator simulator = simulators.get();
+            simulator.prepare(board);
+            System.arraycopy(moves, 0, simulator.moves(0), 0, moves.length);
+            simulator.makeTurn(0);
+            if (!simulator.alive(board.you)) {
+                return null;
+            }
+
+            Board next = new Board(board.width, board.height, board.snakeCount);
+            next.gameId = board.gameId;
+            next.ruleset = board.ruleset;
+            next.rules = board.rules;
+            next.hazardDamage = board.hazardDamage;
+            next.timeout = board.timeout;
+            next.turn = board.turn + 1;
+            System.arraycopy(board.food, 0, next.food, 0, next.food.length);
+            System.arraycopy(board.hazards, 0, next.hazards, 0, next.hazards.length);
+            for (int s = 0; s < board.snakeCount; s++) {
+                if (!simulator.alive(s)) {
+                    continue;
+                }
+                int n = next.addSnake(board.ids[s], board.names[s], board.health[s]);
+                for (int i = 0; i < board.length[s]; i++) {
+                    next.addSegment(n, board.segment(s, i));
+                }
+                if (s == board.you) {
+                    next.you = n;
+                }
+            }
+            next.markOwners();
+            return next;
+        }
+    }
+}
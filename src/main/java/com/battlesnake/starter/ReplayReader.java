@@ -0,0 +1,514 @@
+package com.battlesnake.starter;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.battlesnake.starter.ReplayRecorder.*;
+
+/**
+ * Reads a game recorded by {@link ReplayRecorder} back into boards, one turn at a time.
+ *
+ * The file is read through a buffered FileChannel and only the bodies of the current turn
+ * are kept, so a game of any length streams in constant memory. {@link #seek(int)} uses the
+ * keyframe index of a finished game to start at a given turn.
+ *
+ * As a program it replays recorded games through the move decision and reports how many
+ * moves come out the same as recorded, e.g. after a change to the search:
+ *
+ * <pre>java -cp target/classes:... com.battlesnake.starter.ReplayReader replays/</pre>
+ */
+public class ReplayReader implements Closeable {
+
+    private static final int[] NONE = new int[0];
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+
+    /**
+     * File offset of the first byte in {@link #buffer}.
+     */
+    private long bufferStart;
+
+    private final String gameId;
+    private final String ruleset;
+    private final int width;
+    private final int height;
+    private final int timeout;
+    private final int hazardDamage;
+
+    /**
+     * Offset of the first record after the header.
+     */
+    private final long records;
+
+    /**
+     * Empty board with the game's size and rules, for finding neighbours.
+     */
+    private final Board geometry;
+
+    private int snakeCount;
+    private String[] ids = new String[8];
+    private String[] names = new String[8];
+    private int you = -1;
+
+    private int turn;
+    private int latency;
+    private int move = -1;
+    private boolean last;
+    private int[] food = NONE;
+    private int[] hazards = NONE;
+    private int[] health = new int[8];
+
+    /**
+     * Bodies of the current turn by snake, null for a snake that is not on the board.
+     */
+    private int[][] bodies = new int[8][];
+    private int frameSnakes;
+
+    /**
+     * Set when {@link #seek(int)} decoded the frame that {@link #next(Board)} returns next.
+     */
+    private boolean held;
+
+    private int keys = -1;
+    private int[] keyTurns;
+    private long[] keyOffsets;
+
+    public ReplayReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            readIndex();
+            position(0);
+            if (fixedInt() != MAGIC) {
+                throw new IOException("Not a replay file: " + file);
+            }
+            int version = varint();
+            if (version != VERSION) {
+                throw new IOException("Unknown replay version " + version + ": " + file);
+            }
+            gameId = string();
+            ruleset = string();
+            width = varint();
+            height = varint();
+            timeout = varint();
+            hazardDamage = varint();
+            records = position();
+            geometry = new Board(width, height, 1);
+            geometry.rules = Ruleset.of(ruleset);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public String gameId() {
+        return gameId;
+    }
+
+    public String ruleset() {
+        return ruleset;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @return the turn of the last board read.
+     */
+    public int turn() {
+        return turn;
+    }
+
+    /**
+     * @return the direction answered for the last board read, or -1 for the board of /end.
+     */
+    public int move() {
+        return move;
+    }
+
+    /**
+     * @return true if the last board read is the one of /end.
+     */
+    public boolean last() {
+        return last;
+    }
+
+    /**
+     * @return true if the game ended and its file has an index for {@link #seek(int)}.
+     */
+    public boolean indexed() {
+        return keys >= 0;
+    }
+
+    /**
+     * Read the next turn into the given board. {@link Board#you} is -1 on a turn our snake
+     * is no longer on the board.
+     *
+     * @return false at the end of the game, or where a file that was cut off ends.
+     */
+    public boolean next(Board board) throws IOException {
+        if (held) {
+            held = false;
+        } else if (!advance()) {
+            return false;
+        }
+        fill(board);
+        return true;
+    }
+
+    /**
+     * Go to the given turn, so that {@link #next(Board)} reads it or the first turn after
+     * it. Without an index the game is read from the start up to it.
+     *
+     * @return false if the game has no such turn.
+     */
+    public boolean seek(int target) throws IOException {
+        int key = -1;
+        for (int k = 0; k < Math.max(0, keys); k++) {
+            if (keyTurns[k] <= target) {
+                key = k;
+            }
+        }
+        position(key >= 0 ? keyOffsets[key] : records);
+        Arrays.fill(bodies, null);
+        hazards = NONE;
+        held = false;
+        while (advance()) {
+            if (turn >= target) {
+                held = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Decode records up to and including the next frame.
+     */
+    private boolean advance() throws IOException {
+        try {
+            while (true) {
+                int tag = readByte();
+                if (tag == SNAKE) {
+                    snake();
+                } else if (tag == FRAME) {
+                    frame();
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void snake() throws IOException {
+        int index = varint();
+        String id = string();
+        String name = string();
+        boolean isYou = readByte() != 0;
+        if (index < snakeCount) {
+            // already known from the index
+            return;
+        }
+        if (index != snakeCount) {
+            throw new IOException("Snake " + index + " defined out of order in game " + gameId);
+        }
+        if (snakeCount == ids.length) {
+            ids = Arrays.copyOf(ids, snakeCount * 2);
+            names = Arrays.copyOf(names, snakeCount * 2);
+        }
+        ids[snakeCount] = id;
+        names[snakeCount] = name;
+        if (isYou) {
+            you = snakeCount;
+        }
+        snakeCount++;
+    }
+
+    private void frame() throws IOException {
+        int flags = readByte();
+        last = (flags & LAST) != 0;
+        turn = varint();
+        latency = varint();
+        move = varint() - 1;
+        food = cells();
+        if (varint() != 0) {
+            hazards = cells();
+        }
+        int count = varint();
+        if (count > snakeCount) {
+            throw new IOException("Frame of turn " + turn + " has undefined snakes in game " + gameId);
+        }
+        if (count > bodies.length) {
+            bodies = Arrays.copyOf(bodies, count);
+            health = Arrays.copyOf(health, count);
+        }
+        for (int i = 0; i < count; i++) {
+            int h = varint();
+            if (h == 0) {
+                bodies[i] = null;
+                continue;
+            }
+            health[i] = h - 1;
+            int code = varint();
+            if (code == 0) {
+                bodies[i] = fullBody();
+                continue;
+            }
+            int[] previous = bodies[i];
+            if (previous == null || previous.length == 0) {
+                throw new IOException("Frame of turn " + turn + " moves a snake that is not there in game " + gameId);
+            }
+            int length = previous.length + unzigzag(varint());
+            int[] body = new int[length];
+            body[0] = geometry.neighbour(previous[0], code - 1);
+            for (int s = 1; s < length; s++) {
+                body[s] = s - 1 < previous.length - 1 ? previous[s - 1] : body[s - 1];
+            }
+            bodies[i] = body;
+        }
+        frameSnakes = count;
+    }
+
+    private int[] fullBody() throws IOException {
+        int[] body = new int[varint()];
+        if (body.length == 0) {
+            return body;
+        }
+        body[0] = varint();
+        for (int s = 1; s < body.length; s++) {
+            int code = readByte();
+            if (code == STACKED) {
+                body[s] = body[s - 1];
+            } else if (code == JUMP) {
+                body[s] = varint();
+            } else {
+                body[s] = geometry.neighbour(body[s - 1], code);
+            }
+        }
+        return body;
+    }
+
+    private void fill(Board board) {
+        board.reset(width, height);
+        board.gameId = gameId;
+        board.ruleset = ruleset;
+        board.rules = Ruleset.of(ruleset);
+        board.hazardDamage = hazardDamage;
+        board.timeout = timeout;
+        board.turn = turn;
+        board.latency = latency;
+        for (int cell : food) {
+            Board.set(board.food, cell);
+        }
+        for (int cell : hazards) {
+            Board.set(board.hazards, cell);
+        }
+        for (int i = 0; i < frameSnakes; i++) {
+            int[] body = bodies[i];
+            if (body == null) {
+                continue;
+            }
+            int s = board.addSnake(ids[i], names[i], health[i]);
+            for (int cell : body) {
+                board.addSegment(s, cell);
+            }
+            if (i == you) {
+                board.you = s;
+            }
+        }
+        if (board.you >= 0) {
+            board.markOwners();
+        }
+    }
+
+    /**
+     * Read the snakes and keyframes from the end of the file, if the game ended.
+     */
+    private void readIndex() throws IOException {
+        long size = channel.size();
+        if (size < 12) {
+            return;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(12);
+        while (trailer.hasRemaining() && channel.read(trailer, size - 12 + trailer.position()) > 0) {
+            // read the rest
+        }
+        trailer.flip();
+        long start = trailer.getLong();
+        if (trailer.getInt() != TRAILER_MAGIC || start < 0 || start >= size - 12) {
+            return;
+        }
+        position(start);
+        if (readByte() != INDEX) {
+            return;
+        }
+        int count = varint();
+        for (int i = 0; i < count; i++) {
+            snake();
+        }
+        int found = varint();
+        keyTurns = new int[found];
+        keyOffsets = new long[found];
+        long offset = 0;
+        for (int k = 0; k < found; k++) {
+            keyTurns[k] = varint();
+            offset += varlong();
+            keyOffsets[k] = offset;
+        }
+        keys = found;
+    }
+
+    private long position() {
+        return bufferStart + buffer.position();
+    }
+
+    private void position(long offset) throws IOException {
+        channel.position(offset);
+        bufferStart = offset;
+        buffer.clear().limit(0);
+    }
+
+    private int readByte() throws IOException {
+        if (!buffer.hasRemaining()) {
+            bufferStart = channel.position();
+            buffer.clear();
+            int read = channel.read(buffer);
+            buffer.flip();
+            if (read <= 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer.get() & 0xFF;
+    }
+
+    private int varint() throws IOException {
+        return (int) varlong();
+    }
+
+    private long varlong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in game " + gameId);
+    }
+
+    private int fixedInt() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | readByte();
+        }
+        return value;
+    }
+
+    private String string() throws IOException {
+        byte[] utf8 = new byte[varint()];
+        for (int i = 0; i < utf8.length; i++) {
+            utf8[i] = (byte) readByte();
+        }
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private int[] cells() throws IOException {
+        int[] cells = new int[varint()];
+        int cell = 0;
+        for (int i = 0; i < cells.length; i++) {
+            cell += varint();
+            cells[i] = cell;
+        }
+        return cells;
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Replay recorded games through the move decision.
+     *
+     * @param args replay files, or directories of them.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayReader <replay file or directory>...");
+            System.exit(2);
+        }
+        System.getProperties().putIfAbsent("LOG_MODE", "off");
+        System.getProperties().putIfAbsent("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listed = Files.list(path)) {
+                    files.addAll(listed.filter(file -> file.toString().endsWith(SUFFIX)).sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+
+        Snake.Handler handler = new Snake.Handler();
+        Board board = new Board(11, 11, 8);
+        int games = 0;
+        int moves = 0;
+        int same = 0;
+        long nanos = 0;
+        for (Path file : files) {
+            try (ReplayReader reader = new ReplayReader(file)) {
+                while (reader.next(board)) {
+                    if (reader.move() < 0 || board.you < 0) {
+                        continue;
+                    }
+                    // a search that misses its deadline keeps reading the board it was given
+                    Board copy = new Board(board.width, board.height, board.snakeCount);
+                    copy.copyFrom(board);
+                    long started = System.nanoTime();
+                    int move = handler.decide(copy, started);
+                    nanos += System.nanoTime() - started;
+                    moves++;
+                    if (move == reader.move()) {
+                        same++;
+                    }
+                }
+                games++;
+            } catch (IOException e) {
+                System.err.println("Skipping " + file + ": " + e.getMessage());
+            }
+        }
+        System.out.printf("%d games, %d moves, %d answered as recorded (%.1f%%), %.2f ms per move%n",
+                games, moves, same, moves > 0 ? 100.0 * same / moves : 0.0,
+                moves > 0 ? nanos / 1e6 / moves : 0.0);
+    }
+}
@@ -0,0 +1,634 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the games the snake plays into one binary replay file per game, to be read back
+ * by {@link ReplayReader} for regression and benchmark runs.
+ *
+ * The request thread only copies the board into a {@link Capture} and queues it; a
+ * background thread encodes it and appends it to the game's file through a buffered
+ * FileChannel. When the queue is full the capture is dropped rather than waited for.
+ *
+ * A file starts with a header for the game, then the snakes, then one frame per /move and
+ * a last one for /end. Cells are varints, and a body that moved the usual way is stored as
+ * the direction of its new head and its change in length. Every {@link #KEYFRAME_EVERY}th
+ * frame is stored in full, and /end appends an index of these keyframes, so a reader can
+ * start at any turn. A file of a game that never ended has no index but reads all the same.
+ */
+public class ReplayRecorder {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayRecorder.class);
+
+    static final int MAGIC = 0x42535250;
+    static final int TRAILER_MAGIC = 0x42535249;
+    static final int VERSION = 1;
+    static final String SUFFIX = ".replay";
+
+    static final int SNAKE = 1;
+    static final int FRAME = 2;
+    static final int INDEX = 3;
+
+    /**
+     * Frame flags.
+     */
+    static final int KEY = 1;
+    static final int LAST = 2;
+
+    /**
+     * Codes of a body segment in a full body, after the directions 0 to 3 from the segment
+     * before it.
+     */
+    static final int STACKED = 4;
+    static final int JUMP = 5;
+
+    static final int KEYFRAME_EVERY = 32;
+
+    /**
+     * Bytes buffered per game before they are written.
+     */
+    private static final int FLUSH_BYTES = 8 * 1024;
+
+    private final Path dir;
+    private final int maxGames;
+    private final BlockingQueue<Capture> queue;
+
+    /**
+     * Games being written, least recently written first. Only the writer thread uses it.
+     */
+    private final LinkedHashMap<String, Game> games;
+
+    final LongAdder recorded = new LongAdder();
+    final LongAdder dropped = new LongAdder();
+    final LongAdder failures = new LongAdder();
+
+    /**
+     * Configured by REPLAY_DIR, REPLAY_MAX_GAMES and REPLAY_QUEUE.
+     *
+     * @return the recorder, or null if REPLAY_DIR is not set.
+     */
+    static ReplayRecorder fromProperties() {
+        String dir = System.getProperty("REPLAY_DIR");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        ReplayRecorder recorder = new ReplayRecorder(Paths.get(dir),
+                Integer.getInteger("REPLAY_MAX_GAMES", 256), Integer.getInteger("REPLAY_QUEUE", 1024));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> recorder.flush(1000), "replay-flush"));
+        LOG.info("Recording games into {}", dir);
+        return recorder;
+    }
+
+    /**
+     * @param maxGames games written at once, the least recently written one is closed
+     *                 without an index beyond that.
+     * @param queue    captures waiting to be written at most.
+     */
+    ReplayRecorder(Path dir, int maxGames, int queue) {
+        this.dir = dir;
+        this.maxGames = Math.max(1, maxGames);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queue));
+        this.games = new LinkedHashMap<String, Game>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Game> eldest) {
+                if (size() <= ReplayRecorder.this.maxGames) {
+                    return false;
+                }
+                close(eldest.getValue());
+                return true;
+            }
+        };
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot record into " + dir, e);
+        }
+        Thread writer = new Thread(this::write, "replay");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The board of a request, copied so the request thread can go on using its own.
+     */
+    static final class Capture {
+        static final int START = 0;
+        static final int MOVE = 1;
+        static final int END = 2;
+
+        final int kind;
+        final CountDownLatch flushed;
+        String gameId;
+        String ruleset;
+        int width;
+        int height;
+        int timeout;
+        int hazardDamage;
+        int turn;
+        int latency;
+        int move = -1;
+        String youId;
+        String[] ids;
+        String[] names;
+        int[] health;
+        int[][] bodies;
+        int[] food;
+        int[] hazards;
+
+        Capture(CountDownLatch flushed, int kind) {
+            this.flushed = flushed;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Record the board of /start.
+     */
+    public void start(Board board) {
+        offer(capture(board, Capture.START));
+    }
+
+    /**
+     * Copy the board of a /move request before the search gets to it, to be recorded with
+     * the answer through {@link #move(Capture, int)}.
+     */
+    public Capture capture(Board board) {
+        return capture(board, Capture.MOVE);
+    }
+
+    /**
+     * Record a /move request.
+     *
+     * @param move the direction answered, see {@link Board#MOVES}.
+     */
+    public void move(Capture capture, int move) {
+        capture.move = move;
+        offer(capture);
+    }
+
+    /**
+     * Record the board of /end and finish the game's file.
+     */
+    public void end(Board board) {
+        offer(capture(board, Capture.END));
+    }
+
+    /**
+     * Wait until everything queued so far is written.
+     *
+     * @return false if that took longer than the given time.
+     */
+    boolean flush(long timeoutMs) {
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            return queue.offer(new Capture(latch, Capture.START), timeoutMs, TimeUnit.MILLISECONDS)
+                    && latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void offer(Capture capture) {
+        if (capture.gameId == null || capture.gameId.isEmpty() || !queue.offer(capture)) {
+            dropped.increment();
+        }
+    }
+
+    static Capture capture(Board board, int kind) {
+        Capture capture = new Capture(null, kind);
+        capture.gameId = board.gameId;
+        capture.ruleset = board.ruleset;
+        capture.width = board.width;
+        capture.height = board.height;
+        capture.timeout = board.timeout;
+        capture.hazardDamage = board.hazardDamage;
+        capture.turn = board.turn;
+        capture.latency = board.latency;
+        capture.youId = board.you >= 0 ? board.ids[board.you] : null;
+        int snakes = board.snakeCount;
+        capture.ids = Arrays.copyOf(board.ids, snakes);
+        capture.names = Arrays.copyOf(board.names, snakes);
+        capture.health = Arrays.copyOf(board.health, snakes);
+        capture.bodies = new int[snakes][];
+        for (int s = 0; s < snakes; s++) {
+            capture.bodies[s] = board.segments(s);
+        }
+        capture.food = cells(board.food, board.width * board.height);
+        capture.hazards = cells(board.hazards, board.width * board.height);
+        return capture;
+    }
+
+    /**
+     * @return the set cells of a mask, in ascending order.
+     */
+    static int[] cells(long[] mask, int size) {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        int[] cells = new int[count];
+        int n = 0;
+        for (int w = 0; w < mask.length; w++) {
+            for (long word = mask[w]; word != 0; word &= word - 1) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (cell < size) {
+                    cells[n++] = cell;
+                }
+            }
+        }
+        return n == count ? cells : Arrays.copyOf(cells, n);
+    }
+
+    private void write() {
+        while (true) {
+            Capture capture;
+            try {
+                capture = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (capture.flushed != null) {
+                for (Iterator<Game> it = games.values().iterator(); it.hasNext(); ) {
+                    Game game = it.next();
+                    try {
+                        game.flush();
+                    } catch (IOException e) {
+                        fail(game, e);
+                        it.remove();
+                    }
+                }
+                capture.flushed.countDown();
+                continue;
+            }
+            Game game = games.get(capture.gameId);
+            try {
+                if (game == null) {
+                    game = open(capture);
+                    games.put(capture.gameId, game);
+                }
+                if (capture.kind != Capture.START) {
+                    game.frame(capture);
+                    recorded.increment();
+                }
+                if (capture.kind == Capture.END) {
+                    game.index();
+                    games.remove(capture.gameId);
+                    game.channel.close();
+                } else if (game.out.size >= FLUSH_BYTES) {
+                    game.flush();
+                }
+            } catch (IOException e) {
+                if (game != null) {
+                    fail(game, e);
+                    games.remove(capture.gameId);
+                }
+            }
+        }
+    }
+
+    private void fail(Game game, IOException e) {
+        failures.increment();
+        LOG.warn("Could not record game " + game.id, e);
+        try {
+            game.channel.close();
+        } catch (IOException ignored) {
+            // already failing
+        }
+    }
+
+    private void close(Game game) {
+        try {
+            game.flush();
+            game.channel.close();
+        } catch (IOException e) {
+            fail(game, e);
+        }
+    }
+
+    /**
+     * Create the file of a game seen for the first time. A game that was closed before,
+     * because too many were written at once, goes on in a second file.
+     */
+    private Game open(Capture capture) throws IOException {
+        String name = capture.gameId.replaceAll("[^A-Za-z0-9._-]", "_");
+        for (int attempt = 0; ; attempt++) {
+            Path file = dir.resolve(attempt == 0 ? name + SUFFIX : name + "." + attempt + SUFFIX);
+            try {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                return new Game(capture, channel);
+            } catch (FileAlreadyExistsException e) {
+                // try the next name
+            }
+        }
+    }
+
+    /**
+     * File and encoder state of one game.
+     */
+    private static final class Game {
+        final String id;
+        final FileChannel channel;
+        final Bytes out = new Bytes(FLUSH_BYTES + 1024);
+        long flushed;
+
+        /**
+         * Empty board with the game's size and rules, for finding neighbours.
+         */
+        final Board geometry;
+
+        final Map<String, Integer> snakes = new HashMap<>();
+        /**
+         * The snakes again, for the index.
+         */
+        final Bytes table = new Bytes(256);
+
+        /**
+         * Bodies written in the last frame by snake, null for a snake that was not on the board.
+         */
+        int[][] previous = new int[8][];
+        int[] hazards;
+        int frames;
+
+        int keys;
+        int[] keyTurns = new int[16];
+        long[] keyOffsets = new long[16];
+
+        Game(Capture capture, FileChannel channel) {
+            this.id = capture.gameId;
+            this.channel = channel;
+            this.geometry = new Board(capture.width, capture.height, 1);
+            geometry.rules = Ruleset.of(capture.ruleset);
+            out.fixedInt(MAGIC);
+            out.varint(VERSION);
+            out.string(capture.gameId);
+            out.string(capture.ruleset == null ? "standard" : capture.ruleset);
+            out.varint(capture.width);
+            out.varint(capture.height);
+            out.varint(capture.timeout);
+            out.varint(capture.hazardDamage);
+            define(capture);
+        }
+
+        long position() {
+            return flushed + out.size;
+        }
+
+        /**
+         * Write a SNAKE record for every snake not seen before.
+         */
+        void define(Capture capture) {
+            for (int s = 0; s < capture.ids.length; s++) {
+                String snake = capture.ids[s];
+                if (snakes.containsKey(snake)) {
+                    continue;
+                }
+                int index = snakes.size();
+                snakes.put(snake, index);
+                if (index == previous.length) {
+                    previous = Arrays.copyOf(previous, index * 2);
+                }
+                boolean you = snake.equals(capture.youId);
+                out.write(SNAKE);
+                snake(out, index, snake, capture.names[s], you);
+                snake(table, index, snake, capture.names[s], you);
+            }
+        }
+
+        private static void snake(Bytes bytes, int index, String id, String name, boolean you) {
+            bytes.varint(index);
+            bytes.string(id);
+            bytes.string(name);
+            bytes.write(you ? 1 : 0);
+        }
+
+        void frame(Capture capture) {
+            define(capture);
+            boolean key = frames++ % KEYFRAME_EVERY == 0;
+            if (key) {
+                if (keys == keyTurns.length) {
+                    keyTurns = Arrays.copyOf(keyTurns, keys * 2);
+                    keyOffsets = Arrays.copyOf(keyOffsets, keys * 2);
+                }
+                keyTurns[keys] = capture.turn;
+                keyOffsets[keys++] = position();
+            }
+            out.write(FRAME);
+            out.write((key ? KEY : 0) | (capture.kind == Capture.END ? LAST : 0));
+            out.varint(capture.turn);
+            out.varint(capture.latency);
+            out.varint(capture.move + 1);
+            out.cells(capture.food);
+            if (key || !Arrays.equals(hazards, capture.hazards)) {
+                out.varint(1);
+                out.cells(capture.hazards);
+                hazards = capture.hazards;
+            } else {
+                out.varint(0);
+            }
+
+            int count = snakes.size();
+            int[] captured = new int[count];
+            Arrays.fill(captured, -1);
+            for (int s = 0; s < capture.ids.length; s++) {
+                captured[snakes.get(capture.ids[s])] = s;
+            }
+            out.varint(count);
+            for (int i = 0; i < count; i++) {
+                int s = captured[i];
+                if (s < 0) {
+                    out.varint(0);
+                    previous[i] = null;
+                    continue;
+                }
+                int[] body = capture.bodies[s];
+                out.varint(capture.health[s] + 1);
+                int direction = key ? -1 : continued(geometry, previous[i], body);
+                if (direction >= 0) {
+                    out.varint(direction + 1);
+                    out.varint(zigzag(body.length - previous[i].length));
+                } else {
+                    out.varint(0);
+                    fullBody(body);
+                }
+                previous[i] = body;
+            }
+        }
+
+        private void fullBody(int[] body) {
+            out.varint(body.length);
+            if (body.length == 0) {
+                return;
+            }
+            out.varint(body[0]);
+            for (int i = 1; i < body.length; i++) {
+                if (body[i] == body[i - 1]) {
+                    out.write(STACKED);
+                    continue;
+                }
+                int direction = direction(geometry, body[i - 1], body[i]);
+                if (direction >= 0) {
+                    out.write(direction);
+                } else {
+                    out.write(JUMP);
+                    out.varint(body[i]);
+                }
+            }
+        }
+
+        /**
+         * Append the snakes and the keyframes, then where they start, so a reader finds them
+         * from the end of the file.
+         */
+        void index() throws IOException {
+            long start = position();
+            out.write(INDEX);
+            out.varint(snakes.size());
+            out.bytes(table);
+            out.varint(keys);
+            long offset = 0;
+            for (int k = 0; k < keys; k++) {
+                out.varint(keyTurns[k]);
+                out.varlong(keyOffsets[k] - offset);
+                offset = keyOffsets[k];
+            }
+            out.fixedLong(start);
+            out.fixedInt(TRAILER_MAGIC);
+            flush();
+        }
+
+        void flush() throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(out.bytes, 0, out.size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            flushed += out.size;
+            out.size = 0;
+        }
+    }
+
+    /**
+     * A body continues the previous one if it is a new head followed by the previous body,
+     * cut short or with its tail stacked the way the engine grows a snake.
+     *
+     * @return the direction of the head from the previous body's, or -1 if the body does
+     * not continue it.
+     */
+    static int continued(Board geometry, int[] previous, int[] body) {
+        if (previous == null || previous.length == 0 || body.length == 0) {
+            return -1;
+        }
+        for (int i = 1; i < body.length; i++) {
+            if (body[i] != (i - 1 < previous.length - 1 ? previous[i - 1] : body[i - 1])) {
+                return -1;
+            }
+        }
+        return direction(geometry, previous[0], body[0]);
+    }
+
+    /**
+     * @return the direction that leads from one cell to the other, or -1 if they are not next
+     * to each other.
+     */
+    static int direction(Board geometry, int from, int to) {
+        for (int direction = 0; direction < 4; direction++) {
+            if (geometry.neighbour(from, direction) == to) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Growable byte array with the encodings of the format.
+     */
+    static final class Bytes {
+        byte[] bytes;
+        int size;
+
+        Bytes(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void write(int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        void varint(int value) {
+            varlong(value & 0xFFFFFFFFL);
+        }
+
+        void varlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void fixedInt(int value) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                write(value >>> shift);
+            }
+        }
+
+        void fixedLong(long value) {
+            fixedInt((int) (value >>> 32));
+            fixedInt((int) value);
+        }
+
+        void string(String value) {
+            byte[] utf8 = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            for (byte b : utf8) {
+                write(b);
+            }
+        }
+
+        /**
+         * Ascending cells as their count, the first one and the gaps between them.
+         */
+        void cells(int[] cells) {
+            varint(cells.length);
+            int last = 0;
+            for (int cell : cells) {
+                varint(cell - last);
+                last = cell;
+            }
+        }
+
+        void bytes(Bytes other) {
+            for (int i = 0; i < other.size; i++) {
+                write(other.bytes[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.battlesnake.starter;
+
+/**
+ * The game modes the simulator knows, by "game.ruleset.name".
+ *
+ * Hazards damage heads in every mode, as maps can place them in any game. Royale differs
+ * from standard only in how hazards spread, which the engine sends us every turn.
+ */
+public enum Ruleset {
+    STANDARD("standard", false, false),
+    ROYALE("royale", false, false),
+    CONSTRICTOR("constrictor", false, true),
+    WRAPPED("wrapped", true, false);
+
+    final String id;
+
+    /**
+     * Moving off an edge enters the board again on the opposite one.
+     */
+    final boolean wrapped;
+
+    /**
+     * Every snake grows and is fully fed every turn.
+     */
+    final boolean alwaysGrow;
+
+    Ruleset(String id, boolean wrapped, boolean alwaysGrow) {
+        this.id = id;
+        this.wrapped = wrapped;
+        this.alwaysGrow = alwaysGrow;
+    }
+
+    /**
+     * @return the ruleset with the given name, standard for anything unknown.
+     */
+    static Ruleset of(String name) {
+        for (Ruleset ruleset : values()) {
+            if (ruleset.id.equals(name)) {
+                return ruleset;
+            }
+        }
+        return STANDARD;
+    }
+}
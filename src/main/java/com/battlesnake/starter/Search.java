@@ -0,0 +1,693 @@
+package com.battlesnake.starter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Iterative deepening alpha-beta search over simulated turns.
+ *
+ * The search is paranoid: we pick our move first, then every other snake in "board.snakes"
+ * picks the reply that is worst for us. Once all snakes have picked, a {@link Simulator}
+ * applies the turn to the board in place and undoes it again on the way back up, so no
+ * state is copied per node.
+ *
+ * Moves are tried best first: the move stored in the table, the move of the best line found
+ * so far, two killer moves per ply and snake, which cut off a sibling before, and then by a
+ * history score per snake, cell and direction, raised for every cutoff. Killers are cleared
+ * and history scores halved whenever a new root position comes along.
+ *
+ * A search instance owns its simulator and is not thread safe. {@link ParallelSearch}
+ * gives every worker its own instance and board copy, and lets them share an alpha bound.
+ */
+public class Search {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Search.class);
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+    private static final Metrics METRICS = Metrics.DEFAULT;
+
+    static final int WIN = 1_000_000;
+    static final int LOSS = -WIN;
+    static final int INFINITY = Integer.MAX_VALUE;
+
+    static final int MAX_DEPTH = Simulator.MAX_PLIES;
+
+    /**
+     * How often, in nodes, the clock is read.
+     */
+    private static final int CLOCK_INTERVAL = 128;
+
+    /**
+     * Taken off a position in which we have less room than our own length.
+     */
+    private static final int TRAPPED = 1000;
+
+    /**
+     * Order keys of the moves that go first, above any history score.
+     */
+    private static final int HISTORY_MAX = 1 << 24;
+    private static final int SECOND_KILLER = HISTORY_MAX + 1;
+    private static final int FIRST_KILLER = HISTORY_MAX + 2;
+    private static final int LINE_MOVE = HISTORY_MAX + 3;
+    private static final int TABLE_MOVE = HISTORY_MAX + 4;
+
+    private Board board;
+    private int me;
+    private int snakeCount;
+    private long deadline;
+    private boolean aborted;
+
+    long nodes;
+    int depthReached;
+    long tableProbes;
+    long tableHits;
+
+    /**
+     * Cutoffs since {@link #prepare(Board, long)}, and how many of them the first move tried
+     * made, which is how good the move ordering is.
+     */
+    long cutoffs;
+    long firstMoveCutoffs;
+
+    /**
+     * Iterations {@link #bestMove} goes up to, lower to search to a fixed depth.
+     */
+    int maxDepth = MAX_DEPTH;
+
+    /**
+     * Order moves by the killers, the best line and the history, or only try the table move
+     * first.
+     */
+    boolean ordering = true;
+
+    /**
+     * Shared transposition table, or null to search without one.
+     */
+    TranspositionTable table;
+
+    /**
+     * Alpha bound shared with the searches of the other root moves, or null.
+     */
+    AtomicInteger sharedAlpha;
+
+    /**
+     * Stops the search like its deadline once set, or null. Read with the clock.
+     */
+    AtomicBoolean cancelled;
+
+    /**
+     * Highest alpha the root opponents have seen since {@link #prepare(Board, long)}. A root
+     * score above it is exact, anything else is only an upper bound.
+     */
+    int alphaSeen;
+
+    private final Simulator simulator = new Simulator();
+    private final FloodFill floodFill = new FloodFill();
+    private final Territory territory = new Territory();
+
+    /**
+     * Root position the killers and the history belong to.
+     */
+    private long root;
+    private int cells;
+
+    /**
+     * Two killer moves per ply and snake at ((ply * snakeCount + s) * 2), -1 if none.
+     */
+    private int[] killers = new int[0];
+
+    /**
+     * Cutoffs of a snake's move from a cell at ((s * cells + cell) * 4 + direction), weighted
+     * by the depth left.
+     */
+    private int[] history = new int[0];
+
+    /**
+     * Per recursion frame: our moves from its ply on along the best line below it, with the
+     * hashes of the positions they are played in. A max node at ply p is frame p * frames,
+     * the opponents' node that starts at snake s is frame p * frames + 1 + s.
+     */
+    private int frames;
+    private int[][] lineMoves = new int[0][];
+    private long[][] lineHashes = new long[0][];
+    private int[] lineEnd = new int[0];
+
+    /**
+     * Moves of every frame in the order they are tried.
+     */
+    private int[][] orders = new int[0][];
+
+    /**
+     * Best line from the root found so far, by the last root move that improved on alpha.
+     */
+    private final int[] bestLine = new int[MAX_DEPTH + 2];
+    private final long[] bestLineHashes = new long[MAX_DEPTH + 2];
+    private int bestLineEnd;
+
+    /**
+     * Find our best move. The board is changed while searching, but it is back in its
+     * original state when this method returns.
+     *
+     * @param board      the board of the current request.
+     * @param candidates directions we are allowed to pick from.
+     * @param count      number of entries in candidates.
+     * @param deadline   System.nanoTime() value at which the search has to stop.
+     * @return the best direction found, or candidates[0] if not even depth one finished.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline) {
+        return bestMove(board, candidates, count, deadline, null);
+    }
+
+    /**
+     * Find our best move, picking up where the previous turn of the game left off.
+     *
+     * @param session the game's session, or null.
+     */
+    public int bestMove(Board board, int[] candidates, int count, long deadline, GameSessions.GameSession session) {
+        prepare(board, deadline);
+        int[] order = Arrays.copyOf(candidates, count);
+        int startDepth = reuse(table, simulator.hash(), board.turn, session, order, count);
+
+        int best = order[0];
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            int iterationBest = -1;
+            int alpha = -INFINITY;
+            for (int i = 0; i < count; i++) {
+                int score = searchRoot(order[i], depth, alpha);
+                if (aborted) {
+                    break;
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    iterationBest = order[i];
+                }
+            }
+            if (aborted) {
+                break;
+            }
+            best = iterationBest;
+            depthReached = depth;
+            moveToFront(order, count, best);
+
+            // nothing left to learn once the outcome is certain
+            if (alpha >= WIN - MAX_DEPTH || alpha <= LOSS + MAX_DEPTH) {
+                break;
+            }
+        }
+
+        if (MOVE_LOG.enabled()) {
+            MOVE_LOG.info(LOG, "Search reached depth {} with {} nodes, {} of {} cutoffs by the first move",
+                    depthReached, nodes, firstMoveCutoffs, cutoffs);
+        }
+        return best;
+    }
+
+    /**
+     * Search a position expected to be the root of the game's next request, until the
+     * deadline or until cancelled, see {@link Ponder}. The root goes into the table after
+     * every finished iteration, with its best move and the depth it was searched to.
+     *
+     * @return the depth finished.
+     */
+    int ponder(Board board, long deadline, AtomicBoolean cancel) {
+        prepare(board, deadline);
+        if (table == null) {
+            return 0;
+        }
+        cancelled = cancel;
+        try {
+            int[] order = new int[4];
+            int count = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if (playable(me, direction)) {
+                    order[count++] = direction;
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long hash = simulator.hash();
+            long entry = table.probe(hash);
+            if (entry != TranspositionTable.MISS) {
+                moveToFront(order, count, TranspositionTable.move(entry));
+            }
+            for (int depth = 1; depth <= maxDepth; depth++) {
+                int iterationBest = -1;
+                int alpha = -INFINITY;
+                for (int i = 0; i < count; i++) {
+                    int score = searchRoot(order[i], depth, alpha);
+                    if (aborted) {
+                        return depthReached;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        iterationBest = order[i];
+                    }
+                }
+                depthReached = depth;
+                moveToFront(order, count, iterationBest);
+                table.store(hash, depth, toTable(alpha, 0), TranspositionTable.EXACT, iterationBest);
+                if (alpha >= WIN - MAX_DEPTH || alpha <= LOSS + MAX_DEPTH) {
+                    break;
+                }
+            }
+            return depthReached;
+        } finally {
+            cancelled = null;
+        }
+    }
+
+    /**
+     * Reuse what the previous turn of the game left behind: the root position was a node
+     * one ply below the previous root, so the table usually knows its best move already,
+     * and the shallow iterations can be skipped. A root that was pondered starts at the
+     * depth the pondering reached.
+     *
+     * Also ages the table, see {@link TranspositionTable#age(long)}.
+     *
+     * @param order root moves, the stored move is moved to the front.
+     * @return the depth to start iterating at.
+     */
+    static int reuse(TranspositionTable table, long hash, int turn, GameSessions.GameSession session,
+                     int[] order, int count) {
+        if (table == null) {
+            return 1;
+        }
+        table.age(System.nanoTime());
+        Ponder.Task pondering = session != null ? session.pondering : null;
+        boolean pondered = pondering != null && pondering.covers(hash);
+        if (pondering != null) {
+            (pondered ? METRICS.ponderHits : METRICS.ponderMisses).increment();
+        }
+        long entry = table.probe(hash);
+        if (entry == TranspositionTable.MISS) {
+            return 1;
+        }
+        moveToFront(order, count, TranspositionTable.move(entry));
+        if (pondered) {
+            return Math.max(1, TranspositionTable.depth(entry));
+        }
+        if (session == null || !session.follows(turn)) {
+            return 1;
+        }
+        return Math.max(1, Math.min(session.depth - 1, TranspositionTable.depth(entry)));
+    }
+
+    /**
+     * Score our move at the root at the given depth, see {@link #prepare(Board, long)}.
+     */
+    int searchRoot(int myMove, int depth, int alpha) {
+        simulator.moves(0)[me] = myMove;
+        alphaSeen = Math.max(alphaSeen, alpha);
+        int score = opponents(depth, 0, 0, alpha, INFINITY);
+        if (!aborted && score > alphaSeen) {
+            // the best root move so far, its line is tried first from now on
+            bestLine[0] = myMove;
+            bestLineHashes[0] = simulator.hash();
+            int end = lineEnd[1];
+            System.arraycopy(lineMoves[1], 1, bestLine, 1, end - 1);
+            System.arraycopy(lineHashes[1], 1, bestLineHashes, 1, end - 1);
+            bestLineEnd = end;
+        }
+        return score;
+    }
+
+    /**
+     * Score our move at the root together with one reply of the given opponent.
+     */
+    int searchReply(int myMove, int agent, int reply, int depth, int alpha) {
+        simulator.moves(0)[me] = myMove;
+        simulator.moves(0)[agent] = reply;
+        alphaSeen = Math.max(alphaSeen, alpha);
+        return opponents(depth, 0, agent + 1, alpha, INFINITY);
+    }
+
+    /**
+     * @return the first opponent that moves after us, or -1 if there is none.
+     */
+    int firstOpponent() {
+        for (int s = 0; s < snakeCount; s++) {
+            if (s != me && simulator.alive(s)) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    boolean aborted() {
+        return aborted;
+    }
+
+    long hash() {
+        return simulator.hash();
+    }
+
+    /**
+     * Get ready to search the given board, which is changed in place while searching.
+     */
+    void prepare(Board board, long deadline) {
+        this.board = board;
+        this.me = board.you;
+        this.snakeCount = board.snakeCount;
+        this.deadline = deadline;
+        this.aborted = false;
+        this.nodes = 0;
+        this.depthReached = 0;
+        this.alphaSeen = -INFINITY;
+        this.tableProbes = 0;
+        this.tableHits = 0;
+        this.cutoffs = 0;
+        this.firstMoveCutoffs = 0;
+
+        simulator.prepare(board);
+        int size = snakeCount * board.width * board.height * 4;
+        if (cells != board.width * board.height || history.length < size) {
+            cells = board.width * board.height;
+            history = new int[size];
+        }
+        if (killers.length < (MAX_DEPTH + 1) * snakeCount * 2) {
+            killers = new int[(MAX_DEPTH + 1) * snakeCount * 2];
+            Arrays.fill(killers, -1);
+        }
+        frames = snakeCount + 1;
+        if (orders.length < (MAX_DEPTH + 2) * frames) {
+            orders = new int[(MAX_DEPTH + 2) * frames][4];
+            lineMoves = new int[orders.length][MAX_DEPTH + 2];
+            lineHashes = new long[orders.length][MAX_DEPTH + 2];
+            lineEnd = new int[orders.length];
+        }
+        if (simulator.hash() != root) {
+            newRoot();
+        }
+    }
+
+    /**
+     * Forget the killers and the best line of the previous root, and halve the history, so
+     * it still helps on the next turn of a game but soon follows the new position.
+     */
+    private void newRoot() {
+        root = simulator.hash();
+        bestLineEnd = 0;
+        Arrays.fill(killers, -1);
+        ageHistory();
+    }
+
+    private void ageHistory() {
+        for (int i = 0; i < history.length; i++) {
+            history[i] >>= 1;
+        }
+    }
+
+    /**
+     * Max node: pick our move for this ply.
+     */
+    private int max(int depth, int ply, int alpha, int beta) {
+        int frame = ply * frames;
+        lineEnd[frame] = ply;
+        // leaves count too, evaluating them is most of the time spent
+        if (++nodes % CLOCK_INTERVAL == 0
+                && (System.nanoTime() > deadline || (cancelled != null && cancelled.get()))) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (depth == 0) {
+            return evaluate();
+        }
+
+        int tableMove = -1;
+        if (table != null) {
+            tableProbes++;
+            long entry = table.probe(simulator.hash());
+            if (entry != TranspositionTable.MISS) {
+                tableHits++;
+                tableMove = TranspositionTable.move(entry);
+                if (TranspositionTable.depth(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.score(entry), ply);
+                    int bound = TranspositionTable.bound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+        }
+
+        long hash = simulator.hash();
+        int lineMove = ply < bestLineEnd && bestLineHashes[ply] == hash ? bestLine[ply] : -1;
+        int[] moves = orders[frame];
+        int count = order(me, ply, tableMove, lineMove, moves);
+
+        int alphaBefore = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int direction = moves[i];
+            simulator.moves(ply)[me] = direction;
+            int score = opponents(depth, ply, 0, alpha, beta);
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = direction;
+                if (score > alpha) {
+                    alpha = score;
+                    if (alpha >= beta) {
+                        cutoff(me, ply, depth, direction, i);
+                        break;
+                    }
+                    lineMoves[frame][ply] = direction;
+                    lineHashes[frame][ply] = hash;
+                    copyLine(frame, frame + 1, ply + 1);
+                }
+            }
+        }
+        if (best == -INFINITY) {
+            return LOSS + ply;
+        }
+
+        if (table != null) {
+            int bound = best <= alphaBefore ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(hash, depth, toTable(best, ply), bound, bestMove);
+        }
+        return best;
+    }
+
+    /**
+     * Wins and losses are stored relative to the node, so they stay right when the same
+     * position comes up at another ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN - MAX_DEPTH * 2) {
+            return score + ply;
+        }
+        if (score <= LOSS + MAX_DEPTH * 2) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN - MAX_DEPTH * 2) {
+            return score - ply;
+        }
+        if (score <= LOSS + MAX_DEPTH * 2) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /**
+     * Min node: the next opponent after 'from' picks its move, or the turn is played once
+     * every snake has picked one.
+     */
+    private int opponents(int depth, int ply, int from, int alpha, int beta) {
+        int frame = ply * frames + 1 + from;
+        lineEnd[frame] = ply + 1;
+        int agent = from;
+        while (agent < snakeCount && (agent == me || !simulator.alive(agent))) {
+            agent++;
+        }
+        if (agent == snakeCount) {
+            int score = playTurn(depth, ply, alpha, beta);
+            copyLine(frame, (ply + 1) * frames, ply + 1);
+            return score;
+        }
+
+        int best = INFINITY;
+        boolean any = false;
+        int[] moves = orders[frame];
+        int count = order(agent, ply, -1, -1, moves);
+        for (int i = 0; i < count; i++) {
+            int direction = moves[i];
+            if (ply == 0 && sharedAlpha != null) {
+                alpha = Math.max(alpha, sharedAlpha.get());
+                alphaSeen = Math.max(alphaSeen, alpha);
+                if (alpha >= beta) {
+                    // another root move is already better than anything left here
+                    return any ? best : beta;
+                }
+            }
+            any = true;
+            simulator.moves(ply)[agent] = direction;
+            int score = opponents(depth, ply, agent + 1, alpha, beta);
+            if (aborted) {
+                return 0;
+            }
+            if (score < best) {
+                best = score;
+                if (score < beta) {
+                    beta = score;
+                    if (alpha >= beta) {
+                        cutoff(agent, ply, depth, direction, i);
+                        break;
+                    }
+                    copyLine(frame, frame + 1 + agent - from, ply + 1);
+                }
+            }
+        }
+        if (!any) {
+            // trapped, any move will do
+            simulator.moves(ply)[agent] = Board.UP;
+            best = opponents(depth, ply, agent + 1, alpha, beta);
+            copyLine(frame, frame + 1 + agent - from, ply + 1);
+        }
+        return best;
+    }
+
+    /**
+     * Put the playable moves of a snake in the order they are tried: the table move, the move
+     * of the best line, the killers, then by history. Ties go in direction order.
+     *
+     * @param tableMove move stored in the table, or -1.
+     * @param lineMove  our move on the best line, or -1.
+     * @return the number of moves in 'moves'.
+     */
+    private int order(int s, int ply, int tableMove, int lineMove, int[] moves) {
+        int killer = (ply * snakeCount + s) << 1;
+        int cell = (s * cells + board.head[s]) << 2;
+        int count = 0;
+        for (int direction = 0; direction < 4; direction++) {
+            if (!playable(s, direction)) {
+                continue;
+            }
+            int score = direction == tableMove ? TABLE_MOVE
+                    : !ordering ? 0
+                    : direction == lineMove ? LINE_MOVE
+                    : direction == killers[killer] ? FIRST_KILLER
+                    : direction == killers[killer + 1] ? SECOND_KILLER
+                    : history[cell + direction];
+            // insertion sort on the score with the direction below it, best first
+            int key = score << 2 | (3 - direction);
+            int i = count++;
+            while (i > 0 && moves[i - 1] < key) {
+                moves[i] = moves[i - 1];
+                i--;
+            }
+            moves[i] = key;
+        }
+        for (int i = 0; i < count; i++) {
+            moves[i] = 3 - (moves[i] & 3);
+        }
+        return count;
+    }
+
+    /**
+     * Remember a move that cut off the rest of its node, the i-th one tried.
+     */
+    private void cutoff(int s, int ply, int depth, int direction, int i) {
+        cutoffs++;
+        if (i == 0) {
+            firstMoveCutoffs++;
+        }
+        if (!ordering) {
+            return;
+        }
+        int killer = (ply * snakeCount + s) << 1;
+        if (killers[killer] != direction) {
+            killers[killer + 1] = killers[killer];
+            killers[killer] = direction;
+        }
+        int cell = ((s * cells + board.head[s]) << 2) + direction;
+        history[cell] += depth * depth;
+        if (history[cell] > HISTORY_MAX) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Make the line of a frame the one of the frame below it, from the given ply on.
+     */
+    private void copyLine(int frame, int below, int ply) {
+        if (frame == below) {
+            return;
+        }
+        int end = lineEnd[below];
+        if (end > ply) {
+            System.arraycopy(lineMoves[below], ply, lineMoves[frame], ply, end - ply);
+            System.arraycopy(lineHashes[below], ply, lineHashes[frame], ply, end - ply);
+        }
+        lineEnd[frame] = Math.max(end, ply);
+    }
+
+    private int playTurn(int depth, int ply, int alpha, int beta) {
+        // the line ends here, unless a max node below continues it
+        lineEnd[(ply + 1) * frames] = ply + 1;
+        simulator.makeTurn(ply);
+        int score;
+        if (!simulator.alive(me)) {
+            score = LOSS + ply;
+        } else if (simulator.hadOpponents() && simulator.opponentsAlive() == 0) {
+            score = WIN - ply;
+        } else {
+            score = max(depth - 1, ply + 1, alpha, beta);
+        }
+        simulator.unmakeTurn(ply);
+        return score;
+    }
+
+    /**
+     * Moves that don't run straight into a wall or back into the neck.
+     */
+    boolean playable(int s, int direction) {
+        return simulator.playable(s, direction);
+    }
+
+    /**
+     * Score a position in which we are still alive: being longer than everybody else and
+     * the {@link Territory} score all count. Owning fewer cells than our length is fine as
+     * long as the flood fill still finds enough room; if it doesn't, we are stuck in a dead end.
+     */
+    private int evaluate() {
+        int longestOther = 0;
+        for (int s = 0; s < snakeCount; s++) {
+            if (s != me && simulator.alive(s)) {
+                longestOther = Math.max(longestOther, board.length[s]);
+            }
+        }
+        int length = board.length[me];
+        territory.fill(board);
+        int score = 100 * (length - longestOther) + territory.score(board, me);
+        if (territory.owned(me) < length && floodFill.room(board, board.head[me], length) < length) {
+            score -= TRAPPED;
+        }
+        return score;
+    }
+
+    static void moveToFront(int[] order, int count, int move) {
+        for (int i = 0; i < count; i++) {
+            if (order[i] == move) {
+                System.arraycopy(order, 0, order, 1, i);
+                order[0] = move;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package com.battlesnake.starter;
+
+/**
+ * Plays turns on a board in place and takes them back again, following the rules of the
+ * board's {@link Ruleset}.
+ *
+ * All undo information is kept in per ply arrays that are allocated once, when a board with
+ * more snakes than before comes along, so a turn allocates nothing. Bodies are ring buffers,
+ * so moving, growing and taking a move back are O(1) whatever the length of the snake, see
+ * {@link Board#advance(int, int)}. The Zobrist hash of the
+ * position is kept up to date along the way. An instance is not thread safe.
+ */
+public class Simulator {
+
+    /**
+     * Turns that can be played on top of each other before taking any back.
+     */
+    static final int MAX_PLIES = 64;
+
+    private Board board;
+    private int me;
+    private int snakeCount;
+    private boolean hadOpponents;
+    private boolean alwaysGrow;
+
+    /**
+     * The board's neighbour table, see {@link Adjacency#next}.
+     */
+    private int[] next;
+
+    /**
+     * Zobrist hash of the board, and its value before each ply's turn was made.
+     */
+    private long hash;
+    private final long[] hashBefore = new long[MAX_PLIES + 1];
+
+    private boolean[] alive = new boolean[0];
+
+    /**
+     * Per ply and snake: the chosen move, the cell the tail left, what the cell of the new
+     * head held, and what changed.
+     */
+    private int[][] moves = new int[0][];
+    private int[][] oldTail = new int[0][];
+    private long[][] oldStamp = new long[0][];
+    private int[][] oldHealth = new int[0][];
+    private boolean[][] ate = new boolean[0][];
+    private boolean[][] died = new boolean[0][];
+
+    /**
+     * Per ply: food cells eaten, so they can be put back.
+     */
+    private int[][] eaten = new int[0][];
+    private int[] eatenCount = new int[MAX_PLIES + 1];
+
+    /**
+     * Get ready to play turns on the given board, which is changed in place.
+     */
+    void prepare(Board board) {
+        this.board = board;
+        this.me = board.you;
+        this.snakeCount = board.snakeCount;
+        this.alwaysGrow = board.rules.alwaysGrow;
+        this.next = board.adjacency().next;
+
+        if (alive.length < snakeCount) {
+            alive = new boolean[snakeCount];
+            moves = new int[MAX_PLIES + 1][snakeCount];
+            oldTail = new int[MAX_PLIES + 1][snakeCount];
+            oldStamp = new long[MAX_PLIES + 1][snakeCount];
+            oldHealth = new int[MAX_PLIES + 1][snakeCount];
+            ate = new boolean[MAX_PLIES + 1][snakeCount];
+            died = new boolean[MAX_PLIES + 1][snakeCount];
+            eaten = new int[MAX_PLIES + 1][snakeCount];
+        }
+        hadOpponents = false;
+        for (int s = 0; s < snakeCount; s++) {
+            alive[s] = board.length[s] > 0;
+            hadOpponents |= s != me && alive[s];
+            // room to grow by one segment per simulated turn, and for the next head
+            board.reserve(s, board.length[s] + MAX_PLIES + 1);
+        }
+        hash = Zobrist.hash(board, alive);
+    }
+
+    /**
+     * Moves to play at the given ply, one per snake, for {@link #makeTurn(int)}.
+     */
+    int[] moves(int ply) {
+        return moves[ply];
+    }
+
+    boolean alive(int s) {
+        return alive[s];
+    }
+
+    long hash() {
+        return hash;
+    }
+
+    /**
+     * @return the number of snakes other than us that are still alive.
+     */
+    int opponentsAlive() {
+        int count = 0;
+        for (int s = 0; s < snakeCount; s++) {
+            if (s != me && alive[s]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return true once we are dead, or the last of our opponents is.
+     */
+    boolean gameOver() {
+        return !alive[me] || (hadOpponents && opponentsAlive() == 0);
+    }
+
+    /**
+     * @return true if we started with opponents, so being the last one left is a win.
+     */
+    boolean hadOpponents() {
+        return hadOpponents;
+    }
+
+    /**
+     * Moves that don't run straight into a wall or back into the neck.
+     */
+    boolean playable(int s, int direction) {
+        int cell = next[board.head[s] << 2 | direction];
+        return cell >= 0 && (board.length[s] < 2 || cell != board.segment(s, 1));
+    }
+
+    /**
+     * Apply moves[ply] for every living snake: move, lose health, take hazard damage, eat,
+     * then eliminate snakes that left the board, starved, hit a body or lost a head to head.
+     */
+    void makeTurn(int ply) {
+        int[] move = moves[ply];
+        eatenCount[ply] = 0;
+        hashBefore[ply] = hash;
+
+        // move: new heads are not marked yet, so 'bodies' only holds necks and older segments
+        for (int s = 0; s < snakeCount; s++) {
+            died[ply][s] = false;
+            ate[ply][s] = false;
+            if (!alive[s]) {
+                continue;
+            }
+            int newHead = next[board.head[s] << 2 | move[s]];
+            int tail = board.tail(s);
+            oldTail[ply][s] = tail;
+            oldHealth[ply][s] = board.health[s];
+
+            hash ^= Zobrist.body(s, newHead) ^ Zobrist.body(s, tail) ^ Zobrist.health(s, board.health[s])
+                    ^ Zobrist.head(s, board.head[s]) ^ Zobrist.head(s, newHead) ^ Zobrist.tail(s, tail);
+            Board.clear(board.heads, board.head[s]);
+            oldStamp[ply][s] = board.advance(s, newHead);
+            hash ^= Zobrist.tail(s, board.tail(s));
+            if (board.tail(s) != tail) {
+                Board.clear(board.bodies, tail);
+            }
+            board.health[s]--;
+        }
+
+        // hazards, unless there is food on the same cell
+        for (int s = 0; s < snakeCount; s++) {
+            int newHead = board.head[s];
+            if (alive[s] && Board.isSet(board.hazards, newHead) && !Board.isSet(board.food, newHead)) {
+                board.health[s] = Math.max(0, board.health[s] - board.hazardDamage);
+            }
+        }
+
+        // feed, or in constrictor grow anyway
+        for (int s = 0; s < snakeCount; s++) {
+            int newHead = board.head[s];
+            if (!alive[s] || newHead < 0 || !(alwaysGrow || Board.isSet(board.food, newHead))) {
+                continue;
+            }
+            ate[ply][s] = true;
+            board.health[s] = 100;
+            hash ^= Zobrist.body(s, board.tail(s)) ^ Zobrist.length(s, board.length[s]) ^ Zobrist.length(s, board.length[s] + 1);
+            board.grow(s);
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (ate[ply][s] && Board.isSet(board.food, board.head[s])) {
+                Board.clear(board.food, board.head[s]);
+                hash ^= Zobrist.food(board.head[s]);
+                eaten[ply][eatenCount[ply]++] = board.head[s];
+            }
+        }
+
+        // eliminate starved snakes and those that left the board first, so they are gone before
+        // anyone collides with them
+        for (int s = 0; s < snakeCount; s++) {
+            if (alive[s] && (board.head[s] < 0 || board.health[s] <= 0)) {
+                eliminate(ply, s);
+            }
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (!alive[s]) {
+                continue;
+            }
+            int newHead = board.head[s];
+            boolean dead = Board.isSet(board.bodies, newHead);
+            for (int other = 0; other < snakeCount && !dead; other++) {
+                dead = other != s && alive[other] && board.head[other] == newHead
+                        && board.length[s] <= board.length[other];
+            }
+            died[ply][s] = dead;
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (died[ply][s] && alive[s]) {
+                eliminate(ply, s);
+            }
+        }
+        // the cell a dead head ran into belongs to whoever was there, a survivor claims its own
+        for (int s = snakeCount - 1; s >= 0; s--) {
+            if (died[ply][s]) {
+                board.unstamp(board.head[s], oldStamp[ply][s]);
+            }
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (alive[s]) {
+                board.stamp(s);
+                Board.set(board.bodies, board.head[s]);
+                Board.set(board.heads, board.head[s]);
+                hash ^= Zobrist.health(s, board.health[s]);
+            }
+        }
+    }
+
+    private void eliminate(int ply, int s) {
+        died[ply][s] = true;
+        alive[s] = false;
+        for (int i = 1; i < board.length[s]; i++) {
+            Board.clear(board.bodies, board.segment(s, i));
+        }
+        // health is already out of the hash, see the move loop
+        hash ^= Zobrist.snake(board, s) ^ Zobrist.health(s, board.health[s]);
+    }
+
+    void unmakeTurn(int ply) {
+        hash = hashBefore[ply];
+        for (int s = 0; s < snakeCount; s++) {
+            if (alive[s]) {
+                Board.clear(board.heads, board.head[s]);
+                Board.clear(board.bodies, board.head[s]);
+            }
+        }
+        for (int s = 0; s < snakeCount; s++) {
+            if (died[ply][s]) {
+                alive[s] = true;
+                for (int i = 1; i < board.length[s]; i++) {
+                    Board.set(board.bodies, board.segment(s, i));
+                }
+            }
+        }
+        for (int i = 0; i < eatenCount[ply]; i++) {
+            Board.set(board.food, eaten[ply][i]);
+        }
+        // in the reverse order of the moves, so shared head cells get their stamps back
+        for (int s = snakeCount - 1; s >= 0; s--) {
+            if (!alive[s]) {
+                continue;
+            }
+            if (ate[ply][s]) {
+                board.length[s]--;
+            }
+            board.retreat(s, oldTail[ply][s], oldStamp[ply][s]);
+            board.health[s] = oldHealth[ply][s];
+            Board.set(board.bodies, oldTail[ply][s]);
+            Board.set(board.heads, board.head[s]);
+        }
+    }
+}
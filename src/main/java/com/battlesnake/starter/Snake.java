@@ -8,6 +8,8 @@ import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 import static spark.Spark.*;
@@ -22,6 +24,8 @@ public class Snake {
     private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
     private static final Handler HANDLER = new Handler();
     private static final Logger LOG = LoggerFactory.getLogger(Snake.class);
+    private static final MoveLog MOVE_LOG = MoveLog.DEFAULT;
+    private static final Metrics METRICS = Metrics.DEFAULT;
 
     /**
      * Main entry point.
@@ -36,11 +40,21 @@ public class Snake {
         } else {
             LOG.info("Found system provided port: {}", port);
         }
+        if (System.getProperty("SERVER", "spark").equals("jetty")) {
+            try {
+                JettyServer.fromProperties(HANDLER, Integer.parseInt(port)).start();
+            } catch (Exception e) {
+                LOG.error("Could not start the server", e);
+                System.exit(1);
+            }
+            return;
+        }
         port(Integer.parseInt(port));
-        get("/", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/start", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/move", HANDLER::process, JSON_MAPPER::writeValueAsString);
-        post("/end", HANDLER::process, JSON_MAPPER::writeValueAsString);
+        get("/", HANDLER::process);
+        post("/start", HANDLER::process);
+        post("/move", HANDLER::process);
+        post("/end", HANDLER::process);
+        get("/metrics", HANDLER::metrics);
     }
 
     /**
@@ -53,40 +67,277 @@ public class Snake {
          */
         private static final Map<String, String> EMPTY = new HashMap<>();
 
+        static final String CONTENT_TYPE = "application/json";
+
+        /**
+         * Response bodies are serialized once, a /move response is one of four of them.
+         */
+        static final byte[] EMPTY_BODY = json(EMPTY);
+        static final byte[][] MOVE_BODIES = new byte[Board.MOVES.length][];
+
+        /**
+         * Answered to a /move that cannot be decoded, so the engine still gets a move.
+         */
+        static final int DEFAULT_MOVE = Board.RIGHT;
+
+        static {
+            for (int direction = 0; direction < Board.MOVES.length; direction++) {
+                MOVE_BODIES[direction] = json(Collections.singletonMap("move", Board.MOVES[direction]));
+            }
+        }
+
+        final byte[] indexBody = json(index());
+
+        /**
+         * /move bodies are decoded straight into a board that is reused by the request thread.
+         */
+        private static final ThreadLocal<MoveRequestDecoder> DECODER =
+                ThreadLocal.withInitial(() -> new MoveRequestDecoder(JSON_MAPPER.getFactory()));
+        private static final ThreadLocal<Board> BOARD = ThreadLocal.withInitial(() -> new Board(11, 11, 8));
+        private static final ThreadLocal<FloodFill> FLOOD_FILL = ThreadLocal.withInitial(FloodFill::new);
+
+        /**
+         * Worker threads for the move search, 1 keeps the search on a single thread.
+         */
+        private static final int SEARCH_THREADS =
+                Integer.getInteger("SEARCH_THREADS", Runtime.getRuntime().availableProcessors());
+
+        /**
+         * Transposition table shared by all searches, in megabytes. 0 turns it off.
+         */
+        private static final int TT_MB = Integer.getInteger("TT_MB", 16);
+        private static final TranspositionTable TABLE = TT_MB > 0 ? new TranspositionTable(TT_MB) : null;
+        private static final ParallelSearch SEARCH = new ParallelSearch(SEARCH_THREADS,
+                Boolean.getBoolean("SEARCH_SPLIT_REPLIES"), TABLE);
+
+        /**
+         * Move search engine: "alphabeta" for {@link ParallelSearch}, "mcts" for {@link Mcts}.
+         */
+        private static final String ENGINE = System.getProperty("ENGINE", "alphabeta");
+        private static final Mcts MCTS = ENGINE.equals("mcts")
+                ? new Mcts(SEARCH_THREADS, Integer.getInteger("MCTS_NODES", 32768)) : null;
+
+        /**
+         * Searches ahead between our answer and the next request on PONDER_THREADS threads,
+         * null if that is 0 or the table or the alphabeta engine is not used.
+         */
+        private static final Ponder PONDER = MCTS == null ? Ponder.fromProperties(TABLE) : null;
+
+        /**
+         * Regions up to ENDGAME_CELLS cells are solved exactly before the search, see
+         * {@link Endgame}. 0 turns the solver off.
+         */
+        private static final int ENDGAME_CELLS = Integer.getInteger("ENDGAME_CELLS", 40);
+        private static final ThreadLocal<Endgame> ENDGAME = ThreadLocal.withInitial(() -> new Endgame(ENDGAME_CELLS));
+
+        /**
+         * Part of game.timeout that is kept back for the network, in milliseconds.
+         */
+        private static final int SEARCH_MARGIN_MS = Integer.getInteger("SEARCH_MARGIN_MS", 100);
+
+        /**
+         * Answers every move in time, keeping back SEARCH_MARGIN_MS until the network round
+         * trip is measured and at least DEADLINE_MIN_MARGIN_MS after that, with up to
+         * COMPUTE_THREADS searches at once.
+         */
+        private static final MoveController CONTROLLER =
+                new MoveController(SEARCH_MARGIN_MS, Integer.getInteger("DEADLINE_MIN_MARGIN_MS", 20),
+                        Integer.getInteger("COMPUTE_THREADS", Runtime.getRuntime().availableProcessors()));
+
+        /**
+         * @return the controller answering the moves of every handler, for its counts.
+         */
+        static MoveController controller() {
+            return CONTROLLER;
+        }
+
+        /**
+         * Cuts back the search once more than LOAD_CAPACITY moves are searched at once or the
+         * searches come back late, null if LOAD_CAPACITY is 0.
+         */
+        private static final int LOAD_CAPACITY =
+                Integer.getInteger("LOAD_CAPACITY", Runtime.getRuntime().availableProcessors());
+        private static final AdmissionController ADMISSION =
+                LOAD_CAPACITY > 0 ? new AdmissionController(LOAD_CAPACITY) : null;
+
+        /**
+         * Games followed at once, and how long a game without /end is kept, in seconds. A game's
+         * pondering stops with its session.
+         */
+        private static final GameSessions SESSIONS = new GameSessions(Integer.getInteger("SESSIONS_MAX", 1024),
+                Integer.getInteger("SESSION_TTL_S", 120) * 1000L, session -> {
+                    if (PONDER != null) {
+                        PONDER.cancel(session);
+                    }
+                });
+
+        /**
+         * Records every game into REPLAY_DIR, null if that is not set.
+         */
+        private static final ReplayRecorder REPLAY = ReplayRecorder.fromProperties();
+
         /**
          * Generic processor that prints out the request and response from the methods.
+         * /move requests are logged through {@link MoveLog}, so only the sampled ones are.
+         * Responses are written from the precomputed bodies, without building a map or
+         * running Jackson per request.
          *
          * @param req
          * @param res
-         * @return
+         * @return the JSON body, or null if the request could not be handled.
          */
-        public Map<String, String> process(Request req, Response res) {
+        public byte[] process(Request req, Response res) {
+            res.type(CONTENT_TYPE);
+            return handle(req.uri(), req.bodyAsBytes());
+        }
+
+        /**
+         * Handle a request independent of the server it came in on, see
+         * {@link #process(Request, Response)}.
+         *
+         * @param uri     one of /, /start, /move or /end.
+         * @param request the request body.
+         * @return the JSON body, or null if the request could not be handled.
+         */
+        byte[] handle(String uri, byte[] request) {
+            long arrived = System.nanoTime();
             try {
-                JsonNode parsedRequest = JSON_MAPPER.readTree(req.body());
-                String uri = req.uri();
-                LOG.info("{} called with: {}", uri, req.body());
-                Map<String, String> snakeResponse;
+                if (uri.equals("/move")) {
+                    if (ADMISSION == null) {
+                        return move(request, arrived);
+                    }
+                    ADMISSION.enter();
+                    try {
+                        return move(request, arrived);
+                    } finally {
+                        ADMISSION.exit();
+                    }
+                }
+
+                LOG.info("{} called with: {}", uri, new String(request, StandardCharsets.UTF_8));
                 if (uri.equals("/")) {
-                    snakeResponse = index();
-                } else if (uri.equals("/start")) {
-                    snakeResponse = start(parsedRequest);
-                } else if (uri.equals("/move")) {
-                    snakeResponse = move(parsedRequest);
+                    LOG.info("Responding with: {} bytes", indexBody.length);
+                    return indexBody;
+                }
+                Metrics.Route route;
+                if (uri.equals("/start")) {
+                    route = Metrics.Route.START;
                 } else if (uri.equals("/end")) {
-                    snakeResponse = end(parsedRequest);
+                    route = Metrics.Route.END;
                 } else {
                     throw new IllegalAccessError("Strange call made to the snake: " + uri);
                 }
+                JsonNode node = JSON_MAPPER.readTree(request);
+                long parsed = System.nanoTime();
+                if (route == Metrics.Route.START) {
+                    start(node);
+                } else {
+                    end(node);
+                }
+                long decided = System.nanoTime();
 
-                LOG.info("Responding with: {}", JSON_MAPPER.writeValueAsString(snakeResponse));
+                byte[] body = EMPTY_BODY;
+                LOG.info("Responding with: {} bytes", body.length);
+                METRICS.request(route, arrived, parsed, decided, System.nanoTime());
 
-                return snakeResponse;
-            } catch (JsonProcessingException e) {
+                return body;
+            } catch (IOException | IllegalArgumentException e) {
                 LOG.warn("Something went wrong!", e);
                 return null;
             }
         }
 
+        /**
+         * Answer a /move, counted in flight by {@link #handle(String, byte[])}.
+         */
+        private byte[] move(byte[] request, long arrived) {
+            Board board = decode(request);
+            if (board == null) {
+                return MOVE_BODIES[DEFAULT_MOVE];
+            }
+            long parsed = System.nanoTime();
+            MOVE_LOG.begin(board.gameId, board.turn);
+            if (MOVE_LOG.enabled()) {
+                MOVE_LOG.info(LOG, "{} called with: {}", "/move", new String(request, StandardCharsets.UTF_8));
+            }
+            // copied before the search, which may still be using the board after the answer
+            ReplayRecorder.Capture capture = REPLAY != null ? capture(board) : null;
+            int move = decide(board, arrived);
+            long decided = System.nanoTime();
+            if (capture != null) {
+                REPLAY.move(capture, move);
+            }
+            MOVE_LOG.info(LOG, "Responding with: {}", Board.MOVES[move]);
+            byte[] body = MOVE_BODIES[move];
+            METRICS.request(Metrics.Route.MOVE, arrived, parsed, decided, System.nanoTime());
+            return body;
+        }
+
+        /**
+         * Answer a /move from the move filters alone, for when there is no thread to search on
+         * or deciding it failed.
+         *
+         * @return the JSON body, {@link #DEFAULT_MOVE} if the request could not be decoded.
+         */
+        byte[] fallback(byte[] request) {
+            Board board = decode(request);
+            if (board == null) {
+                return MOVE_BODIES[DEFAULT_MOVE];
+            }
+            int move = fallbackMove(board);
+            METRICS.fallbacks.increment();
+            return MOVE_BODIES[move];
+        }
+
+        /**
+         * Decode a /move body into the request thread's board.
+         *
+         * @return the board, or null if the body is not a move request this snake can read.
+         */
+        private static Board decode(byte[] request) {
+            try {
+                return DECODER.get().decode(request, BOARD.get());
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Could not decode the move, answering " + Board.MOVES[DEFAULT_MOVE], e);
+                return null;
+            }
+        }
+
+        /**
+         * Copy a board for the replay, or null if it cannot be; the game is answered either way.
+         */
+        private static ReplayRecorder.Capture capture(Board board) {
+            try {
+                return REPLAY.capture(board);
+            } catch (RuntimeException e) {
+                LOG.warn("Could not record turn " + board.turn + " for the replay", e);
+                return null;
+            }
+        }
+
+        /**
+         * GET /metrics, see {@link Metrics}.
+         */
+        public byte[] metrics(Request req, Response res) {
+            res.type(Metrics.CONTENT_TYPE);
+            return metrics();
+        }
+
+        byte[] metrics() {
+            return METRICS.scrape().getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Serialize a response body once, when the handler is set up.
+         */
+        static byte[] json(Object value) {
+            try {
+                return JSON_MAPPER.writeValueAsBytes(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
         /**
          * This method is called everytime your Battlesnake is entered into a game.
          * 
@@ -116,6 +367,17 @@ public class Snake {
          */
         public Map<String, String> start(JsonNode startRequest) {
             LOG.info("START");
+            String gameId = startRequest.path("game").path("id").asText();
+            if (!gameId.isEmpty()) {
+                SESSIONS.start(gameId);
+            }
+            if (REPLAY != null && startRequest.has("board") && startRequest.has("you")) {
+                try {
+                    REPLAY.start(Board.fromMoveRequest(startRequest));
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not record /start for the replay", e);
+                }
+            }
             return EMPTY;
         }
 
@@ -137,47 +399,161 @@ public class Snake {
          *         make. One of "up", "down", "left" or "right".
          */
         public Map<String, String> move(JsonNode moveRequest) {
-            JsonNode head = moveRequest.get("you").get("head");
-            JsonNode body = moveRequest.get("you").get("body");
-            int myLength = moveRequest.get("you").get("length").asInt();
-            int board_height = moveRequest.get("board").get("height").asInt();
-            int board_width = moveRequest.get("board").get("width").asInt();
-            JsonNode otherSnakes = moveRequest.get("board").get("snakes");
-            ArrayList<String> possibleMoves = new ArrayList<>(Arrays.asList("up", "down", "left", "right"));
+            return move(Board.fromMoveRequest(moveRequest));
+        }
+
+        /**
+         * Decide on the next move from the decoded board, see {@link #move(JsonNode)}.
+         *
+         * @param board the board of the current request.
+         * @return a Map<String,String> response back to the engine the single move to
+         *         make. One of "up", "down", "left" or "right".
+         */
+        public Map<String, String> move(Board board) {
+            Map<String, String> response = new HashMap<>();
+            response.put("move", Board.MOVES[decide(board)]);
+            return response;
+        }
+
+        /**
+         * Decide on the next move without building a response, see {@link #move(Board)}.
+         *
+         * @return the direction to go, see {@link Board#MOVES}.
+         */
+        int decide(Board board) {
+            return decide(board, System.nanoTime());
+        }
+
+        /**
+         * @param arrived System.nanoTime() when the request came in.
+         */
+        int decide(Board board, long arrived) {
+            GameSessions.GameSession session = board.gameId != null && !board.gameId.isEmpty()
+                    ? SESSIONS.get(board.gameId) : null;
+            if (PONDER != null && session != null) {
+                PONDER.cancel(session);
+            }
+            int level = ADMISSION != null ? ADMISSION.level() : AdmissionController.FULL;
+            MoveController.Turn turn = CONTROLLER.arrive(board, arrived, session, level);
+            int moves = filter(board);
+
+            int move;
+
+            if (Direction.count(moves) > 1) {
+                if (MOVE_LOG.enabled()) {
+                    MOVE_LOG.info(LOG, "Possible moves left {}", Direction.names(moves));
+                }
+                move = lookAhead(board, moves, turn);
+            } else if (moves != 0) {
+                move = Integer.numberOfTrailingZeros(moves);
+                CONTROLLER.finish(turn);
+            } else {
+                // no choices left, go right ...
+                move = Board.RIGHT;
+                MOVE_LOG.info(LOG, "Nothing left... so go to the right");
+                CONTROLLER.finish(turn);
+            }
+
+            if (ADMISSION != null) {
+                ADMISSION.record(turn, System.nanoTime());
+            }
+            // an abandoned search still has the threads busy, and under load they are needed
+            if (PONDER != null && session != null && moves != 0 && !turn.abandoned
+                    && turn.level == AdmissionController.FULL) {
+                PONDER.start(board, move, session);
+            }
+
+            MOVE_LOG.info(LOG, "MOVE {}", Board.MOVES[move]);
+            return move;
+        }
+
+        /**
+         * The moves that are left after every filter that needs no search.
+         *
+         * @return the set of moves, see {@link Direction}.
+         */
+        int filter(Board board) {
+            int possibleMoves = Direction.ALL;
 
             // avoid my own neck
-            ArrayList<String> someMoves = avoidMyNeck(head, body, possibleMoves);
+            possibleMoves = avoidMyNeck(board, possibleMoves);
 
             // avoid the walls
-            ArrayList<String> newMoves = avoidTheWalls(head, someMoves, board_height, board_width);
+            possibleMoves = avoidTheWalls(board, possibleMoves);
 
             // avoid my body
-            ArrayList<String> lastMoves = avoidMyBody(head, body, newMoves);
+            possibleMoves = avoidMyBody(board, possibleMoves);
 
-            // avoid collide with another Battlesnake
-            ArrayList<String> moves = avoidOtherSnakes(head, myLength, otherSnakes, lastMoves);
+            // avoid pockets too small to fit in
+            return avoidDeadEnds(board, possibleMoves);
+        }
 
-            // get some food
-            JsonNode food = moveRequest.get("board").get("food");
+        /**
+         * The move answered without a search: the first that passes every filter and
+         * avoidOtherSnakes, else the first that passes the filters.
+         *
+         * @return the direction to go, see {@link Board#MOVES}.
+         */
+        int fallbackMove(Board board) {
+            int moves = filter(board);
+            int safeMoves = avoidOtherSnakes(board, moves);
+            int left = safeMoves != 0 ? safeMoves : moves;
+            return left != 0 ? Integer.numberOfTrailingZeros(left) : Board.RIGHT;
+        }
 
-            String move;
+        /**
+         * Search the given moves until shortly before game.timeout runs out. Moves that pass
+         * avoidOtherSnakes are tried first, so they win if the search runs out of time early,
+         * and the first of them is the answer if the search misses the deadline, or if the
+         * load is too high to search at all. Endgames are solved exactly instead when there is
+         * time, see {@link Endgame}.
+         *
+         * @param board the board of the current request, unchanged on return.
+         * @param moves moves left by the neck, wall and body filters.
+         * @param turn  deadlines of the request.
+         * @return the direction to go, see {@link Board#MOVES}.
+         */
+        private int lookAhead(Board board, int moves, MoveController.Turn turn) {
+            int safeMoves = avoidOtherSnakes(board, moves);
+            int[] candidates = new int[Direction.count(moves)];
+            int count = 0;
+            for (int left = safeMoves; left != 0; left &= left - 1) {
+                candidates[count++] = Integer.numberOfTrailingZeros(left);
+            }
+            for (int left = moves & ~safeMoves; left != 0; left &= left - 1) {
+                candidates[count++] = Integer.numberOfTrailingZeros(left);
+            }
 
-            // Choose a random direction to move in
-            if (moves.size() > 0) {
-                LOG.info("Possible moves left {}", moves);
-                final int choice = new Random().nextInt(moves.size());
-                move = moves.get(choice);
-            } else {
-                // no choices left, go right ...
-                move = "right";
-                LOG.info("Nothing left... so go to the right");
+            if (turn.level >= AdmissionController.FILTERS_ONLY) {
+                // too busy to search, the safest move by the filters will do
+                CONTROLLER.finish(turn);
+                return candidates[0];
             }
 
-            LOG.info("MOVE {}", move);
+            int found = count;
+            int move = CONTROLLER.answer(() -> search(board, candidates, found, turn), candidates[0], turn);
+            if (turn.abandoned) {
+                // the late search still reads the board, decode the next request into a new one
+                BOARD.remove();
+            }
+            return move;
+        }
 
-            Map<String, String> response = new HashMap<>();
-            response.put("move", move);
-            return response;
+        /**
+         * Solve the position if it is an endgame, in up to half of the search time, and
+         * search it otherwise.
+         */
+        private int search(Board board, int[] candidates, int count, MoveController.Turn turn) {
+            if (ENDGAME_CELLS > 0) {
+                long now = System.nanoTime();
+                int move = ENDGAME.get().bestMove(board, candidates, count, now + (turn.searchDeadline - now) / 2);
+                if (move >= 0) {
+                    return move;
+                }
+            }
+            return MCTS != null
+                    ? MCTS.bestMove(board, candidates, count, turn.searchDeadline)
+                    : SEARCH.bestMove(board, candidates, count, turn.searchDeadline, turn.session);
         }
 
         /**
@@ -189,20 +565,35 @@ public class Snake {
          * @param possibleMoves ArrayList of String. Moves to pick from.
          */
         public ArrayList<String> avoidMyNeck(JsonNode head, JsonNode body, ArrayList<String> possibleMoves) {
-            JsonNode neck = body.get(1);
-
-            if (neck.get("x").asInt() < head.get("x").asInt()) {
-                LOG.info("Dont go LEFT because of my neck");
-                possibleMoves.remove("left");
-            } else if (neck.get("x").asInt() > head.get("x").asInt()) {
-                LOG.info("Dont go RIGHT because my of my neck");
-                possibleMoves.remove("right");
-            } else if (neck.get("y").asInt() < head.get("y").asInt()) {
-                LOG.info("Dont go DOWN because my of my neck");
-                possibleMoves.remove("down");
-            } else if (neck.get("y").asInt() > head.get("y").asInt()) {
-                LOG.info("Dont go UP because my of my neck");
-                possibleMoves.remove("up");
+            Board board = Board.covering(1, head, body);
+            addMe(board, head, body, body.size());
+            return avoidMyNeck(board, possibleMoves);
+        }
+
+        /**
+         * Remove the 'neck' direction from the list of possible moves
+         *
+         * @param board         the board of the current request.
+         * @param possibleMoves ArrayList of String. Moves to pick from.
+         */
+        public ArrayList<String> avoidMyNeck(Board board, ArrayList<String> possibleMoves) {
+            return Direction.retain(possibleMoves, avoidMyNeck(board, Direction.mask(possibleMoves)));
+        }
+
+        /**
+         * Remove the 'neck' direction from the set of possible moves, see {@link Direction}.
+         */
+        int avoidMyNeck(Board board, int possibleMoves) {
+            if (board.length[board.you] < 2) {
+                return possibleMoves;
+            }
+            int head = board.head[board.you];
+            int neck = board.segment(board.you, 1);
+            for (int direction = 0; direction < 4; direction++) {
+                if (Direction.contains(possibleMoves, direction) && board.neighbour(head, direction) == neck) {
+                    possibleMoves &= ~(1 << direction);
+                    MOVE_LOG.info(LOG, "Dont go {} because of my neck", Board.MOVES[direction]);
+                }
             }
 
             return possibleMoves;
@@ -220,6 +611,21 @@ public class Snake {
          */
         public Map<String, String> end(JsonNode endRequest) {
             LOG.info("END");
+            String gameId = endRequest.path("game").path("id").asText();
+            if (!gameId.isEmpty()) {
+                // cancels the game's pondering too
+                SESSIONS.end(gameId);
+                LOG.info("Sessions: {} open, {} hits, {} misses, {} evicted", SESSIONS.size(),
+                        SESSIONS.hits.sum(), SESSIONS.misses.sum(), SESSIONS.evictions.sum());
+                LOG.info("Moves: {}", CONTROLLER.stats());
+            }
+            if (REPLAY != null && endRequest.has("board") && endRequest.has("you")) {
+                try {
+                    REPLAY.end(Board.fromMoveRequest(endRequest));
+                } catch (RuntimeException e) {
+                    LOG.warn("Could not record /end for the replay", e);
+                }
+            }
             return EMPTY;
         }
 
@@ -234,20 +640,38 @@ public class Snake {
          * @return possible moves
          */
         public ArrayList<String> avoidTheWalls(JsonNode head, ArrayList<String> possibleMoves, int board_height, int board_width) {
-            LOG.info("Looking for possible walls.");
-
-            if (head.get("y").asInt() == 0) {
-                LOG.info("Dont go DOWN because my head position is on limit: (" + head.get("y").asInt() + ")");
-                possibleMoves.remove("down");
-            } if (head.get("x").asInt() == 0) {
-                LOG.info("Dont go LEFT because my head position is on limit: (" + head.get("x").asInt() + ")");
-                possibleMoves.remove("left");
-            } if (head.get("y").asInt() == board_height - 1) {
-                LOG.info("Dont go UP because my head position is on limit: (" + head.get("y").asInt() + ")");
-                possibleMoves.remove("up");
-            } if (head.get("x").asInt() == board_width - 1 ) {
-                LOG.info("Dont go RIGHT because my head position is on limit: (" + head.get("x").asInt() + ")");
-                possibleMoves.remove("right");
+            Board board = new Board(board_width, board_height, 1);
+            addMe(board, head, null, 1);
+            return avoidTheWalls(board, possibleMoves);
+        }
+
+        /**
+         * Don't let your Battlesnake move beyond the edges of the board.
+         *
+         * @param board
+         * @param possibleMoves
+         * @return possible moves
+         */
+        public ArrayList<String> avoidTheWalls(Board board, ArrayList<String> possibleMoves) {
+            return Direction.retain(possibleMoves, avoidTheWalls(board, Direction.mask(possibleMoves)));
+        }
+
+        /**
+         * Remove every direction beyond the edges of the board from the set of possible
+         * moves, see {@link Direction}.
+         */
+        int avoidTheWalls(Board board, int possibleMoves) {
+            MOVE_LOG.info(LOG, "Looking for possible walls.");
+
+            int head = board.head[board.you];
+            for (int direction = 0; direction < 4; direction++) {
+                if (Direction.contains(possibleMoves, direction) && board.neighbour(head, direction) < 0) {
+                    possibleMoves &= ~(1 << direction);
+                    if (MOVE_LOG.enabled()) {
+                        MOVE_LOG.info(LOG, "Dont go {} because my head position is on limit: ({} | {})",
+                                Board.MOVES[direction], board.x(head), board.y(head));
+                    }
+                }
             }
 
             return possibleMoves;
@@ -265,119 +689,224 @@ public class Snake {
          * @return
          */
         public ArrayList<String> avoidMyBody(JsonNode head, JsonNode body, ArrayList<String> possibleMoves) {
-            // start with i = 2 ignore head and neck
-            for (int i = 2; i < body.size(); i++) {
-                JsonNode bodyPart = body.get(i);
-                possibleMoves = avoidDifferentThings(bodyPart, head, possibleMoves, "my body");
+            Board board = Board.covering(1, head, body);
+            addMe(board, head, body, body.size());
+            return avoidMyBody(board, possibleMoves);
+        }
+
+        /**
+         * Remove every direction that runs into our own body. Head and neck are ignored,
+         * the neck is taken care of by avoidMyNeck.
+         *
+         * @param board
+         * @param possibleMoves
+         * @return
+         */
+        public ArrayList<String> avoidMyBody(Board board, ArrayList<String> possibleMoves) {
+            return Direction.retain(possibleMoves, avoidMyBody(board, Direction.mask(possibleMoves)));
+        }
+
+        /**
+         * Set flavour of {@link #avoidMyBody(Board, ArrayList)}, see {@link Direction}.
+         */
+        int avoidMyBody(Board board, int possibleMoves) {
+            return avoidDifferentThings(board, board.mine, possibleMoves, "my body");
+        }
+
+        /**
+         * Remove every direction that leads into a region with fewer free cells than our
+         * length. If every direction does, only the ones with the largest region are kept.
+         *
+         * @param board
+         * @param possibleMoves
+         * @return
+         */
+        public ArrayList<String> avoidDeadEnds(Board board, ArrayList<String> possibleMoves) {
+            return Direction.retain(possibleMoves, avoidDeadEnds(board, Direction.mask(possibleMoves)));
+        }
+
+        /**
+         * Set flavour of {@link #avoidDeadEnds(Board, ArrayList)}, see {@link Direction}.
+         */
+        int avoidDeadEnds(Board board, int possibleMoves) {
+            FloodFill floodFill = FLOOD_FILL.get();
+            int head = board.head[board.you];
+            // no more than this is ever needed, and it keeps an area within its 16 bits below
+            int length = Math.min(board.length[board.you], 0xFFFF);
+            // the area of every direction, 16 bits each, so nothing is allocated
+            long areas = 0;
+            int largest = 0;
+            for (int direction = 0; direction < 4; direction++) {
+                if (Direction.contains(possibleMoves, direction)) {
+                    int area = floodFill.area(board, board.neighbour(head, direction), length);
+                    areas |= (long) area << (direction << 4);
+                    largest = Math.max(largest, area);
+                }
+            }
+            int needed = Math.min(length, largest);
+            for (int direction = 0; direction < 4; direction++) {
+                int area = (int) (areas >>> (direction << 4)) & 0xFFFF;
+                if (Direction.contains(possibleMoves, direction) && area < needed) {
+                    possibleMoves &= ~(1 << direction);
+                    if (MOVE_LOG.enabled()) {
+                        MOVE_LOG.info(LOG, "Dont go {} because only {} cells are left there", Board.MOVES[direction], area);
+                    }
+                }
             }
 
             return possibleMoves;
         }
 
         public ArrayList<String> avoidOtherSnakes(JsonNode head, int myLength, JsonNode snakes, ArrayList<String> possibleMoves) {
-            int allSnakes = snakes.size();
-            LOG.info("Looking for possible snake head positions next to mine");
-
-            // loop snake array, ignore myself
-            for (int i = 0; i < allSnakes; i++) {
-                JsonNode otherSnake = snakes.get(i);
-
+            Board board = Board.covering(snakes.size() + 1, head, snakes);
+            for (JsonNode otherSnake : snakes) {
                 // except me
                 if (!otherSnake.get("name").asText().equals("snake-top")) {
+                    board.addSnake(otherSnake);
+                }
+            }
+            addMe(board, head, null, myLength);
+            return avoidOtherSnakes(board, possibleMoves);
+        }
 
-                    // if i am longer then the other snake = eat her
-                    if (myLength > otherSnake.get("length").asInt() + 1) {
-                        LOG.info("I cat eat you");
-                    } else {
-                        // avoid other snakes head in the next possible position
-                        JsonNode otherSnakeHead = otherSnake.get("head");
-
-                        // x - 1
-                        if (catchPossibleSnakeHeadPositions(head.get("x").asInt() - 1, head.get("y").asInt(), otherSnakeHead)) {
-                            int myX = head.get("x").asInt() - 1;
-                            int myY = head.get("y").asInt();
-                            LOG.info("Dont go LEFT because my next head position is: (" + myX + " | " + myY + ")");
-                            possibleMoves.remove("left");
-                        }
-                        // x + 1
-                        if (catchPossibleSnakeHeadPositions(head.get("x").asInt() + 1, head.get("y").asInt(), otherSnakeHead)) {
-                            int myX = head.get("x").asInt() + 1;
-                            int myY = head.get("y").asInt();
-                            LOG.info("Dont go RIGHT because my next head position is: (" + myX + " | " + myY + ")");
-                            possibleMoves.remove("right");
-                        }
-                        // y - 1
-                        if (catchPossibleSnakeHeadPositions(head.get("x").asInt(), head.get("y").asInt() - 1, otherSnakeHead)) {
-                            int myX = head.get("x").asInt();
-                            int myY = head.get("y").asInt() - 1;
-                            LOG.info("Dont go DOWN because my next head position is: (" + myX + " | " + myY + ")");
-                            possibleMoves.remove("down");
-                        }
-                        // y + 1
-                        if (catchPossibleSnakeHeadPositions(head.get("x").asInt(), head.get("y").asInt() + 1, otherSnakeHead)) {
-                            int myX = head.get("x").asInt();
-                            int myY = head.get("y").asInt() + 1;
-                            LOG.info("Dont go UP because my next head position is: (" + myX + " | " + myY + ")");
-                            possibleMoves.remove("up");
-                        }
+        /**
+         * Remove every direction that runs into the body of another snake, or that another
+         * snake of about our size could reach with its head in the same turn.
+         *
+         * @param board
+         * @param possibleMoves
+         * @return
+         */
+        public ArrayList<String> avoidOtherSnakes(Board board, ArrayList<String> possibleMoves) {
+            return Direction.retain(possibleMoves, avoidOtherSnakes(board, Direction.mask(possibleMoves)));
+        }
+
+        /**
+         * Set flavour of {@link #avoidOtherSnakes(Board, ArrayList)}, see {@link Direction}.
+         */
+        int avoidOtherSnakes(Board board, int possibleMoves) {
+            MOVE_LOG.info(LOG, "Looking for possible snake head positions next to mine");
+
+            int me = board.you;
+            int head = board.head[me];
+            for (int s = 0; s < board.snakeCount; s++) {
+                if (s == me) {
+                    continue;
+                }
 
-                        // loop all snake body parts
-                        for (int j = 0; j < otherSnake.get("length").asInt(); j++) {
-                            JsonNode snakeBody = otherSnake.get("body").get(j);
-                            possibleMoves = avoidDifferentThings(snakeBody, head, possibleMoves, "other snakes body");
+                // if i am longer then the other snake = eat her
+                if (board.length[me] > board.length[s] + 1) {
+                    MOVE_LOG.info(LOG, "I cat eat you");
+                    continue;
+                }
+
+                // avoid other snakes head in the next possible position
+                for (int direction = 0; direction < 4; direction++) {
+                    if (!Direction.contains(possibleMoves, direction)) {
+                        continue;
+                    }
+                    int next = board.neighbour(head, direction);
+                    if (next >= 0 && catchPossibleSnakeHeadPositions(board, next, board.head[s])) {
+                        possibleMoves &= ~(1 << direction);
+                        if (MOVE_LOG.enabled()) {
+                            MOVE_LOG.info(LOG, "Dont go {} because my next head position is: ({} | {})",
+                                    Board.MOVES[direction], board.x(next), board.y(next));
                         }
                     }
                 }
             }
 
-            return possibleMoves;
+            return avoidDifferentThings(board, board.others, possibleMoves, "other snakes body");
         }
 
         public ArrayList<String> avoidDifferentThings(JsonNode bodyPart, JsonNode head, ArrayList<java.lang.String> possibleMoves, String reason) {
-            if (bodyPart.get("y").asInt() == head.get("y").asInt() + 1 && bodyPart.get("x").asInt() == head.get("x").asInt()) {
-                LOG.info("Dont go UP because of " + reason + " position: (" + bodyPart.get("x").asInt() + " | " + bodyPart.get("y").asInt() + ")");
-                possibleMoves.remove("up");
-            } if (bodyPart.get("y").asInt() == head.get("y").asInt() - 1 && bodyPart.get("x").asInt() == head.get("x").asInt()) {
-                LOG.info("Dont go DOWN because of " + reason + " position: (" + bodyPart.get("x").asInt() + " | " + bodyPart.get("y").asInt() + ")");
-                possibleMoves.remove("down");
-            } if (bodyPart.get("x").asInt() == head.get("x").asInt() + 1 && bodyPart.get("y").asInt() == head.get("y").asInt()) {
-                LOG.info("Dont go RIGHT because of " + reason + " position: (" + bodyPart.get("x").asInt() + " | " + bodyPart.get("y").asInt() + ")");
-                possibleMoves.remove("right");
-            } if (bodyPart.get("x").asInt() == head.get("x").asInt() - 1 && bodyPart.get("y").asInt() == head.get("y").asInt()) {
-                LOG.info("Dont go LEFT because of " + reason + " position: (" + bodyPart.get("x").asInt() + " | " + bodyPart.get("y").asInt() + ")");
-                possibleMoves.remove("left");
+            Board board = Board.covering(1, head, bodyPart);
+            addMe(board, head, null, 1);
+            long[] mask = new long[board.bodies.length];
+            Board.set(mask, board.cell(bodyPart));
+            return avoidDifferentThings(board, mask, possibleMoves, reason);
+        }
+
+        /**
+         * Remove every direction whose next head position is set in the given mask.
+         *
+         * @param board
+         * @param mask          cells to stay away from, see {@link Board}.
+         * @param possibleMoves
+         * @param reason        what the mask holds, for the log.
+         * @return
+         */
+        public ArrayList<String> avoidDifferentThings(Board board, long[] mask, ArrayList<String> possibleMoves, String reason) {
+            return Direction.retain(possibleMoves, avoidDifferentThings(board, mask, Direction.mask(possibleMoves), reason));
+        }
+
+        /**
+         * Set flavour of {@link #avoidDifferentThings(Board, long[], ArrayList, String)}, see
+         * {@link Direction}.
+         */
+        int avoidDifferentThings(Board board, long[] mask, int possibleMoves, String reason) {
+            int head = board.head[board.you];
+            for (int direction = 0; direction < 4; direction++) {
+                int next = board.neighbour(head, direction);
+                if (Direction.contains(possibleMoves, direction) && Board.isSet(mask, next)) {
+                    possibleMoves &= ~(1 << direction);
+                    if (MOVE_LOG.enabled()) {
+                        MOVE_LOG.info(LOG, "Dont go {} because of {} position: ({} | {})",
+                                Board.MOVES[direction], reason, board.x(next), board.y(next));
+                    }
+                }
             }
 
             return possibleMoves;
         }
 
         public boolean catchPossibleSnakeHeadPositions(int myX, int myY, JsonNode otherSnakesHead) {
-            boolean someoneCouldCatchMyHead = false;
-
-            if (myX == otherSnakesHead.get("x").asInt() - 1 && myY == otherSnakesHead.get("y").asInt()) {
-                int snakeX = otherSnakesHead.get("x").asInt() - 1;
-                int snakeY = otherSnakesHead.get("y").asInt();
-                LOG.info("Avoid possible head position from other snake: (" + snakeX + " | " + snakeY + ")");
-                someoneCouldCatchMyHead = true;
-            } else if (myX == otherSnakesHead.get("x").asInt() + 1 && myY == otherSnakesHead.get("y").asInt()) {
-                int snakeX = otherSnakesHead.get("x").asInt() + 1;
-                int snakeY = otherSnakesHead.get("y").asInt();
-                LOG.info("Avoid possible head position from other snake: (" + snakeX + " | " + snakeY + ")");
-                someoneCouldCatchMyHead = true;
-            } else if (myX == otherSnakesHead.get("x").asInt() && myY == otherSnakesHead.get("y").asInt() - 1) {
-                int snakeX = otherSnakesHead.get("x").asInt();
-                int snakeY = otherSnakesHead.get("y").asInt() - 1;
-                LOG.info("Avoid possible head position from other snake: (" + snakeX + " | " + snakeY + ")");
-                someoneCouldCatchMyHead = true;
-            } else if (myX == otherSnakesHead.get("x").asInt() && myY == otherSnakesHead.get("y").asInt() + 1) {
-                int snakeX = otherSnakesHead.get("x").asInt();
-                int snakeY = otherSnakesHead.get("y").asInt() + 1;
-                LOG.info("Avoid possible head position from other snake: (" + snakeX + " | " + snakeY + ")");
-                someoneCouldCatchMyHead = true;
+            int snakeX = otherSnakesHead.get("x").asInt();
+            int snakeY = otherSnakesHead.get("y").asInt();
+            boolean someoneCouldCatchMyHead = Math.abs(myX - snakeX) + Math.abs(myY - snakeY) == 1;
+
+            if (someoneCouldCatchMyHead) {
+                MOVE_LOG.info(LOG, "Avoid possible head position from other snake: ({} | {})", myX, myY);
             }
 
             return someoneCouldCatchMyHead;
         }
+
+        /**
+         * @return true if the other snake head can reach the given cell with its next move.
+         */
+        public boolean catchPossibleSnakeHeadPositions(Board board, int myCell, int otherSnakesHead) {
+            for (int direction = 0; direction < 4; direction++) {
+                if (board.neighbour(otherSnakesHead, direction) == myCell) {
+                    if (MOVE_LOG.enabled()) {
+                        MOVE_LOG.info(LOG, "Avoid possible head position from other snake: ({} | {})",
+                                board.x(myCell), board.y(myCell));
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Put our own snake on a board built for one of the JsonNode flavoured filters.
+         *
+         * @param body may be null if only the head is known.
+         */
+        private static void addMe(Board board, JsonNode head, JsonNode body, int myLength) {
+            board.you = board.addSnake("", "", 0);
+            if (body == null) {
+                // stacked on the head, like at the start of a game
+                for (int i = 0; i < myLength; i++) {
+                    board.addSegment(board.you, board.cell(head));
+                }
+            } else {
+                for (JsonNode bodyPart : body) {
+                    board.addSegment(board.you, board.cell(bodyPart));
+                }
+            }
+            board.markOwners();
+        }
     }
 
 }
@@ -0,0 +1,196 @@
+package com.battlesnake.starter;
+
+import java.util.Arrays;
+
+/**
+ * Voronoi split of the board: a breadth first search from every head at once hands each
+ * free cell to the snake that reaches it first.
+ *
+ * When snakes reach a cell in the same number of moves, it goes to the one that would win
+ * the head to head there, which like in the move filters takes being longer by more than one.
+ * Otherwise the cell is contested, belongs to nobody and the search does not go past it.
+ *
+ * Per cell state is kept in int arrays that are stamped instead of cleared, so a fill
+ * allocates nothing and costs one visit per reachable cell. An instance is not thread safe.
+ */
+public class Territory {
+
+    /**
+     * Owner of a contested cell.
+     */
+    static final int NOBODY = -1;
+
+    private static final int[] ORDER = {Board.LEFT, Board.RIGHT, Board.DOWN, Board.UP};
+
+    private int[] queue = new int[0];
+    private int[] seen = new int[0];
+    private int[] distance = new int[0];
+    private int[] owner = new int[0];
+
+    /**
+     * Length of the longest snake that reached the cell first.
+     */
+    private int[] strongest = new int[0];
+    private int stamp;
+
+    private long[] tails = new long[0];
+
+    /**
+     * Bodies without the tails that move away.
+     */
+    private long[] blocked = new long[0];
+
+    /**
+     * Per snake: cells owned, not counting the head, and moves to the closest owned food,
+     * or -1 if it owns none.
+     */
+    private int[] owned = new int[0];
+    private int[] foodDistance = new int[0];
+
+    /**
+     * Split the board between all snakes on it.
+     */
+    public void fill(Board board) {
+        prepare(board);
+        int[] neighbours = board.adjacency().next;
+        int tail = 0;
+        for (int s = 0; s < board.snakeCount; s++) {
+            owned[s] = 0;
+            foodDistance[s] = -1;
+            if (board.onBoard(s)) {
+                int head = board.head[s];
+                if (seen[head] == stamp) {
+                    contest(head, board.length[s], s);
+                } else {
+                    claim(head, 0, board.length[s], s);
+                    queue[tail++] = head;
+                }
+            }
+        }
+
+        int index = 0;
+        while (index < tail) {
+            int cell = queue[index++];
+            int s = owner[cell];
+            if (s == NOBODY) {
+                continue;
+            }
+            int d = distance[cell];
+            int length = board.length[s];
+            if (d > 0) {
+                owned[s]++;
+                if (foodDistance[s] < 0 && Board.isSet(board.food, cell)) {
+                    foodDistance[s] = d;
+                }
+            }
+            // this loop runs at every search leaf: left, right, down, up from the table
+            int base = cell << 2;
+            for (int i = 0; i < 4; i++) {
+                int next = neighbours[base | ORDER[i]];
+                if (next >= 0) {
+                    tail = visit(next, d + 1, length, s, tail);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reach a cell from a cell of snake s at distance d - 1.
+     *
+     * @return the new end of the queue.
+     */
+    private int visit(int next, int d, int length, int s, int tail) {
+        if ((blocked[next >>> 6] & (1L << next)) != 0) {
+            return tail;
+        }
+        if (seen[next] != stamp) {
+            claim(next, d, length, s);
+            queue[tail++] = next;
+        } else if (distance[next] == d && owner[next] != s) {
+            contest(next, length, s);
+        }
+        return tail;
+    }
+
+    /**
+     * Score a position for the given snake after {@link #fill(Board)}: its territory, its
+     * health and, the hungrier it is, how close it is to food.
+     */
+    public int score(Board board, int s) {
+        int hunger = 100 - board.health[s];
+        int food = foodDistance[s] >= 0 ? foodDistance[s] : board.width + board.height;
+        return 5 * owned[s] + board.health[s] - hunger * food / 10;
+    }
+
+    /**
+     * @return cells owned by the snake in the last fill.
+     */
+    public int owned(int s) {
+        return owned[s];
+    }
+
+    /**
+     * @return moves from the snake's head to its closest food in the last fill, or -1.
+     */
+    public int foodDistance(int s) {
+        return foodDistance[s];
+    }
+
+    /**
+     * @return the snake the cell went to in the last fill, {@link #NOBODY} if it was
+     * contested, or -2 if nobody reached it.
+     */
+    int owner(int cell) {
+        return seen[cell] == stamp ? owner[cell] : -2;
+    }
+
+    private void claim(int cell, int d, int length, int s) {
+        seen[cell] = stamp;
+        distance[cell] = d;
+        owner[cell] = s;
+        strongest[cell] = length;
+    }
+
+    /**
+     * Another snake reaches the cell in the same number of moves.
+     */
+    private void contest(int cell, int length, int s) {
+        int best = strongest[cell];
+        if (length > best + 1) {
+            owner[cell] = s;
+            strongest[cell] = length;
+        } else if (best <= length + 1) {
+            owner[cell] = NOBODY;
+            strongest[cell] = Math.max(best, length);
+        }
+    }
+
+    private void prepare(Board board) {
+        int cells = board.width * board.height;
+        if (seen.length < cells) {
+            queue = new int[cells];
+            seen = new int[cells];
+            distance = new int[cells];
+            owner = new int[cells];
+            strongest = new int[cells];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            // wrapped around, old stamps could match again
+            Arrays.fill(seen, 0);
+            stamp = 1;
+        }
+        if (owned.length < board.snakeCount) {
+            owned = new int[board.snakeCount];
+            foodDistance = new int[board.snakeCount];
+        }
+        if (tails.length != board.bodies.length) {
+            tails = new long[board.bodies.length];
+            blocked = new long[board.bodies.length];
+        }
+        board.movingTails(tails);
+        for (int word = 0; word < blocked.length; word++) {
+            blocked[word] = board.bodies[word] & ~tails[word];
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.battlesnake.starter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed size transposition table backed by a single long[], shared by all search threads
+ * without locks.
+ *
+ * Every slot is two longs: the Zobrist key XOR the data, and the data itself. Writers race
+ * benignly; a reader that sees one half of one write and the other half of another gets a
+ * key mismatch and treats the slot as empty. A slot is replaced when it is empty, holds the
+ * same position, is older than the previous generation, or holds a shallower result.
+ *
+ * Generations follow the clock, one per turn of a game, not one per search: the games
+ * searched at once, and the pondering between their turns, share the table, so a search
+ * must not age out what the others stored moments ago.
+ */
+public class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    /**
+     * Returned by {@link #probe(long)} when nothing is stored for the key. Stored data always
+     * has the valid bit set, so it can never be MISS.
+     */
+    static final long MISS = 0L;
+
+    private static final long VALID = 1L << 63;
+
+    /**
+     * Length of a generation, the default game.timeout of the engine.
+     */
+    static final long GENERATION_NS = 500_000_000L;
+
+    private final long[] slots;
+    private final int mask;
+    private volatile int generation;
+    private final AtomicLong generationStarted = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param megabytes memory to use, rounded down to a power of two number of slots.
+     */
+    public TranspositionTable(int megabytes) {
+        long entries = Math.max(1024L, ((long) megabytes << 20) / 16);
+        int size = Integer.highestOneBit((int) Math.min(entries, 1 << 29));
+        this.slots = new long[size * 2];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Start a new generation if the current one is over, called when a search starts.
+     */
+    void age(long now) {
+        long started = generationStarted.get();
+        if (now - started >= GENERATION_NS && generationStarted.compareAndSet(started, now)) {
+            nextGeneration();
+        }
+    }
+
+    /**
+     * Start a new generation, entries from before the previous one become the first to go.
+     */
+    void nextGeneration() {
+        generation = (generation + 1) & 0xFF;
+    }
+
+    /**
+     * @return the data stored for the key, or {@link #MISS}.
+     */
+    long probe(long key) {
+        int index = ((int) key & mask) << 1;
+        long data = slots[index + 1];
+        if (data != MISS && (slots[index] ^ data) == key) {
+            return data;
+        }
+        return MISS;
+    }
+
+    /**
+     * @param move best move found, or -1.
+     */
+    void store(long key, int depth, int score, int bound, int move) {
+        int index = ((int) key & mask) << 1;
+        long old = slots[index + 1];
+        if (old != MISS && (slots[index] ^ old) != key && ((generation - generation(old)) & 0xFF) <= 1
+                && depth(old) > depth) {
+            return;
+        }
+        long data = VALID
+                | ((long) generation << 45)
+                | ((long) (move + 1) << 42)
+                | ((long) bound << 40)
+                | ((long) Math.min(depth, 0xFF) << 32)
+                | (score & 0xFFFFFFFFL);
+        slots[index] = key ^ data;
+        slots[index + 1] = data;
+    }
+
+    static int score(long data) {
+        return (int) data;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    static int bound(long data) {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    /**
+     * @return the stored move, or -1.
+     */
+    static int move(long data) {
+        return ((int) (data >>> 42) & 0x7) - 1;
+    }
+
+    private static int generation(long data) {
+        return (int) (data >>> 45) & 0xFF;
+    }
+}
@@ -0,0 +1,116 @@
+package com.battlesnake.starter;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zobrist keys for board positions. A position hash is the XOR of one key per body segment
+ * (per snake and cell), one per snake length, one per snake health and one per food cell,
+ * so a simulated turn only has to XOR in what changed.
+ *
+ * The body keys alone would make a snake the set of cells it covers, with stacked segments
+ * cancelling out. Keys for the cells of its head and its tail are added, so snakes that
+ * cover the same cells the other way round, or with the stack at a different end, differ.
+ *
+ * Tables are fixed in size; snake indices, cells and lengths beyond them wrap around, which
+ * only costs a few more collisions on very large custom boards.
+ */
+final class Zobrist {
+
+    private static final int SNAKES = 16;
+    private static final int CELLS = 1024;
+    private static final int HEALTH = 128;
+
+    /**
+     * Body keys per snake, slot 0 is for a head that left the board.
+     */
+    private static final long[][] BODY = new long[SNAKES][CELLS + 1];
+    private static final long[][] HEAD = new long[SNAKES][CELLS + 1];
+    private static final long[][] TAIL = new long[SNAKES][CELLS + 1];
+    private static final long[][] LENGTH = new long[SNAKES][CELLS];
+    private static final long[][] HEALTHS = new long[SNAKES][HEALTH];
+    private static final long[] FOOD = new long[CELLS + 1];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x5EED_BA77_1E5AL);
+        for (int s = 0; s < SNAKES; s++) {
+            fill(BODY[s], random);
+            fill(LENGTH[s], random);
+            fill(HEALTHS[s], random);
+            fill(HEAD[s], random);
+            fill(TAIL[s], random);
+        }
+        fill(FOOD, random);
+    }
+
+    private Zobrist() {
+    }
+
+    private static void fill(long[] keys, SplittableRandom random) {
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+        }
+    }
+
+    static long body(int snake, int cell) {
+        return BODY[snake & (SNAKES - 1)][slot(cell)];
+    }
+
+    static long head(int snake, int cell) {
+        return HEAD[snake & (SNAKES - 1)][slot(cell)];
+    }
+
+    static long tail(int snake, int cell) {
+        return TAIL[snake & (SNAKES - 1)][slot(cell)];
+    }
+
+    private static int slot(int cell) {
+        return cell < 0 ? 0 : 1 + (cell & (CELLS - 1));
+    }
+
+    static long length(int snake, int length) {
+        return LENGTH[snake & (SNAKES - 1)][length & (CELLS - 1)];
+    }
+
+    static long health(int snake, int health) {
+        return HEALTHS[snake & (SNAKES - 1)][Math.max(0, Math.min(health, HEALTH - 1))];
+    }
+
+    static long food(int cell) {
+        return FOOD[1 + (cell & (CELLS - 1))];
+    }
+
+    /**
+     * Everything one snake adds to the hash.
+     */
+    static long snake(Board board, int s) {
+        long hash = length(s, board.length[s]) ^ health(s, board.health[s])
+                ^ head(s, board.segment(s, 0)) ^ tail(s, board.tail(s));
+        for (int i = 0; i < board.length[s]; i++) {
+            hash ^= body(s, board.segment(s, i));
+        }
+        return hash;
+    }
+
+    /**
+     * Hash the whole board from scratch.
+     *
+     * @param alive which snakes are still on the board, or null if all of them are.
+     */
+    static long hash(Board board, boolean[] alive) {
+        long hash = 0;
+        for (int s = 0; s < board.snakeCount; s++) {
+            if (alive == null || alive[s]) {
+                hash ^= snake(board, s);
+            }
+        }
+        long[] food = board.food;
+        for (int word = 0; word < food.length; word++) {
+            long bits = food[word];
+            while (bits != 0) {
+                hash ^= food((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,55 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class AdjacencyTest {
+
+    @Test
+    void wrappedTest() {
+        Board board = new Board(7, 5, 1);
+        board.rules = Ruleset.WRAPPED;
+
+        assertEquals(board.cell(6, 0), board.neighbour(board.cell(0, 0), Board.LEFT));
+        assertEquals(board.cell(0, 4), board.neighbour(board.cell(0, 0), Board.DOWN));
+        assertEquals(board.cell(0, 0), board.neighbour(board.cell(6, 0), Board.RIGHT));
+        assertEquals(board.cell(3, 0), board.neighbour(board.cell(3, 4), Board.UP));
+        assertEquals(board.cell(4, 2), board.neighbour(board.cell(3, 2), Board.RIGHT));
+    }
+
+    @Test
+    void everyCellTest() {
+        for (boolean wrapped : new boolean[]{false, true}) {
+            int[] next = Adjacency.of(11, 11, wrapped).next;
+            for (int cell = 0; cell < 11 * 11; cell++) {
+                int x = cell % 11;
+                int y = cell / 11;
+                int[][] steps = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
+                for (int direction = 0; direction < 4; direction++) {
+                    int nx = x + steps[direction][0];
+                    int ny = y + steps[direction][1];
+                    int expected = nx >= 0 && ny >= 0 && nx < 11 && ny < 11 ? ny * 11 + nx
+                            : wrapped ? (ny + 11) % 11 * 11 + (nx + 11) % 11 : -1;
+                    assertEquals(expected, next[cell << 2 | direction]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sharedTest() {
+        Board board = new Board(19, 19, 1);
+        Board other = new Board(19, 19, 1);
+
+        assertSame(board.adjacency(), other.adjacency());
+
+        other.rules = Ruleset.WRAPPED;
+        assertNotSame(board.adjacency(), other.adjacency());
+
+        other.reset(11, 11);
+        assertSame(Adjacency.of(11, 11, false), other.adjacency());
+    }
+}
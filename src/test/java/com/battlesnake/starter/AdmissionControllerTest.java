@@ -0,0 +1,71 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdmissionControllerTest {
+
+    private static final long DEADLINE = 400_000_000L;
+    private static final long SLACK = DEADLINE / 20;
+
+    private static MoveController.Turn turn(int level) {
+        return new MoveController.Turn(0, DEADLINE, DEADLINE - SLACK, null, 1, level);
+    }
+
+    @Test
+    void inFlightTest() {
+        AdmissionController admission = new AdmissionController(2);
+
+        int[] expected = {0, 0, 1, 1, 2, 2, 2, 2, 3};
+        for (int level : expected) {
+            admission.enter();
+            assertEquals(level, admission.level());
+        }
+        for (int i = 0; i < 7; i++) {
+            admission.exit();
+        }
+        assertEquals(AdmissionController.FULL, admission.level());
+    }
+
+    @Test
+    void latenessTest() {
+        AdmissionController admission = new AdmissionController(2);
+
+        // answered at the deadline, the search needed all of the slack
+        for (int i = 0; i < AdmissionController.UPDATE_EVERY; i++) {
+            assertEquals(AdmissionController.FULL, admission.level());
+            admission.record(turn(AdmissionController.FULL), DEADLINE);
+        }
+        assertEquals(AdmissionController.FILTERS_ONLY, admission.level());
+
+        // back in time, the level comes down a step at a time
+        int level = admission.level();
+        int moves = 0;
+        while (level > AdmissionController.FULL) {
+            admission.record(turn(level), DEADLINE - SLACK);
+            moves++;
+            int next = admission.level();
+            assertTrue(next == level || next == level - 1, level + " to " + next);
+            level = next;
+            assertTrue(moves <= AdmissionController.WINDOW + 4 * AdmissionController.UPDATE_EVERY);
+        }
+        assertTrue(moves >= 3 * AdmissionController.UPDATE_EVERY, "after " + moves);
+    }
+
+    @Test
+    void searchDeadlineTest() {
+        MoveController controller = new MoveController(100, 20);
+        Board board = new Board(11, 11, 2);
+        board.timeout = 500;
+
+        MoveController.Turn full = controller.arrive(board, 0, null, AdmissionController.FULL);
+        MoveController.Turn reduced = controller.arrive(board, 0, null, AdmissionController.REDUCED);
+        MoveController.Turn minimal = controller.arrive(board, 0, null, AdmissionController.MINIMAL);
+
+        assertEquals(full.deadline, minimal.deadline);
+        assertEquals(full.searchDeadline / 2, reduced.searchDeadline);
+        assertEquals(full.searchDeadline / 4, minimal.searchDeadline);
+    }
+}
@@ -0,0 +1,134 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoardTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static final String MOVE_REQUEST = "{\"game\":{\"id\":\"game-00fe20da-94ad-11ea-bb37\",\"ruleset\":{\"name\":\"standard\",\"version\":\"v.1.2.3\"},\"timeout\":500},\"turn\":14,\"board\":{\"height\":11,\"width\":11,\"food\":[{\"x\":5,\"y\":5},{\"x\":9,\"y\":0},{\"x\":2,\"y\":6}],\"hazards\":[{\"x\":3,\"y\":2}],\"snakes\":[{\"id\":\"snake-508e96ac-94ad-11ea-bb37\",\"name\":\"My Snake\",\"health\":54,\"body\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":0},{\"x\":2,\"y\":0}],\"latency\":\"111\",\"head\":{\"x\":0,\"y\":0},\"length\":3,\"shout\":\"why are we shouting??\",\"squad\":\"\"},{\"id\":\"snake-b67f4906-94ae-11ea-bb37\",\"name\":\"Another Snake\",\"health\":16,\"body\":[{\"x\":5,\"y\":4},{\"x\":5,\"y\":3},{\"x\":6,\"y\":3},{\"x\":6,\"y\":2}],\"latency\":\"222\",\"head\":{\"x\":5,\"y\":4},\"length\":4,\"shout\":\"I'm not really sure...\",\"squad\":\"\"}]},\"you\":{\"id\":\"snake-508e96ac-94ad-11ea-bb37\",\"name\":\"My Snake\",\"health\":54,\"body\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":0},{\"x\":2,\"y\":0}],\"latency\":\"111\",\"head\":{\"x\":0,\"y\":0},\"length\":3,\"shout\":\"why are we shouting??\",\"squad\":\"\"}}";
+
+    @Test
+    void fromMoveRequestTest() throws IOException {
+        Board board = Board.fromMoveRequest(OBJECT_MAPPER.readTree(MOVE_REQUEST));
+
+        assertEquals(11, board.width);
+        assertEquals(2, board.snakeCount);
+        assertEquals(0, board.you);
+        assertEquals(4, board.length[1]);
+        assertTrue(Board.isSet(board.food, board.cell(9, 0)));
+        assertTrue(Board.isSet(board.hazards, board.cell(3, 2)));
+        assertTrue(Board.isSet(board.heads, board.cell(5, 4)));
+        assertTrue(Board.isSet(board.bodies, board.cell(1, 0)));
+        assertTrue(Board.isSet(board.others, board.cell(6, 2)));
+        assertFalse(Board.isSet(board.others, board.cell(1, 0)));
+        // head and neck are not part of 'mine'
+        assertTrue(Board.isSet(board.mine, board.cell(2, 0)));
+        assertFalse(Board.isSet(board.mine, board.cell(1, 0)));
+    }
+
+    @Test
+    void neighbourTest() {
+        Board board = new Board(11, 11, 1);
+
+        assertEquals(-1, board.neighbour(board.cell(0, 0), Board.LEFT));
+        assertEquals(-1, board.neighbour(board.cell(0, 0), Board.DOWN));
+        assertEquals(board.cell(0, 1), board.neighbour(board.cell(0, 0), Board.UP));
+        assertEquals(board.cell(1, 0), board.neighbour(board.cell(0, 0), Board.RIGHT));
+        assertEquals(-1, board.neighbour(board.cell(10, 10), Board.UP));
+        assertEquals(-1, board.neighbour(board.cell(10, 10), Board.RIGHT));
+    }
+
+    @Test
+    void masksBeyondOneWordTest() {
+        Board board = new Board(19, 19, 1);
+        int cell = board.cell(18, 18);
+        Board.set(board.food, cell);
+
+        assertTrue(Board.isSet(board.food, cell));
+        assertFalse(Board.isSet(board.food, cell - 64));
+        Board.clear(board.food, cell);
+        assertFalse(Board.isSet(board.food, cell));
+    }
+
+    @Test
+    void ringTest() {
+        Board board = new Board(11, 11, 1);
+        int s = board.addSnake("me", "me", 100);
+        for (int x = 0; x < 20; x++) {
+            board.addSegment(s, x % 11);
+        }
+        assertEquals(32, board.body[s].length);
+        board.length[s] = 3;
+
+        // around the ring more than once, without ever moving a segment
+        for (int i = 1; i <= 40; i++) {
+            board.advance(s, 11 + i % 11);
+        }
+        assertArrayEquals(new int[]{11 + 40 % 11, 11 + 39 % 11, 11 + 38 % 11}, board.segments(s));
+        assertEquals(32, board.body[s].length);
+
+        board.grow(s);
+        assertEquals(4, board.length[s]);
+        assertEquals(board.segment(s, 2), board.tail(s));
+
+        board.length[s]--;
+        board.retreat(s, 11 + 37 % 11, 0L);
+        assertArrayEquals(new int[]{11 + 39 % 11, 11 + 38 % 11, 11 + 37 % 11}, board.segments(s));
+        assertEquals(board.segment(s, 0), board.head[s]);
+    }
+
+    @Test
+    void freeInTest() {
+        Board board = new Board(11, 11, 1);
+        int s = board.addSnake("me", "me", 100);
+        // right after eating, the tail is on top of the segment before it
+        for (int cell : new int[]{board.cell(0, 0), board.cell(1, 0), board.cell(2, 0), board.cell(2, 0)}) {
+            board.addSegment(s, cell);
+        }
+
+        assertEquals(4, board.freeIn(board.cell(0, 0)));
+        assertEquals(3, board.freeIn(board.cell(1, 0)));
+        assertEquals(2, board.freeIn(board.cell(2, 0)));
+        assertTrue(board.blockedNextTurn(board.cell(2, 0)));
+        assertFalse(board.blockedNextTurn(board.cell(3, 0)));
+
+        long previous = board.advance(s, board.cell(0, 1));
+        assertEquals(4, board.freeIn(board.cell(0, 1)));
+        assertEquals(3, board.freeIn(board.cell(0, 0)));
+        assertEquals(1, board.freeIn(board.cell(2, 0)));
+        assertFalse(board.blockedNextTurn(board.cell(2, 0)));
+
+        // eating holds every segment one turn longer
+        board.grow(s);
+        assertEquals(2, board.freeIn(board.cell(2, 0)));
+        assertEquals(5, board.freeIn(board.cell(0, 1)));
+
+        board.length[s]--;
+        board.retreat(s, board.cell(2, 0), previous);
+        assertEquals(4, board.freeIn(board.cell(0, 0)));
+        assertEquals(2, board.freeIn(board.cell(2, 0)));
+
+        Board copy = new Board(7, 7, 1);
+        copy.copyFrom(board);
+        assertEquals(3, copy.freeIn(board.cell(1, 0)));
+        assertArrayEquals(board.segments(s), copy.segments(s));
+    }
+
+    @Test
+    void moveDoesNotAvoidItselfTest() throws IOException {
+        JsonNode moveRequest = OBJECT_MAPPER.readTree(MOVE_REQUEST);
+
+        // walls take down and left, the neck takes right
+        assertEquals("up", new Snake.Handler().move(moveRequest).get("move"));
+    }
+}
@@ -0,0 +1,40 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class DirectionTest {
+
+    @Test
+    void orderTest() {
+        for (int direction = 0; direction < 4; direction++) {
+            assertEquals(Board.MOVES[direction], Direction.of(direction).move);
+            assertSame(Direction.of(direction), Direction.of(Board.MOVES[direction]));
+        }
+        assertEquals(Board.LEFT, Direction.LEFT.ordinal());
+    }
+
+    @Test
+    void maskTest() {
+        int moves = Direction.mask(Arrays.asList("left", "up", "sideways"));
+
+        assertEquals(Direction.UP.bit | Direction.LEFT.bit, moves);
+        assertEquals(2, Direction.count(moves));
+        assertEquals(Board.UP, Direction.nth(moves, 0));
+        assertEquals(Board.LEFT, Direction.nth(moves, 1));
+        assertEquals(Arrays.asList("up", "left"), Direction.names(moves));
+    }
+
+    @Test
+    void retainTest() {
+        ArrayList<String> moves = new ArrayList<>(Arrays.asList("right", "up", "down"));
+
+        assertSame(moves, Direction.retain(moves, Direction.RIGHT.bit | Direction.DOWN.bit));
+        assertEquals(Arrays.asList("right", "down"), moves);
+    }
+}
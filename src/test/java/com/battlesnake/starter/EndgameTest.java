@@ -0,0 +1,88 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.deadline;
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class EndgameTest {
+
+    @Test
+    void surviveTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 90, 2, 0, 2, 1, 2, 2);
+        // left is a pocket of two cells, right a square to go round in
+        int[] free = {board.cell(0, 0), board.cell(1, 0), board.cell(3, 0), board.cell(4, 0),
+                board.cell(3, 1), board.cell(4, 1)};
+        int wall = board.addSnake("wall", "wall", 90);
+        board.addSegment(wall, board.cell(6, 6));
+        for (int cell = 0; cell < 49; cell++) {
+            boolean open = Board.isSet(board.bodies, cell);
+            for (int f : free) {
+                open |= f == cell;
+            }
+            if (!open) {
+                board.addSegment(wall, cell);
+            }
+        }
+        // just ate, so none of it moves away
+        board.addSegment(wall, board.tail(wall));
+        board.markOwners();
+        int[] body = board.segments(board.you);
+
+        Endgame endgame = new Endgame(40);
+        int move = endgame.bestMove(board, new int[]{Board.LEFT, Board.RIGHT}, 2, deadline(1000));
+
+        assertEquals(Board.RIGHT, move);
+        assertEquals(Endgame.SURVIVED, endgame.result);
+        assertEquals(Simulator.MAX_PLIES, endgame.turns);
+        assertArrayEquals(body, board.segments(board.you));
+    }
+
+    @Test
+    void duelWonTest() {
+        Board board = new Board(5, 5, 2);
+        board.you = snake(board, "me", 90, 0, 2, 1, 2, 2, 2, 3, 2);
+        // cornered, down is its only way out
+        snake(board, "other", 90, 0, 4, 1, 4, 2, 4);
+        board.markOwners();
+
+        Endgame endgame = new Endgame(40);
+        int move = endgame.bestMove(board, new int[]{Board.DOWN, Board.UP}, 2, deadline(1000));
+
+        assertEquals(Board.UP, move);
+        assertEquals(Endgame.WON, endgame.result);
+        assertEquals(1, endgame.turns);
+    }
+
+    @Test
+    void duelLostTest() {
+        Board board = new Board(5, 5, 2);
+        board.you = snake(board, "me", 90, 0, 4, 1, 4, 2, 4);
+        snake(board, "other", 90, 0, 2, 1, 2, 2, 2, 3, 2);
+        board.markOwners();
+
+        Endgame endgame = new Endgame(40);
+        int move = endgame.bestMove(board, new int[]{Board.DOWN}, 1, deadline(1000));
+
+        // lost only against an opponent that sees our move, the search decides
+        assertEquals(-1, move);
+        assertEquals(Endgame.LOST, endgame.result);
+        assertEquals(1, endgame.turns);
+    }
+
+    @Test
+    void openBoardTest() {
+        Board board = new Board(11, 11, 2);
+        board.you = snake(board, "me", 90, 5, 5, 5, 4, 5, 3);
+        snake(board, "other", 90, 8, 8, 8, 7, 8, 6);
+        board.markOwners();
+
+        Endgame endgame = new Endgame(40);
+
+        assertEquals(-1, endgame.bestMove(board, new int[]{Board.UP, Board.LEFT}, 2, deadline(1000)));
+        assertEquals(Endgame.NONE, endgame.result);
+    }
+}
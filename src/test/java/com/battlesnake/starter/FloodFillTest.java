@@ -0,0 +1,64 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FloodFillTest {
+
+    /**
+     * 5x5 board cut in two by a wall snake in column 1, whose tail at (2,0) moves away.
+     */
+    private static Board wallBoard() {
+        Board board = new Board(5, 5, 2);
+        board.you = snake(board, "me", 100, 3, 2, 3, 1, 4, 1);
+        snake(board, "wall", 100, 1, 4, 1, 3, 1, 2, 1, 1, 1, 0, 2, 0);
+        board.markOwners();
+        return board;
+    }
+
+    @Test
+    void areaTest() {
+        Board board = wallBoard();
+        FloodFill floodFill = new FloodFill();
+
+        assertEquals(5, floodFill.area(board, board.cell(0, 2), 100));
+        assertEquals(13, floodFill.area(board, board.cell(2, 2), 100));
+        // stamps from the calls before don't leak into the next one
+        assertEquals(5, floodFill.area(board, board.cell(0, 2), 100));
+    }
+
+    @Test
+    void blockedStartTest() {
+        Board board = wallBoard();
+        FloodFill floodFill = new FloodFill();
+
+        assertEquals(0, floodFill.area(board, board.cell(1, 2), 100));
+        assertEquals(0, floodFill.area(board, -1, 100));
+    }
+
+    @Test
+    void tailTest() {
+        Board moving = new Board(4, 1, 1);
+        moving.you = snake(moving, "me", 100, 1, 0, 2, 0, 3, 0);
+        moving.markOwners();
+        Board stacked = new Board(4, 1, 1);
+        stacked.you = snake(stacked, "me", 100, 1, 0, 2, 0, 2, 0);
+        stacked.markOwners();
+        FloodFill floodFill = new FloodFill();
+
+        assertEquals(1, floodFill.area(moving, moving.cell(3, 0), 100));
+        // just ate, the tail stays where it is
+        assertEquals(0, floodFill.area(stacked, stacked.cell(2, 0), 100));
+    }
+
+    @Test
+    void roomTest() {
+        Board board = wallBoard();
+        FloodFill floodFill = new FloodFill();
+
+        assertEquals(13, floodFill.room(board, board.head[board.you], 100));
+        assertEquals(4, floodFill.room(board, board.head[board.you], 4));
+    }
+}
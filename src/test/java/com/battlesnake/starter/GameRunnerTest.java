@@ -0,0 +1,50 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameRunnerTest {
+
+    @Test
+    void playToTheEndTest() {
+        GameRunner runner = new GameRunner(new Snake.Handler(),
+                new GameRunner.Strategy[]{GameRunner.Strategy.RANDOM, GameRunner.Strategy.RANDOM}, 100, 1000);
+
+        GameRunner.Result result = runner.play(7, 7, Ruleset.STANDARD, 1);
+
+        assertTrue(result.turns > 0 && result.turns < 1000);
+        for (int s = 0; s < 2; s++) {
+            assertTrue(result.survived[s] <= result.turns);
+        }
+        if (result.winner >= 0) {
+            assertEquals(result.turns, result.survived[result.winner]);
+        }
+    }
+
+    @Test
+    void turnLimitTest() {
+        GameRunner runner = new GameRunner(new Snake.Handler(),
+                new GameRunner.Strategy[]{GameRunner.Strategy.FILTERS}, 100, 20);
+
+        GameRunner.Result result = runner.play(11, 11, Ruleset.WRAPPED, 2);
+
+        // the filters alone keep a single snake alive for a few turns
+        assertEquals(20, result.turns);
+        assertEquals(20, result.survived[0]);
+        assertEquals(-1, result.winner);
+    }
+
+    @Test
+    void handlerTest() {
+        GameRunner runner = new GameRunner(new Snake.Handler(),
+                new GameRunner.Strategy[]{GameRunner.Strategy.HANDLER, GameRunner.Strategy.RANDOM}, 20, 15);
+
+        GameRunner.Result result = runner.play(11, 11, Ruleset.ROYALE, 3);
+
+        // one decision per turn alive
+        assertTrue(result.survived[0] > 0);
+        assertEquals(result.survived[0], runner.latency[0].count());
+    }
+}
@@ -0,0 +1,123 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GameSessionsTest {
+
+    @Test
+    void startThenGetTest() {
+        GameSessions sessions = new GameSessions(8, 60_000);
+
+        GameSessions.GameSession started = sessions.start("game-1");
+
+        assertSame(started, sessions.get("game-1"));
+        assertEquals(1, sessions.hits.sum());
+        assertEquals(0, sessions.misses.sum());
+    }
+
+    @Test
+    void missCreatesSessionTest() {
+        GameSessions sessions = new GameSessions(8, 60_000);
+
+        GameSessions.GameSession session = sessions.get("game-1");
+
+        assertSame(session, sessions.get("game-1"));
+        assertEquals(1, sessions.misses.sum());
+        assertEquals(1, sessions.hits.sum());
+    }
+
+    @Test
+    void endEvictsTest() {
+        GameSessions sessions = new GameSessions(8, 60_000);
+        GameSessions.GameSession started = sessions.start("game-1");
+
+        sessions.end("game-1");
+
+        assertEquals(0, sessions.size());
+        assertNotSame(started, sessions.get("game-1"));
+    }
+
+    @Test
+    void expireTest() {
+        GameSessions sessions = new GameSessions(8, 1_000);
+        sessions.start("old").lastSeen -= 5_000;
+        sessions.start("new");
+
+        sessions.expire(System.currentTimeMillis());
+
+        assertEquals(1, sessions.size());
+        assertEquals(1, sessions.evictions.sum());
+        sessions.get("new");
+        assertEquals(1, sessions.hits.sum());
+    }
+
+    @Test
+    void dropsLeastRecentlySeenTest() {
+        GameSessions sessions = new GameSessions(2, 60_000);
+        GameSessions.GameSession first = sessions.start("first");
+        GameSessions.GameSession second = sessions.start("second");
+        first.lastSeen += 10;
+        second.lastSeen -= 10;
+
+        sessions.start("third");
+
+        assertEquals(2, sessions.size());
+        assertEquals(1, sessions.evictions.sum());
+        assertSame(first, sessions.get("first"));
+    }
+
+    @Test
+    void expiredGetTest() {
+        GameSessions sessions = new GameSessions(8, 1_000);
+        GameSessions.GameSession old = sessions.start("game-1");
+        old.lastSeen -= 5_000;
+
+        GameSessions.GameSession session = sessions.get("game-1");
+
+        assertNotSame(old, session);
+        assertEquals(1, sessions.evictions.sum());
+        assertEquals(1, sessions.misses.sum());
+        assertSame(session, sessions.get("game-1"));
+    }
+
+    @Test
+    void removedTest() {
+        List<String> removed = new ArrayList<>();
+        GameSessions sessions = new GameSessions(3, 1_000, session -> removed.add(session.gameId));
+        sessions.start("ended");
+        sessions.start("replaced");
+        // replacing a game makes no room
+        sessions.start("replaced");
+        sessions.end("ended");
+        sessions.start("expired").lastSeen -= 5_000;
+        sessions.get("expired");
+        sessions.get("replaced").lastSeen -= 10;
+        sessions.start("other");
+
+        sessions.start("full");
+
+        assertEquals(Arrays.asList("replaced", "ended", "expired", "replaced"), removed);
+        assertEquals(3, sessions.size());
+    }
+
+    @Test
+    void followsTest() {
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+
+        assertFalse(session.follows(0));
+        session.record(4, 6);
+        assertTrue(session.follows(5));
+        assertFalse(session.follows(4));
+        assertFalse(session.follows(7));
+    }
+}
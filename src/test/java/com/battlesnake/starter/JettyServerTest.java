@@ -0,0 +1,168 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JettyServerTest {
+
+    private static final String MOVE_REQUEST = "{\"game\":{\"id\":\"game-1\",\"ruleset\":{\"name\":\"standard\"},"
+            + "\"timeout\":500},\"turn\":1,\"board\":{\"height\":11,\"width\":11,\"food\":[],\"hazards\":[],"
+            + "\"snakes\":[{\"id\":\"me\",\"health\":90,\"body\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":0},{\"x\":2,\"y\":0}]}]},"
+            + "\"you\":{\"id\":\"me\",\"health\":90,\"body\":[{\"x\":0,\"y\":0},{\"x\":1,\"y\":0},{\"x\":2,\"y\":0}]}}";
+
+    private JettyServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new JettyServer(new Snake.Handler(), 0, 8, 16, 1, 1, 5_000, 2, 4);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    void indexTest() throws IOException {
+        HttpURLConnection connection = open("/", "GET");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(Snake.Handler.CONTENT_TYPE, connection.getContentType());
+        assertEquals(new String(new Snake.Handler().indexBody, StandardCharsets.UTF_8), read(connection));
+    }
+
+    @Test
+    void moveTest() throws IOException {
+        HttpURLConnection connection = post("/move", MOVE_REQUEST);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"move\":\"up\"}", read(connection));
+    }
+
+    @Test
+    void fullComputePoolTest() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Snake.Handler blocking = new Snake.Handler() {
+            @Override
+            byte[] handle(String uri, byte[] request) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.handle(uri, request);
+            }
+        };
+        server.stop();
+        // one compute thread and room for one more move in the queue
+        server = new JettyServer(blocking, 0, 8, 16, 1, 1, 5_000, 1, 1);
+        server.start();
+        ExecutorService clients = Executors.newFixedThreadPool(3);
+        try {
+            CompletionService<String> answers = new ExecutorCompletionService<>(clients);
+            answers.submit(() -> read(post("/move", MOVE_REQUEST)));
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            answers.submit(() -> read(post("/move", MOVE_REQUEST)));
+            answers.submit(() -> read(post("/move", MOVE_REQUEST)));
+            // one of them waits in the queue, the other is answered from the filters right away
+            Future<String> first = answers.poll(5, TimeUnit.SECONDS);
+
+            assertNotNull(first);
+            assertEquals("{\"move\":\"up\"}", first.get());
+        } finally {
+            release.countDown();
+            clients.shutdown();
+        }
+    }
+
+    @Test
+    void failedMoveTest() throws Exception {
+        Snake.Handler failing = new Snake.Handler() {
+            @Override
+            byte[] handle(String uri, byte[] request) {
+                throw new IllegalStateException("failed on purpose");
+            }
+        };
+        server.stop();
+        server = new JettyServer(failing, 0, 8, 16, 1, 1, 5_000, 2, 4);
+        server.start();
+
+        HttpURLConnection connection = post("/move", MOVE_REQUEST);
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"move\":\"up\"}", read(connection));
+    }
+
+    @Test
+    void endTest() throws IOException {
+        HttpURLConnection connection = post("/end", "{}");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{}", read(connection));
+    }
+
+    @Test
+    void metricsTest() throws IOException {
+        HttpURLConnection connection = open("/metrics", "GET");
+
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("text/plain"));
+        assertTrue(read(connection).contains("battlesnake_search_total"));
+    }
+
+    @Test
+    void unknownRouteTest() throws IOException {
+        assertEquals(404, open("/nothing", "GET").getResponseCode());
+    }
+
+    private HttpURLConnection open(String path, String method) throws IOException {
+        HttpURLConnection connection =
+                (HttpURLConnection) new URL("http://localhost:" + server.port() + path).openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private HttpURLConnection post(String path, String body) throws IOException {
+        HttpURLConnection connection = open(path, "POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,128 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.deadline;
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MctsTest {
+
+    private static Board headToHeadBoard() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 90, 3, 3, 3, 2, 3, 1);
+        snake(board, "big", 90, 5, 3, 6, 3, 6, 2, 6, 1, 6, 0);
+        board.markOwners();
+        return board;
+    }
+
+    @Test
+    void avoidLongerHeadTest() {
+        Mcts mcts = new Mcts(4, 4096);
+
+        int move = mcts.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(200));
+
+        assertNotEquals(Board.RIGHT, move);
+        assertTrue(mcts.rollouts > 0);
+    }
+
+    @Test
+    void singleThreadTest() {
+        Mcts mcts = new Mcts(1, 4096);
+
+        int move = mcts.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(200));
+
+        assertNotEquals(Board.RIGHT, move);
+    }
+
+    @Test
+    void runsUntilDeadlineTest() {
+        Mcts mcts = new Mcts(2, 4096);
+        long started = System.nanoTime();
+
+        mcts.bestMove(headToHeadBoard(), new int[]{Board.UP, Board.LEFT}, 2, started + 50_000_000L);
+
+        assertTrue(System.nanoTime() - started >= 50_000_000L);
+    }
+
+    @Test
+    void settledEarlyTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 90, 0, 3, 0, 2, 0, 1);
+        snake(board, "other", 90, 6, 6, 6, 5, 6, 4);
+        board.markOwners();
+        Mcts mcts = new Mcts(2, 4096);
+        long started = System.nanoTime();
+
+        // left leaves the board, so the answer is settled long before the deadline
+        int move = mcts.bestMove(board, new int[]{Board.LEFT, Board.RIGHT}, 2, started + 2_000_000_000L);
+
+        assertEquals(Board.RIGHT, move);
+        assertTrue(System.nanoTime() - started < 1_500_000_000L);
+    }
+
+    @Test
+    void fullPoolTest() {
+        // far more rollouts than nodes, the tree just stops growing
+        Mcts mcts = new Mcts(2, 16);
+
+        int move = mcts.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(50));
+
+        assertNotEquals(Board.RIGHT, move);
+    }
+
+    @Test
+    void boardIsOnlyReadTest() {
+        Board board = headToHeadBoard();
+        long[] bodies = board.bodies.clone();
+        int[] body = board.body[1].clone();
+
+        new Mcts(2, 1024).bestMove(board, new int[]{Board.UP, Board.LEFT}, 2, deadline(30));
+
+        assertArrayEquals(bodies, board.bodies);
+        assertArrayEquals(body, board.body[1]);
+    }
+
+    @Test
+    void singleMoveIsNotSearchedTest() {
+        Mcts mcts = new Mcts(2, 1024);
+
+        assertEquals(Board.LEFT, mcts.bestMove(headToHeadBoard(), new int[]{Board.LEFT}, 1, deadline(0)));
+        assertEquals(0, mcts.rollouts);
+    }
+
+    @Test
+    void noTimeLeftTest() {
+        Mcts mcts = new Mcts(2, 1024);
+
+        // the first candidate is the one the filters prefer
+        int move = mcts.bestMove(headToHeadBoard(), new int[]{Board.UP, Board.LEFT}, 2, System.nanoTime() - 1);
+
+        assertEquals(Board.UP, move);
+        assertEquals(0, mcts.rollouts);
+    }
+
+    @Test
+    void concurrentSearchesTest() throws Exception {
+        Mcts mcts = new Mcts(2, 4096);
+        // built up front, the first board loads the classes that both threads need
+        Board firstBoard = headToHeadBoard();
+        Board secondBoard = headToHeadBoard();
+        Thread first = new Thread(() -> mcts.bestMove(firstBoard,
+                new int[]{Board.UP, Board.LEFT}, 2, deadline(600)));
+        first.start();
+        Thread.sleep(100);
+
+        // the pool is busy until the first deadline, the second search runs on this thread
+        long started = System.nanoTime();
+        int move = mcts.bestMove(secondBoard, new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(50));
+        long elapsed = System.nanoTime() - started;
+        first.join();
+
+        assertNotEquals(Board.RIGHT, move);
+        assertTrue(elapsed < 200_000_000L, elapsed / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,61 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    void bucketTest() {
+        assertEquals(0, Metrics.Histogram.bucket(0));
+        assertEquals(3, Metrics.Histogram.bucket(3));
+        assertEquals(4, Metrics.Histogram.bucket(4));
+        assertEquals(7, Metrics.Histogram.bucket(7));
+        assertEquals(8, Metrics.Histogram.bucket(8));
+        assertEquals(8, Metrics.Histogram.bucket(9));
+        assertEquals(Metrics.Histogram.BUCKETS - 1, Metrics.Histogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    void bucketBoundsTest() {
+        // every value lies below its bucket's bound and at or above the one before
+        for (long micros = 0; micros < 1 << 20; micros += 1 + micros / 64) {
+            int bucket = Metrics.Histogram.bucket(micros);
+            assertTrue(micros < Metrics.Histogram.upperBound(bucket), "bound of " + micros);
+            if (bucket > 0) {
+                assertTrue(micros >= Metrics.Histogram.upperBound(bucket - 1), "previous bound of " + micros);
+            }
+        }
+    }
+
+    @Test
+    void requestTest() {
+        Metrics metrics = new Metrics();
+
+        metrics.request(Metrics.Route.MOVE, 0, 2_000, 150_000_000, 150_001_000);
+
+        assertEquals(1, metrics.latency(Metrics.Route.MOVE, Metrics.Phase.DECIDE).count());
+        assertEquals(0, metrics.latency(Metrics.Route.END, Metrics.Phase.DECIDE).count());
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("battlesnake_request_seconds_count{route=\"/move\",phase=\"total\"} 1\n"));
+        assertTrue(scrape.contains("battlesnake_request_seconds_bucket{route=\"/move\",phase=\"parse\",le=\"+Inf\"} 1\n"));
+    }
+
+    @Test
+    void searchTest() {
+        Metrics metrics = new Metrics();
+
+        metrics.search(100_000_000, 5_000, 6, 400, 100, true);
+        metrics.search(50_000_000, 1_000, 4, 100, 50, false);
+
+        String scrape = metrics.scrape();
+        assertTrue(scrape.contains("battlesnake_search_total 2\n"));
+        assertTrue(scrape.contains("battlesnake_search_nodes_total 6000\n"));
+        assertTrue(scrape.contains("battlesnake_search_depth_total 10\n"));
+        assertTrue(scrape.contains("battlesnake_search_table_hits_total 150\n"));
+        assertTrue(scrape.contains("battlesnake_search_deadline_hits_total 1\n"));
+        assertTrue(scrape.contains("jvm_gc_collection_seconds_count"));
+    }
+}
@@ -0,0 +1,156 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MoveControllerTest {
+
+    private static Board board(int timeout, int turn, int latency) {
+        Board board = new Board(11, 11, 2);
+        board.timeout = timeout;
+        board.turn = turn;
+        board.latency = latency;
+        return board;
+    }
+
+    @Test
+    void defaultMarginTest() {
+        MoveController controller = new MoveController(100, 20);
+        long arrived = System.nanoTime();
+
+        MoveController.Turn turn = controller.arrive(board(500, 1, 0), arrived, null);
+
+        assertEquals(400_000_000L, turn.deadline - arrived);
+        assertTrue(turn.searchDeadline < turn.deadline);
+    }
+
+    @Test
+    void measuredMarginTest() {
+        MoveController controller = new MoveController(100, 20);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+        session.timedTurn = 4;
+        session.elapsedMs = 380;
+
+        // 40 ms of the 420 the engine waited were spent on the network
+        long arrived = System.nanoTime();
+        MoveController.Turn turn = controller.arrive(board(500, 5, 420), arrived, session);
+
+        assertEquals(60, controller.margin());
+        assertEquals(440_000_000L, turn.deadline - arrived);
+    }
+
+    @Test
+    void latencyOfOtherTurnIgnoredTest() {
+        MoveController controller = new MoveController(100, 20);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+        session.timedTurn = 2;
+        session.elapsedMs = 380;
+
+        controller.arrive(board(500, 5, 420), System.nanoTime(), session);
+
+        assertEquals(100, controller.margin());
+    }
+
+    @Test
+    void answerTest() {
+        MoveController controller = new MoveController(100, 20);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+        MoveController.Turn turn = controller.arrive(board(500, 3, 0), System.nanoTime(), session);
+
+        assertEquals(Board.LEFT, controller.answer(() -> Board.LEFT, Board.UP, turn));
+        assertFalse(turn.abandoned);
+        assertEquals(1, controller.moves.sum());
+        assertEquals(3, session.timedTurn);
+    }
+
+    @Test
+    void lateSearchFallsBackTest() {
+        MoveController controller = new MoveController(100, 20);
+        MoveController.Turn turn = controller.arrive(board(220, 3, 0), System.nanoTime(), null);
+
+        long started = System.nanoTime();
+        int move = controller.answer(() -> {
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Board.LEFT;
+        }, Board.UP, turn);
+
+        assertEquals(Board.UP, move);
+        assertTrue(turn.abandoned);
+        assertEquals(1, controller.timeouts.sum());
+        assertTrue(System.nanoTime() - started < 500_000_000L);
+    }
+
+    @Test
+    void failedSearchFallsBackTest() {
+        MoveController controller = new MoveController(100, 20);
+        MoveController.Turn turn = controller.arrive(board(500, 3, 0), System.nanoTime(), null);
+
+        int move = controller.answer(() -> {
+            throw new IllegalStateException("broken");
+        }, Board.DOWN, turn);
+
+        assertEquals(Board.DOWN, move);
+        assertFalse(turn.abandoned);
+        assertEquals(1, controller.failures.sum());
+    }
+
+    @Test
+    void busySearchersFallBackTest() {
+        MoveController controller = new MoveController(100, 20, 1);
+        MoveController.Turn late = controller.arrive(board(220, 3, 0), System.nanoTime(), null);
+        controller.answer(() -> {
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Board.LEFT;
+        }, Board.UP, late);
+        assertTrue(late.abandoned);
+
+        // the only search thread is still busy with the abandoned search
+        MoveController.Turn turn = controller.arrive(board(500, 4, 0), System.nanoTime(), null);
+        long started = System.nanoTime();
+        int move = controller.answer(() -> Board.LEFT, Board.DOWN, turn);
+
+        assertEquals(Board.DOWN, move);
+        assertEquals(1, controller.rejected.sum());
+        assertTrue(System.nanoTime() - started < 100_000_000L);
+    }
+
+    @Test
+    void searchLogsLikeRequestTest() {
+        MoveController controller = new MoveController(100, 20);
+        try {
+            MoveLog.DEFAULT.begin(true);
+            MoveController.Turn logged = controller.arrive(board(500, 3, 0), System.nanoTime(), null);
+            assertEquals(Board.LEFT, controller.answer(() -> MoveLog.DEFAULT.enabled() ? Board.LEFT : Board.RIGHT,
+                    Board.UP, logged));
+
+            MoveLog.DEFAULT.begin(false);
+            MoveController.Turn quiet = controller.arrive(board(500, 4, 0), System.nanoTime(), null);
+            assertEquals(Board.RIGHT, controller.answer(() -> MoveLog.DEFAULT.enabled() ? Board.LEFT : Board.RIGHT,
+                    Board.UP, quiet));
+        } finally {
+            MoveLog.DEFAULT.end();
+        }
+    }
+
+    @Test
+    void sequentialSearchesTest() {
+        MoveController controller = new MoveController(100, 20, 1);
+
+        for (int turn = 1; turn <= 20; turn++) {
+            MoveController.Turn timing = controller.arrive(board(500, turn, 0), System.nanoTime(), null);
+            assertEquals(Board.LEFT, controller.answer(() -> Board.LEFT, Board.UP, timing), "turn " + turn);
+        }
+        assertEquals(0, controller.rejected.sum());
+    }
+}
@@ -0,0 +1,97 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MoveLogTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MoveLogTest.class);
+
+    @Test
+    void sampledTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.SAMPLED, 1, 10, 100, null);
+
+        assertTrue(log.sampled("game", 20));
+        assertFalse(log.sampled("game", 21));
+    }
+
+    @Test
+    void gameSampleTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.SAMPLED, 2, 1, 100, null);
+        int sampled = 0;
+        for (int game = 0; game < 100; game++) {
+            if (log.sampled("game-" + game, 0)) {
+                sampled++;
+            }
+        }
+
+        assertTrue(sampled > 20 && sampled < 80);
+    }
+
+    @Test
+    void singleGameTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.FULL, 1, 1, 100, "replayed");
+
+        assertTrue(log.sampled("replayed", 7));
+        assertFalse(log.sampled("other", 0));
+    }
+
+    @Test
+    void offTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.OFF, 1, 1, 100, null);
+
+        log.begin("game", 0);
+
+        assertFalse(log.enabled());
+    }
+
+    @Test
+    void modeTest() {
+        assertEquals(MoveLog.Mode.FULL, MoveLog.mode("full"));
+        assertEquals(MoveLog.Mode.SAMPLED, MoveLog.mode("Sampled"));
+        assertEquals(MoveLog.Mode.OFF, MoveLog.mode("verbose"));
+    }
+
+    @Test
+    void skippedRequestWritesNothingTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.FULL, 1, 1, 100, "replayed");
+
+        log.begin("other", 0);
+        log.info(LOG, "not written {}", 1);
+
+        assertEquals(0, log.written.sum());
+        assertEquals(0, log.dropped.sum());
+    }
+
+    @Test
+    void fullIsSynchronousTest() {
+        MoveLog log = new MoveLog(MoveLog.Mode.FULL, 1, 1, 100, null);
+
+        log.begin("game", 3);
+        log.info(LOG, "written {} {}", "right", "away");
+
+        assertEquals(1, log.written.sum());
+    }
+
+    @Test
+    void rateLimitTest() throws InterruptedException {
+        MoveLog log = new MoveLog(MoveLog.Mode.SAMPLED, 1, 1, 2, null);
+
+        log.begin("game", 0);
+        for (int i = 0; i < 5; i++) {
+            log.info(LOG, "line {}", i);
+        }
+
+        // unless the second ended in between, three lines are over the limit
+        assertTrue(log.dropped.sum() >= 1);
+        for (int i = 0; i < 100 && log.written.sum() + log.dropped.sum() < 5; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(5, log.written.sum() + log.dropped.sum());
+    }
+}
@@ -0,0 +1,114 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoveRequestDecoderTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private MoveRequestDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        decoder = new MoveRequestDecoder();
+    }
+
+    @Test
+    void decodeLikeJsonNodeTest() throws IOException {
+        Board expected = Board.fromMoveRequest(OBJECT_MAPPER.readTree(BoardTest.MOVE_REQUEST));
+        Board board = decoder.decode(BoardTest.MOVE_REQUEST.getBytes(StandardCharsets.UTF_8), new Board(7, 7, 1));
+
+        assertEquals("game-00fe20da-94ad-11ea-bb37", board.gameId);
+        assertEquals("standard", board.ruleset);
+        assertEquals(500, board.timeout);
+        assertEquals(14, board.turn);
+        assertEquals(111, board.latency);
+        assertEquals(expected.latency, board.latency);
+        assertEquals(11, board.width);
+        assertEquals(11, board.height);
+        assertEquals(expected.snakeCount, board.snakeCount);
+        assertEquals(expected.you, board.you);
+        assertArrayEquals(expected.bodies, board.bodies);
+        assertArrayEquals(expected.heads, board.heads);
+        assertArrayEquals(expected.food, board.food);
+        assertArrayEquals(expected.hazards, board.hazards);
+        assertArrayEquals(expected.mine, board.mine);
+        assertArrayEquals(expected.others, board.others);
+        assertEquals(16, board.health[1]);
+        assertEquals(4, board.length[1]);
+    }
+
+    @Test
+    void reuseBoardTest() throws IOException {
+        Board board = new Board(11, 11, 8);
+        long[] bodies = board.bodies;
+
+        decoder.decode(BoardTest.MOVE_REQUEST, board);
+        assertSame(board, decoder.decode("{\"you\":{\"id\":\"a\",\"body\":[{\"x\":1,\"y\":1}]},"
+                + "\"board\":{\"food\":[],\"snakes\":[{\"id\":\"a\",\"body\":[{\"x\":1,\"y\":1}]}],\"width\":11,\"height\":11}}", board));
+
+        // same size, so the masks are reused and the old snakes are gone
+        assertSame(bodies, board.bodies);
+        assertEquals(1, board.snakeCount);
+        assertEquals(0, board.you);
+        assertEquals(board.cell(1, 1), board.head[0]);
+        assertEquals(1, Long.bitCount(board.bodies[0]) + Long.bitCount(board.bodies[1]));
+    }
+
+    @Test
+    void skipUnusedFieldsTest() throws IOException {
+        Board board = decoder.decode("{\"game\":{\"id\":\"g\",\"source\":\"custom\",\"ruleset\":{\"name\":\"wrapped\",\"settings\":{\"foodSpawnChance\":15}}},"
+                + "\"board\":{\"width\":3,\"height\":3,\"food\":[],\"hazards\":[],\"snakes\":[]},"
+                + "\"you\":{\"id\":\"me\",\"customizations\":{\"color\":\"#000000\"},\"body\":[{\"x\":0,\"y\":0},{\"x\":0,\"y\":1}],\"latency\":\"12\"}}", new Board(3, 3, 1));
+
+        assertEquals("wrapped", board.ruleset);
+        assertEquals(1, board.snakeCount);
+        assertEquals(2, board.length[board.you]);
+        assertEquals(board.cell(0, 1), board.segment(board.you, 1));
+    }
+
+    @Test
+    void missingYouTest() {
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode("{\"board\":{\"width\":3,\"height\":3,\"snakes\":[]}}", new Board(3, 3, 1)));
+    }
+
+    @Test
+    void badGeometryTest() {
+        String you = "\"you\":{\"id\":\"a\",\"body\":[{\"x\":1,\"y\":1}]}";
+        // no size
+        assertThrows(IllegalArgumentException.class,
+                () -> decoder.decode("{" + you + ",\"board\":{\"food\":[],\"snakes\":[]}}", new Board(3, 3, 1)));
+        // food, a body and a hazard off the board
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("{" + you
+                + ",\"board\":{\"width\":3,\"height\":3,\"food\":[{\"x\":3,\"y\":0}],\"snakes\":[]}}", new Board(3, 3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("{\"you\":{\"id\":\"a\",\"body\":[{\"x\":-1,\"y\":1}]}"
+                + ",\"board\":{\"width\":3,\"height\":3,\"snakes\":[]}}", new Board(3, 3, 1)));
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("{" + you
+                + ",\"board\":{\"width\":3,\"height\":3,\"hazards\":[{\"x\":0,\"y\":7}],\"snakes\":[]}}", new Board(3, 3, 1)));
+        // a snake without a body
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode("{" + you
+                + ",\"board\":{\"width\":3,\"height\":3,\"snakes\":[{\"id\":\"b\",\"body\":[]}]}}", new Board(3, 3, 1)));
+    }
+
+    @Test
+    void rulesetTest() throws IOException {
+        Board board = decoder.decode("{\"game\":{\"ruleset\":{\"name\":\"wrapped\",\"version\":\"v1.1.0\","
+                + "\"settings\":{\"foodSpawnChance\":15,\"hazardDamagePerTurn\":30,\"royale\":{\"shrinkEveryNTurns\":5}}}},"
+                + "\"you\":{\"id\":\"a\",\"body\":[{\"x\":1,\"y\":1}]},"
+                + "\"board\":{\"food\":[],\"snakes\":[],\"width\":11,\"height\":11}}", new Board(11, 11, 1));
+
+        assertEquals(Ruleset.WRAPPED, board.rules);
+        assertEquals(30, board.hazardDamage);
+    }
+}
@@ -0,0 +1,79 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.deadline;
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParallelSearchTest {
+
+    private static Board headToHeadBoard() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 90, 3, 3, 3, 2, 3, 1);
+        snake(board, "big", 90, 5, 3, 6, 3, 6, 2, 6, 1, 6, 0);
+        board.markOwners();
+        return board;
+    }
+
+    @Test
+    void avoidLongerHeadTest() {
+        ParallelSearch search = new ParallelSearch(4, false, null);
+
+        int move = search.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(100));
+
+        assertNotEquals(Board.RIGHT, move);
+        assertTrue(search.depthReached.get() > 0);
+    }
+
+    @Test
+    void avoidLongerHeadWithSplitRepliesTest() {
+        ParallelSearch search = new ParallelSearch(4, true, null);
+
+        int move = search.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(100));
+
+        assertNotEquals(Board.RIGHT, move);
+        assertTrue(search.depthReached.get() > 0);
+    }
+
+    @Test
+    void concurrentSearchesTest() throws Exception {
+        ParallelSearch search = new ParallelSearch(2, false, null);
+        Thread first = new Thread(() -> search.bestMove(headToHeadBoard(),
+                new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(400)));
+        first.start();
+        Thread.sleep(20);
+
+        // the pool is busy until the first deadline, the second search runs on this thread
+        long started = System.nanoTime();
+        int move = search.bestMove(headToHeadBoard(), new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(50));
+        long elapsed = System.nanoTime() - started;
+        first.join();
+
+        assertNotEquals(Board.RIGHT, move);
+        assertTrue(elapsed < 200_000_000L, elapsed / 1_000_000 + " ms");
+    }
+
+    @Test
+    void boardIsOnlyReadTest() {
+        Board board = headToHeadBoard();
+        long[] bodies = board.bodies.clone();
+        int[] body = board.body[1].clone();
+
+        new ParallelSearch(2, true, null).bestMove(board, new int[]{Board.UP, Board.LEFT}, 2, deadline(30));
+
+        assertArrayEquals(bodies, board.bodies);
+        assertArrayEquals(body, board.body[1]);
+    }
+
+    @Test
+    void singleMoveIsNotSearchedTest() {
+        ParallelSearch search = new ParallelSearch(4, false, null);
+
+        assertEquals(Board.LEFT, search.bestMove(headToHeadBoard(), new int[]{Board.LEFT}, 1, deadline(0)));
+        assertEquals(0, search.depthReached.get());
+    }
+}
@@ -0,0 +1,109 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PonderTest {
+
+    private static Board board() {
+        Board board = new Board(11, 11, 2);
+        board.gameId = "game-1";
+        board.turn = 10;
+        board.you = snake(board, "me", 90, 3, 5, 3, 4, 3, 3);
+        // the opponent is stuck in the corner, left is its only way out
+        snake(board, "other", 90, 10, 10, 10, 9, 9, 9);
+        Board.set(board.food, board.cell(8, 2));
+        board.markOwners();
+        return board;
+    }
+
+    @Test
+    void predictTest() {
+        Board board = board();
+        Ponder.Task task = new Ponder(new TranspositionTable(1), 1, 100, 3, 4)
+                .new Task(board, Board.UP, System.nanoTime(), 3);
+
+        int[][] replies = task.predict();
+
+        assertEquals(Board.UP, replies[0][0]);
+        assertEquals(Board.LEFT, replies[0][1]);
+        for (int[] reply : replies) {
+            assertEquals(Board.UP, reply[0]);
+        }
+
+        Board next = task.play(replies[0]);
+        assertEquals(11, next.turn);
+        assertEquals(board.cell(3, 6), next.head[next.you]);
+        assertEquals(board.cell(9, 10), next.head[1]);
+        assertTrue(Board.isSet(next.food, board.cell(8, 2)));
+    }
+
+    @Test
+    void ponderTest() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(1);
+        Ponder ponder = new Ponder(table, 1, 100, 3, 4);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+        Board board = board();
+
+        ponder.start(board, Board.UP, session);
+        ponder.pool.shutdown();
+        assertTrue(ponder.pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        Ponder.Task task = session.pondering;
+        assertNotNull(task);
+        long hash = Zobrist.hash(task.play(task.predict()[0]), null);
+        assertTrue(task.covers(hash));
+        assertFalse(task.covers(Zobrist.hash(board, null)));
+
+        long entry = table.probe(hash);
+        assertNotEquals(TranspositionTable.MISS, entry);
+        int depth = TranspositionTable.depth(entry);
+        assertTrue(depth > 1, "depth " + depth);
+
+        int[] order = {Board.UP, Board.LEFT, Board.RIGHT};
+        assertEquals(depth, Search.reuse(table, hash, 11, session, order, 3));
+        assertEquals(TranspositionTable.move(entry), order[0]);
+    }
+
+    @Test
+    void cancelTest() throws InterruptedException {
+        Ponder ponder = new Ponder(new TranspositionTable(1), 1, 10_000, 3, 4);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+
+        ponder.start(board(), Board.UP, session);
+        Thread.sleep(50);
+        long started = System.nanoTime();
+        ponder.cancel(session);
+        ponder.pool.shutdown();
+
+        assertTrue(ponder.pool.awaitTermination(5, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsed < 500, "took " + elapsed + " ms");
+        assertEquals(1, ponder.cancelled.sum());
+    }
+
+    @Test
+    void rejectedTest() throws InterruptedException {
+        Ponder ponder = new Ponder(new TranspositionTable(1), 1, 100, 3, 4);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+
+        ponder.start(board(), Board.UP, session);
+        assertNotNull(session.pondering);
+        ponder.pool.shutdown();
+        assertTrue(ponder.pool.awaitTermination(5, TimeUnit.SECONDS));
+
+        // a stopped pool takes no more tasks, the session is left without pondering
+        ponder.start(board(), Board.UP, session);
+        assertNull(session.pondering);
+        assertEquals(1, ponder.rejected.sum());
+    }
+}
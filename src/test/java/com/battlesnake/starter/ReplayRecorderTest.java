@@ -0,0 +1,225 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReplayRecorderTest {
+
+    private static final int TURNS = 60;
+
+    private Path dir;
+    private List<Board> game;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("replays");
+        game = play();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void roundTripTest() throws IOException {
+        Path file = record(true);
+
+        try (ReplayReader reader = new ReplayReader(file)) {
+            assertTrue(reader.indexed());
+            assertEquals("game-1", reader.gameId());
+            Board board = new Board(11, 11, 1);
+            for (Board expected : game) {
+                assertTrue(reader.next(board));
+                assertBoard(expected, board);
+                assertEquals(expected.turn < TURNS ? expected.turn % 4 : -1, reader.move());
+                assertEquals(expected.turn == TURNS, reader.last());
+            }
+            assertFalse(reader.next(board));
+        }
+        // a turn in between keyframes costs a few bytes per snake
+        assertTrue(Files.size(file) < 24 * game.size(), "size " + Files.size(file));
+    }
+
+    @Test
+    void seekTest() throws IOException {
+        Path file = record(true);
+
+        try (ReplayReader reader = new ReplayReader(file)) {
+            Board board = new Board(11, 11, 1);
+            assertTrue(reader.seek(45));
+            assertTrue(reader.next(board));
+            assertBoard(game.get(45), board);
+            assertTrue(reader.next(board));
+            assertBoard(game.get(46), board);
+
+            assertTrue(reader.seek(3));
+            assertTrue(reader.next(board));
+            assertBoard(game.get(3), board);
+
+            assertFalse(reader.seek(TURNS + 1));
+        }
+    }
+
+    @Test
+    void unfinishedGameTest() throws IOException {
+        Path file = record(false);
+
+        try (ReplayReader reader = new ReplayReader(file)) {
+            assertFalse(reader.indexed());
+            Board board = new Board(11, 11, 1);
+            assertTrue(reader.seek(40));
+            assertTrue(reader.next(board));
+            assertBoard(game.get(40), board);
+        }
+
+        // cut off in the middle of the last frame
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (ReplayReader reader = new ReplayReader(file)) {
+            Board board = new Board(11, 11, 1);
+            int turns = 0;
+            while (reader.next(board)) {
+                assertBoard(game.get(turns++), board);
+            }
+            assertEquals(TURNS - 1, turns);
+        }
+    }
+
+    private Path record(boolean end) {
+        ReplayRecorder recorder = new ReplayRecorder(dir, 4, 256);
+        recorder.start(game.get(0));
+        for (int turn = 0; turn < TURNS; turn++) {
+            recorder.move(recorder.capture(game.get(turn)), turn % 4);
+        }
+        if (end) {
+            recorder.end(game.get(TURNS));
+        }
+        assertTrue(recorder.flush(5000));
+        assertEquals(end ? TURNS + 1 : TURNS, recorder.recorded.sum());
+        return dir.resolve("game-1" + ReplayRecorder.SUFFIX);
+    }
+
+    /**
+     * Two snakes going round in rings, the first one ours and growing every ten turns, the
+     * second one gone after turn 40.
+     */
+    private static List<Board> play() {
+        List<Board> boards = new ArrayList<>();
+        Board geometry = new Board(19, 19, 1);
+        int[][] bodies = {ring(geometry, 2, 0, 3), ring(geometry, 5, 0, 4)};
+        for (int turn = 0; turn <= TURNS; turn++) {
+            if (turn > 0) {
+                bodies[0] = step(bodies[0], ring(geometry, 2, turn, 1)[0], turn % 10 == 0);
+                bodies[1] = step(bodies[1], ring(geometry, 5, turn, 1)[0], false);
+            }
+            Board board = new Board(19, 19, 2);
+            board.gameId = "game-1";
+            board.ruleset = "royale";
+            board.rules = Ruleset.ROYALE;
+            board.timeout = 500;
+            board.turn = turn;
+            board.latency = turn % 30;
+            Board.set(board.food, turn * 7 % 361);
+            Board.set(board.food, 100);
+            for (int y = 0; turn >= 20 && y < 19; y++) {
+                Board.set(board.hazards, y * 19);
+            }
+            for (int s = 0; s < (turn <= 40 ? 2 : 1); s++) {
+                board.addSnake("snake-" + s, "Snake " + s, 100 - turn % 50 - s);
+                for (int cell : bodies[s]) {
+                    board.addSegment(s, cell);
+                }
+            }
+            board.you = 0;
+            board.markOwners();
+            boards.add(board);
+        }
+        return boards;
+    }
+
+    /**
+     * Cells of a body on the square ring the given distance from the edges, the head at the
+     * given step around it and every segment stacked on it at the start.
+     */
+    private static int[] ring(Board geometry, int inset, int step, int length) {
+        int side = 18 - 2 * inset;
+        int k = step % (4 * side);
+        int x;
+        int y;
+        if (k < side) {
+            x = inset + k;
+            y = inset;
+        } else if (k < 2 * side) {
+            x = inset + side;
+            y = inset + k - side;
+        } else if (k < 3 * side) {
+            x = inset + side - (k - 2 * side);
+            y = inset + side;
+        } else {
+            x = inset;
+            y = inset + side - (k - 3 * side);
+        }
+        int[] body = new int[length];
+        Arrays.fill(body, geometry.cell(x, y));
+        return body;
+    }
+
+    /**
+     * Move a body the way the engine does, keeping the tail stacked if it ate.
+     */
+    private static int[] step(int[] body, int head, boolean ate) {
+        int[] next = new int[ate ? body.length + 1 : body.length];
+        next[0] = head;
+        System.arraycopy(body, 0, next, 1, body.length - 1);
+        if (ate) {
+            next[body.length] = body[body.length - 2];
+        }
+        return next;
+    }
+
+    private static void assertBoard(Board expected, Board actual) {
+        assertEquals(expected.turn, actual.turn);
+        assertEquals(expected.width, actual.width);
+        assertEquals(expected.height, actual.height);
+        assertEquals(expected.gameId, actual.gameId);
+        assertEquals(expected.ruleset, actual.ruleset);
+        assertEquals(expected.rules, actual.rules);
+        assertEquals(expected.timeout, actual.timeout);
+        assertEquals(expected.latency, actual.latency);
+        assertEquals(expected.hazardDamage, actual.hazardDamage);
+        assertArrayEquals(expected.food, actual.food);
+        assertArrayEquals(expected.hazards, actual.hazards);
+        assertArrayEquals(expected.bodies, actual.bodies);
+        assertArrayEquals(expected.mine, actual.mine);
+        assertArrayEquals(expected.others, actual.others);
+        assertEquals(expected.snakeCount, actual.snakeCount);
+        assertEquals(expected.you, actual.you);
+        for (int s = 0; s < expected.snakeCount; s++) {
+            assertEquals(expected.ids[s], actual.ids[s]);
+            assertEquals(expected.names[s], actual.names[s]);
+            assertEquals(expected.health[s], actual.health[s]);
+            assertArrayEquals(expected.segments(s), actual.segments(s));
+        }
+    }
+}
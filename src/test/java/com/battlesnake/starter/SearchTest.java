@@ -0,0 +1,130 @@
+package com.battlesnake.starter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SearchTest {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Add a snake to the board, coordinates are given head first as x, y pairs.
+     */
+    static int snake(Board board, String id, int health, int... xy) {
+        int s = board.addSnake(id, id, health);
+        for (int i = 0; i < xy.length; i += 2) {
+            board.addSegment(s, board.cell(xy[i], xy[i + 1]));
+        }
+        return s;
+    }
+
+    static long deadline(int millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    void boardIsRestoredTest() throws IOException {
+        Board board = Board.fromMoveRequest(OBJECT_MAPPER.readTree(BoardTest.MOVE_REQUEST));
+        long[] bodies = board.bodies.clone();
+        long[] heads = board.heads.clone();
+        long[] food = board.food.clone();
+        int[] body = board.segments(1);
+        int[] health = board.health.clone();
+
+        new Search().bestMove(board, new int[]{Board.UP}, 1, deadline(50));
+
+        assertArrayEquals(bodies, board.bodies);
+        assertArrayEquals(heads, board.heads);
+        assertArrayEquals(food, board.food);
+        assertArrayEquals(body, board.segments(1));
+        assertArrayEquals(health, board.health);
+    }
+
+    @Test
+    void hashIsRestoredTest() throws IOException {
+        Board board = Board.fromMoveRequest(OBJECT_MAPPER.readTree(BoardTest.MOVE_REQUEST));
+        Search search = new Search();
+        search.table = new TranspositionTable(1);
+
+        search.bestMove(board, new int[]{Board.UP}, 1, deadline(50));
+
+        assertEquals(Zobrist.hash(board, null), search.hash());
+        assertTrue(search.tableHits > 0);
+    }
+
+    @Test
+    void avoidLongerHeadTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 90, 3, 3, 3, 2, 3, 1);
+        snake(board, "big", 90, 5, 3, 6, 3, 6, 2, 6, 1, 6, 0);
+        board.markOwners();
+
+        int move = new Search().bestMove(board, new int[]{Board.RIGHT, Board.UP, Board.LEFT}, 3, deadline(100));
+
+        assertNotEquals(Board.RIGHT, move);
+    }
+
+    @Test
+    void stopsAtDeadlineTest() {
+        Board board = new Board(11, 11, 1);
+        board.you = snake(board, "me", 100, 5, 5, 5, 4, 5, 3);
+        board.markOwners();
+
+        long started = System.nanoTime();
+        Search search = new Search();
+        int move = search.bestMove(board, new int[]{Board.UP, Board.LEFT, Board.RIGHT}, 3, deadline(30));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(elapsed < 130, "took " + elapsed + " ms");
+        assertTrue(move == Board.UP || move == Board.LEFT || move == Board.RIGHT);
+        assertEquals(board.cell(5, 5), board.head[0]);
+    }
+
+    @Test
+    void reuseTableMoveTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        GameSessions.GameSession session = new GameSessions(8, 60_000).start("game-1");
+        int[] order = {Board.UP, Board.DOWN, Board.LEFT};
+        table.store(42L, 5, 0, TranspositionTable.EXACT, Board.LEFT);
+
+        assertEquals(1, Search.reuse(table, 42L, 3, session, order, 3));
+        assertEquals(Board.LEFT, order[0]);
+
+        session.record(2, 8);
+        assertEquals(5, Search.reuse(table, 42L, 3, session, order, 3));
+        session.record(2, 3);
+        assertEquals(2, Search.reuse(table, 42L, 3, session, order, 3));
+        assertEquals(1, Search.reuse(table, 7L, 3, session, order, 3));
+    }
+
+    @Test
+    void orderingTest() {
+        Board board = new Board(11, 11, 2);
+        board.you = snake(board, "me", 80, 3, 3, 3, 2, 3, 1, 4, 1);
+        snake(board, "other", 80, 7, 6, 7, 7, 8, 7, 8, 8, 8, 9);
+        Board.set(board.food, board.cell(5, 5));
+        board.markOwners();
+        int[] candidates = {Board.UP, Board.LEFT, Board.RIGHT};
+
+        Search plain = new Search();
+        plain.ordering = false;
+        plain.maxDepth = 5;
+        int plainMove = plain.bestMove(board, candidates, 3, deadline(10_000));
+        Search ordered = new Search();
+        ordered.maxDepth = 5;
+        int orderedMove = ordered.bestMove(board, candidates, 3, deadline(10_000));
+
+        assertEquals(5, ordered.depthReached);
+        assertEquals(plainMove, orderedMove);
+        assertTrue(ordered.nodes < plain.nodes, ordered.nodes + " nodes, " + plain.nodes + " without ordering");
+        assertTrue(ordered.firstMoveCutoffs > ordered.cutoffs / 2);
+    }
+}
@@ -0,0 +1,211 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SimulatorTest {
+
+    private static Board board(Ruleset rules) {
+        Board board = new Board(7, 7, 2);
+        board.rules = rules;
+        board.you = snake(board, "me", 50, 1, 3, 1, 2, 1, 1);
+        snake(board, "other", 50, 5, 3, 5, 2, 5, 1);
+        board.markOwners();
+        return board;
+    }
+
+    private static Simulator play(Board board, int myMove, int otherMove) {
+        Simulator simulator = new Simulator();
+        simulator.prepare(board);
+        simulator.moves(0)[0] = myMove;
+        if (board.snakeCount > 1) {
+            simulator.moves(0)[1] = otherMove;
+        }
+        simulator.makeTurn(0);
+        return simulator;
+    }
+
+    @Test
+    void moveTest() {
+        Board board = board(Ruleset.STANDARD);
+
+        Simulator simulator = play(board, Board.UP, Board.UP);
+
+        assertEquals(board.cell(1, 4), board.head[0]);
+        assertEquals(3, board.length[0]);
+        assertEquals(49, board.health[0]);
+        assertFalse(Board.isSet(board.bodies, board.cell(1, 1)));
+        assertTrue(Board.isSet(board.bodies, board.cell(1, 4)));
+        assertEquals(Zobrist.hash(board, null), simulator.hash());
+    }
+
+    @Test
+    void undoTest() {
+        Board board = board(Ruleset.STANDARD);
+        Board.set(board.food, board.cell(1, 4));
+        long[] bodies = board.bodies.clone();
+        long[] heads = board.heads.clone();
+        long[] food = board.food.clone();
+        int[] body = board.segments(0);
+        long hash = Zobrist.hash(board, null);
+
+        Simulator simulator = play(board, Board.UP, Board.RIGHT);
+        simulator.unmakeTurn(0);
+
+        assertArrayEquals(bodies, board.bodies);
+        assertArrayEquals(heads, board.heads);
+        assertArrayEquals(food, board.food);
+        assertArrayEquals(body, board.segments(0));
+        assertEquals(50, board.health[0]);
+        assertEquals(hash, simulator.hash());
+    }
+
+    @Test
+    void eatTest() {
+        Board board = board(Ruleset.STANDARD);
+        Board.set(board.food, board.cell(1, 4));
+
+        Simulator simulator = play(board, Board.UP, Board.UP);
+
+        assertEquals(4, board.length[0]);
+        assertEquals(100, board.health[0]);
+        // the new tail is stacked on the segment before it
+        assertEquals(board.segment(0, 2), board.segment(0, 3));
+        assertFalse(Board.isSet(board.food, board.cell(1, 4)));
+        assertEquals(Zobrist.hash(board, null), simulator.hash());
+    }
+
+    @Test
+    void headToHeadTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 50, 2, 3, 1, 3, 0, 3);
+        snake(board, "other", 50, 4, 3, 5, 3, 6, 3);
+        board.markOwners();
+
+        Simulator simulator = play(board, Board.RIGHT, Board.LEFT);
+
+        // same length, both die
+        assertFalse(simulator.alive(0));
+        assertFalse(simulator.alive(1));
+        assertTrue(simulator.gameOver());
+    }
+
+    @Test
+    void starvedHeadToHeadTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 50, 2, 3, 1, 3, 0, 3);
+        // longer, but starves on the move, so it is gone before the head to head on (3, 3)
+        snake(board, "other", 1, 4, 3, 5, 3, 6, 3, 6, 4);
+        board.markOwners();
+        long[] bodies = board.bodies.clone();
+
+        Simulator simulator = play(board, Board.RIGHT, Board.LEFT);
+
+        assertTrue(simulator.alive(0));
+        assertFalse(simulator.alive(1));
+        assertEquals(board.cell(3, 3), board.head[0]);
+        assertFalse(Board.isSet(board.bodies, board.cell(5, 3)));
+        assertEquals(Zobrist.hash(board, new boolean[]{true, false}), simulator.hash());
+
+        simulator.unmakeTurn(0);
+        assertArrayEquals(bodies, board.bodies);
+    }
+
+    @Test
+    void freeInTest() {
+        Board board = new Board(7, 7, 2);
+        board.you = snake(board, "me", 50, 2, 3, 1, 3, 0, 3);
+        // longer, wins the head to head on (3, 3)
+        snake(board, "other", 50, 4, 3, 5, 3, 6, 3, 6, 4);
+        board.markOwners();
+        int[] before = new int[49];
+        for (int cell = 0; cell < 49; cell++) {
+            before[cell] = Board.isSet(board.bodies, cell) ? board.freeIn(cell) : 0;
+        }
+
+        Simulator simulator = play(board, Board.RIGHT, Board.LEFT);
+
+        assertFalse(simulator.alive(0));
+        assertTrue(simulator.alive(1));
+        assertEquals(4, board.freeIn(board.cell(3, 3)));
+        assertEquals(1, board.freeIn(board.cell(6, 3)));
+        assertFalse(board.blockedNextTurn(board.cell(6, 3)));
+        assertTrue(board.blockedNextTurn(board.cell(5, 3)));
+
+        simulator.unmakeTurn(0);
+        for (int cell = 0; cell < 49; cell++) {
+            assertEquals(before[cell], Board.isSet(board.bodies, cell) ? board.freeIn(cell) : 0, "cell " + cell);
+        }
+    }
+
+    @Test
+    void hazardTest() {
+        Board board = board(Ruleset.ROYALE);
+        Board.set(board.hazards, board.cell(1, 4));
+        Board.set(board.hazards, board.cell(5, 4));
+        Board.set(board.food, board.cell(5, 4));
+
+        play(board, Board.UP, Board.UP);
+
+        assertEquals(50 - 1 - Board.DEFAULT_HAZARD_DAMAGE, board.health[0]);
+        // eating on a hazard is not damaged
+        assertEquals(100, board.health[1]);
+    }
+
+    @Test
+    void hazardStarvesTest() {
+        Board board = board(Ruleset.ROYALE);
+        board.health[0] = 10;
+        Board.set(board.hazards, board.cell(1, 4));
+
+        Simulator simulator = play(board, Board.UP, Board.UP);
+
+        assertFalse(simulator.alive(0));
+        assertTrue(simulator.alive(1));
+    }
+
+    @Test
+    void constrictorTest() {
+        Board board = board(Ruleset.CONSTRICTOR);
+
+        Simulator simulator = play(board, Board.UP, Board.UP);
+
+        assertEquals(4, board.length[0]);
+        assertEquals(100, board.health[0]);
+        assertTrue(Board.isSet(board.bodies, board.cell(1, 2)));
+        simulator.unmakeTurn(0);
+        assertEquals(3, board.length[0]);
+        assertEquals(50, board.health[0]);
+    }
+
+    @Test
+    void wrappedTest() {
+        Board board = new Board(7, 7, 1);
+        board.rules = Ruleset.WRAPPED;
+        board.you = snake(board, "me", 50, 0, 3, 1, 3, 2, 3);
+        board.markOwners();
+
+        Simulator simulator = play(board, Board.LEFT, Board.LEFT);
+
+        assertTrue(simulator.alive(0));
+        assertEquals(board.cell(6, 3), board.head[0]);
+        assertEquals(board.cell(3, 0), board.neighbour(board.cell(3, 6), Board.UP));
+        assertEquals(board.cell(3, 6), board.neighbour(board.cell(3, 0), Board.DOWN));
+    }
+
+    @Test
+    void wallTest() {
+        Board board = new Board(7, 7, 1);
+        board.you = snake(board, "me", 50, 0, 3, 1, 3, 2, 3);
+        board.markOwners();
+
+        Simulator simulator = play(board, Board.LEFT, Board.LEFT);
+
+        assertFalse(simulator.alive(0));
+    }
+}
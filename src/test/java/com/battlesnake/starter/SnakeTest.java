@@ -7,11 +7,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -38,6 +40,17 @@ public class SnakeTest {
         assertEquals("default", response.get("tail"));
     }
 
+    @Test
+    void precomputedBodiesTest() throws IOException {
+        assertEquals(OBJECT_MAPPER.readTree(OBJECT_MAPPER.writeValueAsString(handler.index())),
+                OBJECT_MAPPER.readTree(handler.indexBody));
+        assertEquals("{}", new String(Snake.Handler.EMPTY_BODY, StandardCharsets.UTF_8));
+        for (int direction = 0; direction < Board.MOVES.length; direction++) {
+            assertEquals("{\"move\":\"" + Board.MOVES[direction] + "\"}",
+                    new String(Snake.Handler.MOVE_BODIES[direction], StandardCharsets.UTF_8));
+        }
+    }
+
     @Test
     void startTest() throws IOException {
         JsonNode startRequest = OBJECT_MAPPER.readTree("{}");
@@ -77,6 +90,14 @@ public class SnakeTest {
         assertTrue(options.contains(response.get("move")));
     }
 
+    @Test
+    void undecodableMoveTest() {
+        byte[] expected = Snake.Handler.MOVE_BODIES[Snake.Handler.DEFAULT_MOVE];
+        assertArrayEquals(expected, handler.handle("/move", "{\"turn\":".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(expected, handler.handle("/move", "[]".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(expected, handler.fallback("not json".getBytes(StandardCharsets.UTF_8)));
+    }
+
     @Test
     void endTest() throws IOException {
         JsonNode endRequest = OBJECT_MAPPER.readTree("{}");
@@ -462,4 +483,32 @@ public class SnakeTest {
         assertTrue(possibleMoves.equals(expectedResult));
     }
 
+    @Test
+    void avoidDeadEndsTest() {
+        // our body walls off column 0, which is too small for us
+        Board board = new Board(5, 5, 1);
+        board.you = SearchTest.snake(board, "me", 100, 1, 0, 1, 1, 1, 2, 1, 3, 1, 4, 2, 4, 3, 4, 4, 4);
+        board.markOwners();
+
+        ArrayList<String> possibleMoves = new ArrayList<>(Arrays.asList("left", "right"));
+        ArrayList<String> expectedResult = new ArrayList<>(Arrays.asList("right"));
+
+        handler.avoidDeadEnds(board, possibleMoves);
+
+        assertEquals(expectedResult, possibleMoves);
+    }
+
+    @Test
+    void avoidDeadEndsKeepsLargestTest() {
+        Board board = new Board(5, 5, 1);
+        board.you = SearchTest.snake(board, "me", 100, 1, 0, 1, 1, 1, 2, 1, 3, 1, 4, 2, 4, 3, 4, 4, 4);
+        board.markOwners();
+
+        ArrayList<String> possibleMoves = new ArrayList<>(Arrays.asList("left"));
+
+        handler.avoidDeadEnds(board, possibleMoves);
+
+        assertEquals(Arrays.asList("left"), possibleMoves);
+    }
+
 }
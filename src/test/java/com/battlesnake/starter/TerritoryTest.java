@@ -0,0 +1,78 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TerritoryTest {
+
+    @Test
+    void closestSnakeWinsTest() {
+        // one row, heads at 1 and 5 facing each other
+        Board board = new Board(7, 1, 2);
+        board.you = snake(board, "me", 100, 1, 0, 0, 0);
+        snake(board, "other", 100, 5, 0, 6, 0);
+        board.markOwners();
+        Territory territory = new Territory();
+
+        territory.fill(board);
+
+        assertEquals(0, territory.owner(board.cell(2, 0)));
+        assertEquals(Territory.NOBODY, territory.owner(board.cell(3, 0)));
+        // both tails move away
+        assertEquals(2, territory.owned(0));
+        assertEquals(2, territory.owned(1));
+    }
+
+    @Test
+    void muchLongerSnakeWinsTieTest() {
+        Board board = new Board(7, 1, 2);
+        board.you = snake(board, "me", 100, 1, 0, 0, 0);
+        snake(board, "big", 100, 5, 0, 6, 0, 6, 0, 6, 0);
+        board.markOwners();
+        Territory territory = new Territory();
+
+        territory.fill(board);
+
+        assertEquals(1, territory.owner(board.cell(3, 0)));
+        assertEquals(2, territory.owned(0));
+        // its stacked tail stays
+        assertEquals(2, territory.owned(1));
+    }
+
+    @Test
+    void foodDistanceTest() {
+        Board board = new Board(5, 5, 1);
+        board.you = snake(board, "me", 50, 0, 0, 0, 1);
+        board.markOwners();
+        Board.set(board.food, board.cell(3, 0));
+        Territory territory = new Territory();
+
+        territory.fill(board);
+
+        assertEquals(3, territory.foodDistance(0));
+        // the neck is blocked, the tail moves away
+        assertEquals(24, territory.owned(0));
+        Board.clear(board.food, board.cell(3, 0));
+        territory.fill(board);
+        assertEquals(-1, territory.foodDistance(0));
+    }
+
+    @Test
+    void bodiesBlockTest() {
+        // a wall snake splits the board, its tail at (2,4) moves away
+        Board board = new Board(5, 5, 2);
+        board.you = snake(board, "me", 100, 0, 2, 0, 1);
+        snake(board, "wall", 100, 2, 0, 2, 1, 2, 2, 2, 3, 2, 4);
+        board.markOwners();
+        Territory territory = new Territory();
+
+        territory.fill(board);
+
+        assertEquals(0, territory.owner(board.cell(1, 4)));
+        assertEquals(0, territory.owner(board.cell(2, 4)));
+        assertEquals(1, territory.owner(board.cell(4, 4)));
+        assertEquals(-2, territory.owner(board.cell(2, 2)));
+    }
+}
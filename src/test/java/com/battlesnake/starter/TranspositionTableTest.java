@@ -0,0 +1,75 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TranspositionTableTest {
+
+    @Test
+    void storeAndProbeTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x1234_5678_9ABC_DEF0L;
+
+        table.store(key, 7, -42, TranspositionTable.LOWER, Board.LEFT);
+        long data = table.probe(key);
+
+        assertEquals(7, TranspositionTable.depth(data));
+        assertEquals(-42, TranspositionTable.score(data));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(data));
+        assertEquals(Board.LEFT, TranspositionTable.move(data));
+    }
+
+    @Test
+    void missTest() {
+        TranspositionTable table = new TranspositionTable(1);
+
+        assertEquals(TranspositionTable.MISS, table.probe(99L));
+        table.store(99L, 1, 0, TranspositionTable.EXACT, -1);
+        assertEquals(-1, TranspositionTable.move(table.probe(99L)));
+        // same slot, other key
+        assertEquals(TranspositionTable.MISS, table.probe(99L + (1L << 40)));
+    }
+
+    @Test
+    void ageTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        long deep = 5L;
+        long shallow = 5L + (1L << 40);
+        table.store(deep, 9, 1, TranspositionTable.EXACT, Board.UP);
+        long now = System.nanoTime();
+
+        // searches within one generation, as of several games at once, do not age the table
+        for (int search = 0; search < 10; search++) {
+            table.age(now);
+        }
+        table.store(shallow, 2, 2, TranspositionTable.EXACT, Board.UP);
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+
+        table.age(now + TranspositionTable.GENERATION_NS);
+        table.age(now + 2 * TranspositionTable.GENERATION_NS);
+        table.store(shallow, 2, 2, TranspositionTable.EXACT, Board.UP);
+        assertEquals(2, TranspositionTable.depth(table.probe(shallow)));
+    }
+
+    @Test
+    void depthPreferredTest() {
+        TranspositionTable table = new TranspositionTable(1);
+        long deep = 5L;
+        long shallow = 5L + (1L << 40);
+
+        table.store(deep, 9, 1, TranspositionTable.EXACT, Board.UP);
+        table.store(shallow, 2, 2, TranspositionTable.EXACT, Board.UP);
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        assertEquals(TranspositionTable.MISS, table.probe(shallow));
+
+        // entries of the previous generation are still kept, older ones make room
+        table.nextGeneration();
+        table.store(shallow, 2, 2, TranspositionTable.EXACT, Board.UP);
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        table.nextGeneration();
+        table.store(shallow, 2, 2, TranspositionTable.EXACT, Board.UP);
+        assertEquals(TranspositionTable.MISS, table.probe(deep));
+        assertEquals(2, TranspositionTable.depth(table.probe(shallow)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.battlesnake.starter;
+
+import org.junit.jupiter.api.Test;
+
+import static com.battlesnake.starter.SearchTest.snake;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ZobristTest {
+
+    private static Board board(int health, int foodX) {
+        Board board = new Board(11, 11, 2);
+        board.you = snake(board, "me", health, 3, 3, 3, 2, 3, 1);
+        snake(board, "other", 80, 7, 7, 7, 8, 7, 9);
+        Board.set(board.food, board.cell(foodX, 5));
+        board.markOwners();
+        return board;
+    }
+
+    private static long hash(int... xy) {
+        Board board = new Board(11, 11, 1);
+        board.you = snake(board, "me", 50, xy);
+        return Zobrist.hash(board, null);
+    }
+
+    @Test
+    void samePositionSameHashTest() {
+        assertEquals(Zobrist.hash(board(50, 1), null), Zobrist.hash(board(50, 1), null));
+    }
+
+    @Test
+    void differentPositionDifferentHashTest() {
+        long hash = Zobrist.hash(board(50, 1), null);
+
+        assertNotEquals(hash, Zobrist.hash(board(49, 1), null));
+        assertNotEquals(hash, Zobrist.hash(board(50, 2), null));
+    }
+
+    @Test
+    void deadSnakesAreLeftOutTest() {
+        Board board = board(50, 1);
+        long hash = Zobrist.hash(board, null);
+
+        assertEquals(hash ^ Zobrist.snake(board, 1), Zobrist.hash(board, new boolean[]{true, false}));
+    }
+
+    @Test
+    void segmentOrderTest() {
+        // the same cells, head and tail swapped
+        assertNotEquals(hash(3, 3, 3, 2, 3, 1), hash(3, 1, 3, 2, 3, 3));
+    }
+
+    @Test
+    void stackedSegmentsTest() {
+        // the stacked segments would cancel out, leaving the same cells
+        assertNotEquals(hash(3, 3, 3, 2, 3, 2, 3, 2), hash(3, 3, 3, 2, 3, 1, 3, 1));
+    }
+}